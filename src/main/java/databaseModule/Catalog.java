@@ -0,0 +1,222 @@
+package databaseModule;
+
+import java.util.*;
+
+import driver.SQLiteManager;
+
+/**
+ * Maintains a catalog of precomputed statistics about the contents of the database, so that
+ * summaries (e.g. `info`) never have to scan the properties themselves. The catalog holds one row
+ * per environment, fabric, node, and file extension, and a single row for the entire database.
+ * Each row records the number of files and properties within its scope and, except for
+ * extensions, the number of distinct keys and of ignore rules defined within the scope.
+ * <p>
+ * The catalog is refreshed whenever properties are populated or deleted, and only the rows of the
+ * environments that changed are recomputed. Ignore rules only change the rule counts (see
+ * {@link #refreshRules()}).
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class Catalog {
+
+	private static final String CATALOG = "catalog";
+	private static final String[] SCOPES = { "environment", "fabric", "node" };
+
+	/**
+	 * Recomputes the catalog rows of the given environments, along with the extension and database
+	 * rows, as a single transaction.
+	 *
+	 * @param environments
+	 *            the environments whose contents changed, or null to recompute the entire catalog
+	 */
+	public static void refresh(Collection<String> environments) {
+		List<String[]> statements = new ArrayList<>();
+		boolean sharded = SQLiteManager.isSharded();
+		if (environments == null) {
+			statements.add(new String[] { "DELETE FROM " + CATALOG + ";" });
+			for (String scope : SCOPES) {
+				statements.add(new String[] { aggregate(scope, false, !sharded) });
+				if (sharded) {
+					statements.addAll(countShards(scope, null));
+				}
+			}
+		} else {
+			for (String environment : environments) {
+				if (environment == null) {
+					continue;
+				}
+				statements.add(new String[] { "DELETE FROM " + CATALOG + " WHERE environment = ?;", environment });
+				for (String scope : SCOPES) {
+					if (sharded) {
+						statements.add(new String[] { aggregate(scope, true, false), environment });
+						statements.addAll(countShards(scope, environment));
+					} else {
+						statements.add(new String[] { aggregate(scope, true, true), environment, environment });
+					}
+				}
+			}
+			statements.add(new String[] { "DELETE FROM " + CATALOG + " WHERE environment IS NULL;" });
+		}
+
+		// extensions and the database as a whole span every environment
+		String files = SQLiteManager.getFileTable();
+		String table = SQLiteManager.getTable();
+		statements.add(new String[] { "INSERT INTO " + CATALOG + " (scope, name, files, properties) "
+				+ "SELECT 'extension', extension, COUNT(*), SUM(properties) FROM " + files + " GROUP BY extension;" });
+		if (sharded) {
+			statements.add(new String[] { "INSERT INTO " + CATALOG + " (scope, name, files, properties, ignored, keys) "
+					+ "SELECT 'database', '', (SELECT COUNT(*) FROM " + files + "), ?, 0, ?;",
+					Long.toString(SQLiteManager.getSize()),
+					Integer.toString(SQLiteManager.getDistinct("key", null).size()) });
+		} else {
+			statements.add(new String[] { "INSERT INTO " + CATALOG + " (scope, name, files, properties, ignored, keys) "
+					+ "SELECT 'database', '', (SELECT COUNT(*) FROM " + files + "), (SELECT COUNT(*) FROM " + table
+					+ "), 0, (SELECT COUNT(*) FROM (SELECT DISTINCT key FROM " + table + "));" });
+		}
+		statements.addAll(countRules());
+		SQLiteManager.executeTransaction(statements);
+	}
+
+	/**
+	 * Recounts the ignore rules within each scope, after rules have been added or changed.
+	 */
+	public static void refreshRules() {
+		SQLiteManager.executeTransaction(countRules());
+	}
+
+	/**
+	 * Generates the statements that count the ignore rules within each scope.
+	 *
+	 * @return the SQL statements
+	 */
+	private static List<String[]> countRules() {
+		String count = "UPDATE " + CATALOG + " SET ignored = (SELECT COUNT(*) FROM ignores WHERE ignore = 'true'";
+		List<String[]> statements = new ArrayList<>();
+		statements.add(new String[] { count + ") WHERE scope = 'database';" });
+		statements.add(new String[] { count + " AND environment = " + CATALOG + ".name) WHERE scope = 'environment';" });
+		statements.add(new String[] { count + " AND environment || '/' || fabric = " + CATALOG
+				+ ".name) WHERE scope = 'fabric';" });
+		statements.add(new String[] { count + " AND environment || '/' || fabric || '/' || node = " + CATALOG
+				+ ".name) WHERE scope = 'node';" });
+		return statements;
+	}
+
+	/**
+	 * Generates the statement that recomputes every row of a single scope. Files are counted from
+	 * the file table and properties from the properties table, so that files without properties
+	 * are still counted.
+	 *
+	 * @param scope
+	 *            "environment", "fabric", or "node"
+	 * @param restricted
+	 *            true if the statement is restricted to a single environment, given by two
+	 *            placeholders (or one, if properties are not counted)
+	 * @param properties
+	 *            true to count properties as well, else false (e.g. if they are in shards, see
+	 *            {@link #countShards(String, String)})
+	 * @return the SQL statement
+	 */
+	private static String aggregate(String scope, boolean restricted, boolean properties) {
+		String columns = "";
+		String name = "";
+		for (String column : SQLiteManager.genericPath) {
+			columns += (columns.isEmpty() ? "" : ", ") + column;
+			name += (name.isEmpty() ? "" : " || '/' || ") + "f." + column;
+			if (column.equals(scope)) {
+				break;
+			}
+		}
+		String where = " WHERE " + (restricted ? "environment = ? AND " : "") + scope + " IS NOT NULL GROUP BY "
+				+ columns + ")";
+
+		if (!properties) {
+			return "INSERT INTO " + CATALOG + " (scope, name, environment, files, properties, ignored, keys) SELECT '"
+					+ scope + "', " + name + ", f.environment, f.files, 0, 0, 0 FROM (SELECT " + columns
+					+ ", COUNT(*) AS files FROM " + SQLiteManager.getFileTable() + where + " f;";
+		}
+		return "INSERT INTO " + CATALOG + " (scope, name, environment, files, properties, ignored, keys) SELECT '"
+				+ scope + "', " + name + ", f.environment, f.files, IFNULL(p.properties, 0), 0, "
+				+ "IFNULL(p.keys, 0) FROM (SELECT " + columns + ", COUNT(*) AS files FROM "
+				+ SQLiteManager.getFileTable() + where + " f LEFT JOIN (SELECT " + columns
+				+ ", COUNT(*) AS properties, COUNT(DISTINCT key) AS keys FROM "
+				+ SQLiteManager.getTable() + where + " p USING (" + columns + ");";
+	}
+
+	/**
+	 * Generates the statements that fill in the property and key counts of every row of a single
+	 * scope when the properties are sharded (see {@link driver.Shards}), after the rows have been
+	 * inserted with their file counts. The properties are counted within each shard, which holds
+	 * every property of the scopes within its environment.
+	 *
+	 * @param scope
+	 *            "environment", "fabric", or "node"
+	 * @param environment
+	 *            the single environment to count, or null to count every environment
+	 * @return the SQL statements
+	 */
+	private static List<String[]> countShards(String scope, String environment) {
+		List<String> columns = new ArrayList<>();
+		for (String column : SQLiteManager.genericPath) {
+			columns.add(column);
+			if (column.equals(scope)) {
+				break;
+			}
+		}
+		Map<String, String> filter = new HashMap<>();
+		if (environment != null) {
+			filter.put("environment", environment);
+		}
+		String sql = "SELECT " + String.join(", ", columns) + ", COUNT(*) AS properties, COUNT(DISTINCT key) "
+				+ "AS keys FROM " + SQLiteManager.getTable() + " WHERE "
+				+ (environment != null ? "environment = ? AND " : "") + scope + " IS NOT NULL GROUP BY " + String.join(", ", columns) + ";";
+		List<Map<String, String>> counts = environment != null ? SQLiteManager.select(filter, sql, environment)
+				: SQLiteManager.select(filter, sql);
+
+		List<String[]> statements = new ArrayList<>();
+		for (Map<String, String> count : counts) {
+			String name = "";
+			for (String column : columns) {
+				name += (name.isEmpty() ? "" : "/") + count.get(column);
+			}
+			statements.add(new String[] { "UPDATE " + CATALOG + " SET properties = ?, keys = ? WHERE scope = ? "
+					+ "AND name = ?;", count.get("properties"), count.get("keys"), scope, name });
+		}
+		return statements;
+	}
+
+	/**
+	 * Gets the catalog rows of a scope.
+	 *
+	 * @param scope
+	 *            "environment", "fabric", "node", "extension", or "database"
+	 * @return a List of rows, each a Map of the name, files, properties, ignored, and keys of a
+	 *         single scope, ordered by name
+	 */
+	public static List<Map<String, String>> get(String scope) {
+		ensureBuilt();
+		return SQLiteManager.select("SELECT name, files, properties, ignored, keys FROM " + CATALOG
+				+ " WHERE scope = ? ORDER BY name;", scope);
+	}
+
+	/**
+	 * Gets the catalog row of the entire database.
+	 *
+	 * @return a Map of the files, properties, ignored, and keys of the database
+	 */
+	public static Map<String, String> getDatabase() {
+		List<Map<String, String>> rows = get("database");
+		return rows.isEmpty() ? null : rows.get(0);
+	}
+
+	/**
+	 * Builds the catalog if the database predates it.
+	 */
+	private static void ensureBuilt() {
+		String sql = "SELECT 1 FROM " + CATALOG + " WHERE scope = 'database';";
+		if (SQLiteManager.select(sql).isEmpty()) {
+			refresh(null);
+		}
+	}
+
+}
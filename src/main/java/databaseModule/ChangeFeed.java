@@ -0,0 +1,217 @@
+package databaseModule;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Records the changes made by a single generation of the database (i.e. by one `populate`, or one
+ * batch of changes synced by `watch`) as a streaming change log with one JSON object per line:
+ *
+ * <pre>
+ * {"generation":2,"time":"2017-09-15T14:31:40","path":"dev1/storm/n1/server.properties",
+ *  "key":"server/port","change":"changed","old":"8080","new":"8081"}
+ * </pre>
+ *
+ * A change is "added" (with only a new value), "removed" (with only an old value), or "changed".
+ * Changes are computed per file from the key-value pairs the history replaced (see
+ * {@link driver.SQLiteManager#replaceFiles(Collection, Map, ChangeFeed)}) by joining the old and new
+ * pairs on their keys, so recording them costs no more than a hash lookup per changed pair. A key
+ * with several pairs on a side is joined pair by pair, in order.
+ * <p>
+ * The changes are held until the generation has been committed, and only then appended to the
+ * log by {@link #commit()}, so that the log never shows changes that were rolled back.
+ * <p>
+ * Every generation is appended to the same log, named by the "lighthouse.changes" system property
+ * (lighthouse-changes.jsonl by default, or no log at all if empty).
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class ChangeFeed implements Closeable {
+
+	public static final String ADDED = "added";
+	public static final String REMOVED = "removed";
+	public static final String CHANGED = "changed";
+
+	private static final String log = System.getProperty("lighthouse.changes", "lighthouse-changes.jsonl");
+	private static final JsonFactory factory = new JsonFactory();
+
+	private final long generation;
+	private final String time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date());
+	private final Map<String, Integer> counts = new LinkedHashMap<>();
+	private final Map<String, Set<String>> replaced = new HashMap<>();	// terms of replaced pairs, by type
+	private final List<String[]> pending = new ArrayList<>();	// {path, key, change, old, new}
+	private JsonGenerator out;	// opened with the first committed change
+	private boolean failed;		// stops logging after an error, so it is reported once
+
+	/**
+	 * Constructor.
+	 *
+	 * @param generation
+	 *            the generation whose changes are recorded
+	 */
+	public ChangeFeed(long generation) {
+		this.generation = generation;
+		counts.put(ADDED, 0);
+		counts.put(CHANGED, 0);
+		counts.put(REMOVED, 0);
+		replaced.put("key", new HashSet<String>());
+		replaced.put("value", new HashSet<String>());
+	}
+
+	/**
+	 * Returns the generation whose changes are recorded.
+	 *
+	 * @return the generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the number of changes recorded so far of each kind.
+	 *
+	 * @return a Map of each kind of change to its count
+	 */
+	public Map<String, Integer> getCounts() {
+		return counts;
+	}
+
+	/**
+	 * Returns the keys or the values of every key-value pair removed or replaced so far, i.e. the
+	 * terms the generation may have left unused (see {@link SearchIndex#prune(Collection, Collection)}).
+	 *
+	 * @param type
+	 *            "key" or "value"
+	 * @return the keys or values
+	 */
+	public Set<String> getReplaced(String type) {
+		return replaced.get(type);
+	}
+
+	/**
+	 * Returns the file the changes are logged to.
+	 *
+	 * @return the path of the log, or null if changes are not logged
+	 */
+	public static String getLog() {
+		return log.isEmpty() ? null : log;
+	}
+
+	/**
+	 * Records the changes to a single file.
+	 *
+	 * @param path
+	 *            the path of the file
+	 * @param replaced
+	 *            the key-value pairs of the file that were removed or replaced, each as {key, value}
+	 * @param replacing
+	 *            the key-value pairs of the file that were added or replace others, each as
+	 *            {key, value}
+	 */
+	public void record(String path, Collection<List<String>> replaced, Collection<List<String>> replacing) {
+		Map<String, Deque<String>> old = new LinkedHashMap<>();
+		for (List<String> pair : replaced) {
+			this.replaced.get("key").add(pair.get(0));
+			this.replaced.get("value").add(pair.get(1));
+			old.computeIfAbsent(pair.get(0), k -> new ArrayDeque<>()).add(pair.get(1));
+		}
+		for (List<String> pair : replacing) {
+			Deque<String> values = old.get(pair.get(0));
+			if (values != null && !values.isEmpty()) {
+				add(path, pair.get(0), CHANGED, values.poll(), pair.get(1));
+			} else {
+				add(path, pair.get(0), ADDED, null, pair.get(1));
+			}
+		}
+		for (Map.Entry<String, Deque<String>> values : old.entrySet()) {
+			for (String value : values.getValue()) {
+				add(path, values.getKey(), REMOVED, value, null);
+			}
+		}
+	}
+
+	/**
+	 * Counts a single change and holds it until the generation is committed.
+	 */
+	private void add(String path, String key, String change, String old, String value) {
+		counts.put(change, counts.get(change) + 1);
+		if (!log.isEmpty()) {
+			pending.add(new String[] { path, key, change, old, value });
+		}
+	}
+
+	/**
+	 * Appends the changes recorded since the last commit to the log. Called once the generation
+	 * has been committed to the database.
+	 */
+	public void commit() {
+		try {
+			for (String[] change : pending) {
+				write(change[0], change[1], change[2], change[3], change[4]);
+			}
+			if (out != null) {
+				out.flush();
+			}
+		} catch (IOException e) {
+			if (!failed) {
+				System.err.println("[DATABASE ERROR] Unable to write to change log " + log + ": " + e.getMessage());
+			}
+			failed = true;
+			close();
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Appends a single change to the log.
+	 */
+	private void write(String path, String key, String change, String old, String value) throws IOException {
+		if (failed) {
+			return;
+		}
+		if (out == null) {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(log, true), StandardCharsets.UTF_8);
+			out = factory.createGenerator(new BufferedWriter(writer));
+			out.setRootValueSeparator(null);
+		}
+		out.writeStartObject();
+		out.writeNumberField("generation", generation);
+		out.writeStringField("time", time);
+		out.writeStringField("path", path);
+		out.writeStringField("key", key);
+		out.writeStringField("change", change);
+		if (old != null) {
+			out.writeStringField("old", old);
+		}
+		if (value != null) {
+			out.writeStringField("new", value);
+		}
+		out.writeEndObject();
+		out.writeRaw('\n');
+	}
+
+	/**
+	 * Flushes and closes the log. Changes that were never committed are dropped.
+	 */
+	@Override
+	public void close() {
+		pending.clear();
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				if (!failed) {
+					System.err.println("[DATABASE ERROR] Unable to write to change log " + log + ": " + e.getMessage());
+				}
+			}
+			out = null;
+		}
+	}
+
+}
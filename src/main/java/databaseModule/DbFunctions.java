@@ -1,11 +1,17 @@
 package databaseModule;
 
 import java.io.*;
+import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.regex.PatternSyntaxException;
 
+import driver.Metrics;
 import driver.SQLiteManager;
 import parser.AbstractParser;
 import parser.DirectoryParser;
+import parser.FileMetadata;
+import parser.FileParser;
+import parser.StringPool;
 
 /**
  * A collection of functions that relate to working directly with the database.
@@ -25,24 +31,143 @@ public class DbFunctions {
 	 * @return the number of properties added to the database
 	 */
 	public static long populate(String path) {
+		long start = Metrics.start();
+		File root = new File(path);
+		DirectoryParser directory = new DirectoryParser(root);
+		directory.parseAll();
+		Metrics.time("populate.parse", start);
+		long populated = store(directory.getParsedData(), Collections.<String>emptySet(), false);
+		Metrics.time("populate.total", start);
+		return populated;
+	}
+
+	/**
+	 * Replaces every environment within a root directory with the files in the root: the files are
+	 * cached just as by {@link #populate(String)}, and the cached files (and .ignore files) of those
+	 * environments that are no longer in the root are removed. If the database is sharded, each
+	 * environment is loaded into a staging file that is then swapped in for its shard (see
+	 * {@link SQLiteManager#replaceEnvironments(Collection, Runnable)}).
+	 * 
+	 * @param path
+	 *            the path of the root directory containing the environments
+	 * @return the number of properties added to the database
+	 */
+	public static long replace(String path) {
+		return replace(path, Collections.<String>emptySet());
+	}
 
+	/**
+	 * Replaces every environment within a root directory with the files in the root, just as
+	 * {@link #replace(String)} does, along with the given environments even if they are no longer
+	 * in the root, in which case every cached file (and .ignore file) of theirs is removed.
+	 * 
+	 * @param path
+	 *            the path of the root directory containing the environments
+	 * @param environments
+	 *            the environments to replace in addition to those within the root, e.g. those
+	 *            whose directories may have been deleted
+	 * @return the number of properties added to the database
+	 */
+	public static long replace(String path, Collection<String> environments) {
+		long start = Metrics.start();
 		File root = new File(path);
 		DirectoryParser directory = new DirectoryParser(root);
 		directory.parseAll();
-		ArrayList<AbstractParser> parsedFiles = directory.getParsedData();
+		Metrics.time("populate.parse", start);
+
+		// finds the cached files and .ignore files of each environment that are not in the root
+		Set<String> replaced = new TreeSet<>(environments);
+		Set<String> parsed = new HashSet<>();
+		for (AbstractParser parsedFile : directory.getParsedData()) {
+			FileMetadata metadata = parsedFile.getFileMetadata();
+			if (metadata.getEnvironment() != null) {
+				replaced.add(metadata.getEnvironment());
+			}
+			parsed.add(metadata.getPath());
+		}
+		Set<String> removed = new LinkedHashSet<>();
+		for (String environment : replaced) {
+			String sql = "SELECT path FROM " + SQLiteManager.getFileTable() + " WHERE environment = ?;";
+			for (Map<String, String> file : SQLiteManager.select(sql, environment)) {
+				removed.add(file.get("path"));
+			}
+			removed.addAll(IgnoreRules.getSources(environment));
+		}
+		removed.removeAll(parsed);
+
+		long populated = store(directory.getParsedData(), removed, true);
+		Metrics.time("populate.total", start);
+		return populated;
+	}
+
+	/**
+	 * Re-caches only the files of a root that changed since it was last cached: changed files are
+	 * parsed and replaced, and removed files (or every file within a removed directory) are
+	 * deleted along with any ignore rules they defined.
+	 * 
+	 * @param root
+	 *            the root directory
+	 * @param changed
+	 *            the files that were created or modified
+	 * @param removed
+	 *            the paths of the files or directories that were deleted, relative to the root
+	 * @return the number of properties added to the database
+	 */
+	public static long sync(File root, Collection<File> changed, Collection<String> removed) {
+		long start = Metrics.start();
+		List<AbstractParser> parsedFiles = new ArrayList<>();
+		for (File file : changed) {
+			FileParser reader = new FileParser(root, file);
+			if (file.isFile() && reader.parseFile()) {
+				parsedFiles.add(reader.getData());
+			}
+		}
+
+		// resolves removed directories to the cached files and .ignore files they contained
+		Set<String> paths = new LinkedHashSet<>();
+		for (String path : removed) {
+			String sql = "SELECT path FROM " + SQLiteManager.getFileTable() + " WHERE path = ? OR (path > ? AND path < ?);";
+			for (Map<String, String> file : SQLiteManager.select(sql, path, path + "/", path + "0")) {
+				paths.add(file.get("path"));
+			}
+			paths.addAll(IgnoreRules.getSourcesWithin(path));
+		}
+		Metrics.time("populate.parse", start);
+		long populated = store(parsedFiles, paths, false);
+		Metrics.time("populate.total", start);
+		return populated;
+	}
+
+	/**
+	 * Caches parsed files and removes deleted files as a single transaction, so that an
+	 * interrupted update never leaves a root partially replaced.
+	 * 
+	 * @param parsedFiles
+	 *            the parsed files, each replacing any cached file with the same path
+	 * @param removed
+	 *            the paths of the cached files to delete, relative to their root
+	 * @param replace
+	 *            true if the files replace every property of their environments, which are then
+	 *            staged and swapped in if the database is sharded, else false
+	 * @return the number of properties added to the database
+	 */
+	private static long store(List<AbstractParser> parsedFiles, Collection<String> removed, boolean replace) {
 
-		LinkedList<Map<String, String>> deletions = new LinkedList<>();
 		LinkedList<Map<String, String>> documents = new LinkedList<>();
+		LinkedList<Map<String, String>> files = new LinkedList<>();
+		Map<String, List<Map<String, String>>> properties = new HashMap<>();
+		Set<String> environments = new HashSet<>();
 
-		// Map where each key is a metadata filter, each value is Set of properties within that
-		// scope that are preset to be ignored
-		Map<Map<String, String>, Set<String>> ignore = new HashMap<>();
+		// Map where each key is the metadata of a .ignore file, each value is Set of properties
+		// within that file's scope that are preset to be ignored
+		Map<FileMetadata, Set<String>> ignore = new HashMap<>();
 
 		// iterates through each parsed file
 		for (AbstractParser parsedFile : parsedFiles) {
 
-			Map<String, String> metadata = parsedFile.getMetadata();
-			Map<String, Object> properties = parsedFile.getData();
+			FileMetadata metadata = parsedFile.getFileMetadata();
+			Map<String, Object> data = parsedFile.getData();
+			environments.add(metadata.getEnvironment());
 
 			// if file is .ignore file, add to Map of filters and properties to ignore
 			if (parsedFile.isInternal()) {
@@ -52,50 +177,108 @@ public class DbFunctions {
 					ignore.put(metadata, new HashSet<String>());
 				}
 
-				for (Map.Entry<String, Object> property : properties.entrySet()) {
-					ignore.get(metadata).add(property.getKey());
+				// leaves out invalid regular expressions so they never reach the rule matchers
+				for (Map.Entry<String, Object> property : data.entrySet()) {
+					try {
+						KeyMatcher.validate(property.getKey());
+						ignore.get(metadata).add(property.getKey());
+					} catch (PatternSyntaxException e) {
+						System.err.println("[ERROR] Invalid pattern in " + metadata.getPath() + ": "
+								+ property.getKey());
+					}
 				}
 				continue;
 			}
 
 			// sets up each property as an individual Map<String, String>
-			for (Map.Entry<String, Object> property : properties.entrySet()) {
+			List<Map<String, String>> rows = new ArrayList<>(data.size());
+			for (Map.Entry<String, Object> property : data.entrySet()) {
 				Map<String, String> document = new LinkedHashMap<>();
 				document.put("key", property.getKey());
-				document.put("value", property.getValue().toString());
-				document.putAll(metadata);
+				document.put("value", StringPool.dedup(property.getValue().toString()));
+				metadata.copyTo(document);
 				document.put("ignore", "false");
-				documents.add(document);
+				rows.add(document);
 			}
+			documents.addAll(rows);
+			properties.put(metadata.getPath(), rows);
 
-			// queues metadata for deletion to "overwrite" existing properties with matching
-			deletions.add(metadata);
+			// records the file with its property count and content fingerprint
+			Map<String, String> file = metadata.toMap();
+			file.put("properties", Integer.toString(data.size()));
+			file.put("fingerprint", Long.toString(Fingerprint.of(data)));
+			files.add(file);
 
 		}
 
-		// functionally overwrites all existing properties with matching file metadata
-		SQLiteManager.deleteBatch(deletions);
-		SQLiteManager.insertBatch(documents);
-
-		// sets the "ignore" field to true for each property specified in each .ignore file
-		for (Map.Entry<Map<String, String>, Set<String>> entry : ignore.entrySet()) {
-			Map<String, String> filter = entry.getKey();
-			filter.remove("filename");
-			filter.remove("path");
-			filter.remove("extension");
-			Set<String> keys = entry.getValue();
-
-			Map<String, String> updated = new HashMap<>();
-			updated.put("ignore", "true");
-			SQLiteManager.update(updated, filter, keys);
+		// the environment of a removed file is the first segment of its path
+		for (String path : removed) {
+			environments.add(path.contains("/") ? path.substring(0, path.indexOf('/')) : null);
+		}
+
+		// overwrites every file as a single transaction, recording what changed as a new generation
+		long[] inserted = new long[1];
+		ChangeFeed[] feed = new ChangeFeed[1];
+		long start = Metrics.start();
+		Runnable work = () -> {
+			feed[0] = new ChangeFeed(SQLiteManager.newGeneration());
+			long phase = Metrics.start();
+			SQLiteManager.removeFiles(removed, feed[0]);
+			inserted[0] = SQLiteManager.replaceFiles(files, properties, feed[0]);
+			Metrics.time("populate.replace", phase);
+			for (String path : removed) {
+				if (path.endsWith(".ignore")) {
+					IgnoreRules.replace(path, null, Collections.<String>emptySet());
+				}
+			}
+
+			// keeps the search index in sync with the overwritten properties, of which only the
+			// replaced pairs can have left terms unused
+			phase = Metrics.start();
+			SearchIndex.prune(feed[0].getReplaced("key"), feed[0].getReplaced("value"));
+			SearchIndex.add(documents);
+			Metrics.time("populate.search_index", phase);
+
+			// replaces the ignore rules of each .ignore file rather than updating the properties
+			for (Map.Entry<FileMetadata, Set<String>> entry : ignore.entrySet()) {
+				IgnoreRules.replace(entry.getKey().getPath(), entry.getKey().toMap(), entry.getValue());
+			}
+
+			// recomputes the statistics of every environment that was populated
+			phase = Metrics.start();
+			Catalog.refresh(environments);
+			Metrics.time("populate.catalog", phase);
+		};
+		try {
+			if (replace) {
+				SQLiteManager.replaceEnvironments(environments, work);
+			} else {
+				SQLiteManager.transaction(environments, work);
+			}
+
+			// only logs the changes once they are committed
+			feed[0].commit();
+		} finally {
+			if (feed[0] != null) {
+				feed[0].close();
+			}
+		}
+		Metrics.time("populate.store", start);
+		Metrics.count("populate.rows", inserted[0]);
+
+		Map<String, Integer> changes = feed[0].getCounts();
+		if (ChangeFeed.getLog() != null && changes.values().stream().anyMatch(n -> n > 0)) {
+			System.out.println("[DATABASE MESSAGE] Logged " + changes.get(ChangeFeed.ADDED) + " added, "
+					+ changes.get(ChangeFeed.CHANGED) + " changed, and " + changes.get(ChangeFeed.REMOVED)
+					+ " removed key(s) to " + ChangeFeed.getLog() + ".");
 		}
 
-		return documents.size();
+		return inserted[0];
 	}
 
 	/**
-	 * Given a filter and set of properties, updates the "ignore" field for each property matching
-	 * the filter to the optionally-specified value.
+	 * Given a location and set of properties, sets each property (or key pattern) to be ignored or
+	 * acknowledged within that location. See {@link IgnoreRules} for how rules are evaluated.
 	 * 
 	 * @param location
 	 *            a specific path within which to ignore a property
@@ -109,16 +292,9 @@ public class DbFunctions {
 		// generates filter from location
 		Map<String, String> filter = location != null ? SQLiteManager.generatePathFilter(location) : new HashMap<>();
 
-		// removes unnecessary fields from filter
-		filter.remove("filename");
-		filter.remove("path");
-		filter.remove("extension");
-
-		// updates "ignore" field to toggled value
-		Map<String, String> update = new HashMap<>();
-		update.put("ignore", toggle ? "true" : "false");
-		SQLiteManager.update(update, filter, properties);
-
+		// stores a single rule per property instead of updating every matching property
+		IgnoreRules.set(filter, properties, toggle);
+		Catalog.refreshRules();
 	}
 
 	/**
@@ -136,49 +312,102 @@ public class DbFunctions {
 	}
 
 	/**
-	 * Generates DirTrees of the complete directory structure within the database.
+	 * Lazily lists the directory structure of the files within the database at an
+	 * optionally-specified scope, for callers that page through or truncate the listing.
+	 * 
+	 * @param path
+	 *            a specific branch of the structure to list
+	 * @param level
+	 *            the level to which the structure is being listed
+	 * @return an Iterator over the lines of the listing
+	 * @throws IllegalArgumentException
+	 *             if the path does not exist
+	 */
+	public static Iterator<String> listStructure(String path, int level) throws IllegalArgumentException {
+		return popTree().list(path, level);
+	}
+
+	/**
+	 * Gets the DirTree of the complete directory structure within the database. The DirTree is
+	 * generated from the file table once and then updated as files are populated, deleted, or
+	 * cleared (see {@link driver.SQLiteManager#getStructure()}).
 	 * 
-	 * @return the generated DirTree, a representation of the complete directory structure within
-	 *         the database
+	 * @return the DirTree, a representation of the complete directory structure within the
+	 *         database
 	 */
 	public static DirTree popTree() {
-		DirTree tree = new DirTree();
-		Iterator<String> paths = SQLiteManager.getDistinct("path", null).iterator();
-		while (paths.hasNext()) {
-			tree.insert(paths.next());
+		return SQLiteManager.getStructure();
+	}
+
+	/**
+	 * Lists the most recent generations of the database, i.e. the versions recorded by each
+	 * `populate`, with the number of property versions each one added and closed.
+	 * 
+	 * @param limit
+	 *            the most generations to list
+	 */
+	public static void printHistory(int limit) {
+
+		// counts the property versions each generation added and closed
+		Map<String, String> added = new HashMap<>();
+		Map<String, String> closed = new HashMap<>();
+		String sql = "SELECT valid_from AS id, COUNT(*) AS n FROM " + SQLiteManager.getHistoryTable()
+				+ " GROUP BY valid_from;";
+		for (Map<String, String> row : SQLiteManager.select(sql)) {
+			added.put(row.get("id"), row.get("n"));
+		}
+		sql = "SELECT valid_to AS id, COUNT(*) AS n FROM " + SQLiteManager.getHistoryTable() + " GROUP BY valid_to;";
+		for (Map<String, String> row : SQLiteManager.select(sql)) {
+			closed.put(row.get("id"), row.get("n"));
+		}
+
+		List<Map<String, String>> generations = SQLiteManager
+				.select("SELECT id, time FROM generations ORDER BY id DESC LIMIT " + limit + ";");
+		if (generations.isEmpty()) {
+			System.out.println("\nNo generations recorded.\n");
+			return;
+		}
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+		System.out.println("\ngeneration\ttime\t\t\tadded\tchanged or removed");
+		for (int i = generations.size() - 1; i >= 0; i--) {
+			String id = generations.get(i).get("id");
+			String time = format.format(new Date(Long.parseLong(generations.get(i).get("time"))));
+			System.out.println(id + "\t\t" + time + "\t" + added.getOrDefault(id, "0") + "\t"
+					+ closed.getOrDefault(id, "0"));
 		}
-		return tree;
+		System.out.println("\nUse `compare <path>@<generation> <path>` to compare against a past generation.\n");
 	}
 
 	/**
 	 * Gives a high-level summary of the contents of the database (i.e. number of environments,
-	 * fabrics, nodes, files).
+	 * fabrics, nodes, files), read entirely from the precomputed {@link Catalog}.
 	 */
 	public static void printInfo() {
 
-		// calculates numbers of tree nodes at respective depths
-		DirTree tree = popTree();
-		long properties = SQLiteManager.getSize();
-		int level = 1;
-		int envs = tree.countNodes(tree.getRoot(), level++, true);
-		int fabrics = tree.countNodes(tree.getRoot(), level++, true);
-		int nodes = tree.countNodes(tree.getRoot(), level++, true);
-		int files = tree.countNodes(tree.getRoot(), level++, false);
-
-		System.out.println("\nThere are currently " + properties + " properties in the database.");
+		// reads the summary from the catalog rather than the properties
+		Map<String, String> database = Catalog.getDatabase();
+		List<Map<String, String>> environments = Catalog.get("environment");
+		int envs = environments.size();
+		int fabrics = Catalog.get("fabric").size();
+		int nodes = Catalog.get("node").size();
+
+		System.out.println("\nThere are currently " + database.get("properties") + " properties in the database ("
+				+ database.get("keys") + " distinct keys, " + database.get("ignored") + " ignore rules).");
 		System.out.println("\nenvironments\t\t" + envs + " (see below)");
 		System.out.println(" > fabrics\t\t" + fabrics);
 		System.out.println("   - nodes\t\t" + nodes);
-		System.out.println("     - files\t\t" + files);
+		System.out.println("     - files\t\t" + database.get("files"));
+		for (Map<String, String> extension : Catalog.get("extension")) {
+			System.out.println("       - ." + extension.get("name") + "\t" + extension.get("files"));
+		}
 
 		// print environments
 		if (envs != 0) {
 			System.out.println("\nEnvironments:");
 		}
 		int i = 0;
-		Iterator<String> environments = SQLiteManager.getDistinct("environment", null).iterator();
-		while (environments.hasNext()) {
-			System.out.println(++i + ". " + environments.next());
+		for (Map<String, String> environment : environments) {
+			System.out.println(++i + ". " + environment.get("name"));
 		}
 		System.out.println("\nUse the 'list' command to see a detailed database structure.\n");
 	}
@@ -186,16 +415,10 @@ public class DbFunctions {
 	/**
 	 * Getter method for the database properties set to be ignored.
 	 * 
-	 * @return a Set containing all the properties with the "ignore" field marked as "true"
+	 * @return a Set containing every key or key pattern ignored within some location
 	 */
 	public static Set<String> getIgnored() {
-		Set<String> ignored = new HashSet<>();
-		String sql = "SELECT DISTINCT key FROM " + SQLiteManager.getTable() + " WHERE ignore = 'true';";
-		Iterator<Map<String, String>> iter = SQLiteManager.select(sql).iterator();
-		while (iter.hasNext()) {
-			ignored.add(iter.next().get("key"));
-		}
-		return ignored;
+		return IgnoreRules.getIgnored();
 	}
 
 }
@@ -3,7 +3,9 @@ package databaseModule;
 import java.util.*;
 
 /**
- * Represents a basic directory structure as a tree.
+ * Represents a basic directory structure as a tree. Each DirNode keys its children by name and
+ * caches the number of DirNodes beneath it at every relative depth, so lookups are proportional to
+ * the depth of a path and counts at any depth take constant time.
  * 
  * @author Sumeet Bansal
  * @version 1.0
@@ -22,8 +24,11 @@ public class DirTree {
 	protected class DirNode {
 
 		String name;
-		Set<DirNode> children;
+		DirNode parent;
+		Map<String, DirNode> children;
 		boolean isDir;
+		int[] dirs;		// the number of directories at each relative depth, including this DirNode
+		int[] all;		// the number of directories and files at each relative depth
 
 		/**
 		 * Constructor for class DirNode, initializes all fields.
@@ -35,8 +40,10 @@ public class DirTree {
 		 */
 		public DirNode(String name, boolean isDir) {
 			this.name = name;
-			children = new LinkedHashSet<>();
+			children = new LinkedHashMap<>();
 			this.isDir = isDir;
+			dirs = new int[] { isDir ? 1 : 0 };
+			all = new int[] { 1 };
 		}
 
 		/**
@@ -53,8 +60,19 @@ public class DirTree {
 		 * 
 		 * @return the DirNode children
 		 */
-		public Set<DirNode> getChildren() {
-			return children;
+		public Collection<DirNode> getChildren() {
+			return children.values();
+		}
+
+		/**
+		 * Getter for a single child of the DirNode.
+		 * 
+		 * @param name
+		 *            the name of the child
+		 * @return the child with the given name, or null if there is none
+		 */
+		public DirNode getChild(String name) {
+			return children.get(name);
 		}
 
 		/**
@@ -67,24 +85,77 @@ public class DirTree {
 		}
 
 		/**
-		 * Adds a child to the DirNode.
+		 * Adds a child to the DirNode, replacing any child of the same name, and updates the cached
+		 * counts of the DirNode and of each of its ancestors.
 		 * 
 		 * @param child
 		 *            the DirNode's new child
 		 */
 		public void addChild(DirNode child) {
-			children.add(child);
+			DirNode replaced = children.put(child.getName(), child);
+			if (replaced != null) {
+				replaced.parent = null;
+				recount(replaced, -1);
+			}
+			child.parent = this;
+			recount(child, 1);
 		}
 
 		/**
-		 * Removes specified child node from DirNode's children.
+		 * Removes specified child node from DirNode's children, and updates the cached counts of the
+		 * DirNode and of each of its ancestors.
 		 * 
 		 * @param child
 		 *            child to be removed
 		 * @return true in case of successful remove, else false
 		 */
 		public boolean removeChild(DirNode child) {
-			return children.remove(child);
+			if (!children.remove(child.getName(), child)) {
+				return false;
+			}
+			child.parent = null;
+			recount(child, -1);
+			return true;
+		}
+
+		/**
+		 * Adds or subtracts the DirNodes of a child's branch to or from the counts of the DirNode
+		 * and of each of its ancestors, at the relative depth of each.
+		 * 
+		 * @param child
+		 *            the child whose branch was added or removed
+		 * @param sign
+		 *            1 if the branch was added, -1 if it was removed
+		 */
+		private void recount(DirNode child, int sign) {
+			int depth = 1;
+			for (DirNode ancestor = this; ancestor != null; ancestor = ancestor.parent, depth++) {
+				for (int level = 0; level < child.all.length; level++) {
+					ancestor.count(depth + level, false, sign * (child.all[level] - child.dirs[level]));
+					ancestor.count(depth + level, true, sign * child.dirs[level]);
+				}
+			}
+		}
+
+		/**
+		 * Adjusts the number of DirNodes at a given depth below this DirNode.
+		 * 
+		 * @param depth
+		 *            the depth of the DirNodes relative to this DirNode
+		 * @param isDir
+		 *            boolean indicating if the DirNodes represent directories
+		 * @param amount
+		 *            the number of DirNodes added, or negative if DirNodes were removed
+		 */
+		private void count(int depth, boolean isDir, int amount) {
+			if (depth >= all.length) {
+				all = Arrays.copyOf(all, depth + 1);
+				dirs = Arrays.copyOf(dirs, depth + 1);
+			}
+			all[depth] += amount;
+			if (isDir) {
+				dirs[depth] += amount;
+			}
 		}
 	} // end of class DirNode
 
@@ -109,7 +180,7 @@ public class DirTree {
 	}
 
 	/**
-	 * Getter for the number of elements in the tree.
+	 * Getter for the number of elements (i.e. distinct inserted paths) in the tree.
 	 * 
 	 * @return the number of elements in the tree
 	 */
@@ -118,7 +189,7 @@ public class DirTree {
 	}
 
 	/**
-	 * Inserts DirNode into the tree recursively.
+	 * Inserts DirNode into the tree, creating any missing directories along the path.
 	 * 
 	 * @param path
 	 *            the new path being inserted
@@ -130,8 +201,62 @@ public class DirTree {
 			throw new NullPointerException("The path is null.");
 		}
 
-		nelems++;
-		add(root, path);
+		// walks down the existing branch, then creates the rest of the path beneath it
+		String[] segments = path.split("/");
+		DirNode[] branch = new DirNode[segments.length + 1];
+		branch[0] = root;
+		for (int depth = 1; depth <= segments.length; depth++) {
+			DirNode parent = branch[depth - 1];
+			DirNode child = parent.getChild(segments[depth - 1]);
+			if (child == null) {
+				boolean isDir = depth < segments.length; // only the last segment is a file
+				child = new DirNode(segments[depth - 1], isDir);
+				parent.addChild(child);
+				if (!isDir) {
+					nelems++;
+				}
+			}
+			branch[depth] = child;
+		}
+	}
+
+	/**
+	 * Removes a path and everything beneath it from the tree, along with any directories left
+	 * empty by the removal.
+	 * 
+	 * @param path
+	 *            the path being removed
+	 * @return true if the path was in the tree, else false
+	 * @throws NullPointerException
+	 *             if the path is null
+	 */
+	public boolean remove(String path) throws NullPointerException {
+		if (path == null) {
+			throw new NullPointerException("The path is null.");
+		}
+
+		// records the branch leading to the DirNode
+		String[] segments = path.split("/");
+		DirNode[] branch = new DirNode[segments.length + 1];
+		branch[0] = root;
+		for (int depth = 1; depth <= segments.length; depth++) {
+			branch[depth] = branch[depth - 1].getChild(segments[depth - 1]);
+			if (branch[depth] == null || segments[depth - 1].isEmpty()) {
+				return false;
+			}
+		}
+
+		// detaches the DirNode, then any ancestors it was the last child of
+		int depth = segments.length;
+		do {
+			DirNode node = branch[depth];
+			branch[depth - 1].removeChild(node);
+			for (int level = 0; level < node.all.length; level++) {
+				nelems -= node.all[level] - node.dirs[level];
+			}
+			depth--;
+		} while (depth > 0 && branch[depth].getChildren().isEmpty());
+		return true;
 	}
 
 	/**
@@ -169,177 +294,197 @@ public class DirTree {
 		if (path == null) {
 			throw new NullPointerException("The path is null.");
 		}
-		if (findNode(root, path) == null) {
+		DirNode node = findNode(root, path);
+		if (node == null) {
 			throw new IllegalArgumentException("No such path.");
 		}
 
 		// returns names of children
-		DirNode node = findNode(root, path);
-		Set<String> children = new HashSet<>();
-		if (node != null) {
-			for (DirNode child : node.getChildren()) {
-				children.add(child.getName());
-			}
-		}
-		return children;
+		return new LinkedHashSet<>(node.children.keySet());
 	}
 
 	/**
-	 * Helper method that finds a specific DirNode recursively.
+	 * Helper method that finds a specific DirNode.
 	 * 
 	 * @param curNode
-	 *            the current DirNode being checked
+	 *            the DirNode the path is relative to
 	 * @param path
 	 *            the path of the DirNode to be found
 	 * @return the specified DirNode, or null
 	 */
 	private DirNode findNode(DirNode curNode, String path) {
+		for (String segment : path.split("/")) {
 
-		// shifts the key and path one level down
-		String key = "";
-		if (path.indexOf("/") != -1) {
-			key = path.substring(0, path.indexOf("/"));
-			path = path.substring(path.indexOf("/") + 1);
-		} else {
-			key = path;
-			path = "";
-		}
-
-		// base case
-		if (key.equals("")) {
-			return curNode;
-		}
-
-		// recursive case
-		for (DirNode child : curNode.getChildren()) {
-			if (key.equals(child.getName())) {
-				return findNode(child, path);
+			// an empty segment ends the path
+			if (segment.isEmpty()) {
+				break;
+			}
+			curNode = curNode.getChild(segment);
+			if (curNode == null) {
+				return null;
 			}
 		}
-
-		// no matching node found
-		return null;
+		return curNode;
 	}
 
 	/**
-	 * Helper method that adds a DirNode to the tree recursively.
-	 * 
-	 * @param curNode
-	 *            the current DirNode being checked
+	 * Prints a branch of the tree.
 	 * @param path
-	 *            the path of the DirNode to be added
+	 *            the DirNode whose branch is being printed
+	 * @param level
+	 *            the number of levels to traverse
 	 */
-	private void add(DirNode curNode, String path) {
-
-		// base case
-		if (path == null) {
+	public void print(String path, int level) {
+		if (findNode(root, path) == null) {
+			System.err.println("[ERROR] Invalid path.");
 			return;
 		}
-
-		// shifts the key and path one level down
-		String key;
-		boolean isDir;
-		if (path.indexOf("/") != -1) {
-			key = path.substring(0, path.indexOf("/"));
-			path = path.substring(path.indexOf("/") + 1);
-			isDir = true; // must be a directory
-		} else {
-			key = path;
-			path = null;
-			isDir = false; // must be a file
+		Iterator<String> lines = list(path, level);
+		while (lines.hasNext()) {
+			System.out.println(lines.next());
 		}
-
-		// finds correct child and goes down another level
-		for (DirNode child : curNode.getChildren()) {
-			if (child.getName().equals(key)) {
-				add(child, path);
-				return;
-			}
-		}
-
-		// code block only reachable if no matching children
-		DirNode child = new DirNode(key, isDir);
-		curNode.addChild(child);
-		add(child, path);
 	}
 
 	/**
-	 * Prints a branch of the tree.
+	 * Lists a branch of the tree depth-first, one line per DirNode. The listing is lazy: each line
+	 * is only generated when requested, so a caller can page through the branch or stop early
+	 * without the rest of the branch ever being visited. Directories are annotated with their
+	 * number of children.
+	 * 
 	 * @param path
-	 *            the DirNode whose branch is being printed
+	 *            the DirNode whose branch is being listed
 	 * @param level
-	 *            the number of levels to traverse
+	 *            the number of levels to traverse, or a negative number to traverse every level
+	 * @return an Iterator over the lines of the listing
+	 * @throws IllegalArgumentException
+	 *             if the path does not exist
 	 */
-	public void print(String path, int level) {
+	public Iterator<String> list(String path, int level) throws IllegalArgumentException {
 		DirNode node = findNode(root, path);
 		if (node == null) {
-			System.err.println("[ERROR] Invalid path.");
-			return;
+			throw new IllegalArgumentException("No such path.");
 		}
+		return new Listing(node, level);
+	}
+
+	/**
+	 * A depth-first cursor over a branch of the tree, backed by an explicit stack of child
+	 * iterators rather than recursion.
+	 * 
+	 * @author ActianceEngInterns
+	 * @version 1.4.0
+	 */
+	private class Listing implements Iterator<String> {
+
+		private static final String BUFFER = " | ";
+
+		private Deque<Iterator<DirNode>> stack = new ArrayDeque<>();
+		private List<String> buffers = new ArrayList<>();
+		private String header;
+		private int offset;
+		private int level;
+
+		/**
+		 * Constructor for class Listing.
+		 * 
+		 * @param node
+		 *            the DirNode whose branch is being listed
+		 * @param level
+		 *            the number of levels to traverse, or a negative number for every level
+		 */
+		Listing(DirNode node, int level) {
+			this.level = level;
 
-		// purely for aesthetic purposes
-		String buffer = "";
-		if (node != root) {
-			System.out.println(node.getName());
-			buffer = " | ";
+			// purely for aesthetic purposes
+			if (node != root) {
+				header = describe(node);
+				offset = 1;
+			}
+			if (level != 0) {
+				stack.push(node.getChildren().iterator());
+			}
+			buffers.add("");
 		}
 
-		// calls on the recursive function
-		for (DirNode child : node.getChildren()) {
-			prnt(child, buffer, level);
+		@Override
+		public boolean hasNext() {
+			if (header != null) {
+				return true;
+			}
+
+			// discards exhausted levels until a DirNode is pending
+			while (!stack.isEmpty() && !stack.peek().hasNext()) {
+				stack.pop();
+			}
+			return !stack.isEmpty();
 		}
-	}
 
-	/**
-	 * Private helper method for in-order traversal.
-	 * @param node
-	 *            the current DirNode
-	 * @param buffer
-	 *            the String buffer (used to indicate levels)
-	 * @param level
-	 *            the number of levels to traverse
-	 */
-	private void prnt(DirNode node, String buffer, int level) {
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (header != null) {
+				String line = header;
+				header = null;
+				return line;
+			}
 
-		// base case
-		if (level == 0) {
-			return;
+			int depth = stack.size();
+			DirNode child = stack.peek().next();
+			if (level < 0 || depth < level) {
+				stack.push(child.getChildren().iterator());
+			}
+			return buffer(depth - 1 + offset) + describe(child);
 		}
 
-		// recursive case
-		System.out.println(buffer + node.getName());
-		for (DirNode child : node.getChildren()) {
-			prnt(child, buffer + " | ", level - 1);
+		/**
+		 * Gets the buffer for a depth, building each distinct buffer only once.
+		 * 
+		 * @param depth
+		 *            the depth of the line relative to the listed branch
+		 * @return the buffer (used to indicate levels)
+		 */
+		private String buffer(int depth) {
+			while (buffers.size() <= depth) {
+				buffers.add(buffers.get(buffers.size() - 1) + BUFFER);
+			}
+			return buffers.get(depth);
+		}
+
+		/**
+		 * Describes a single DirNode, annotating directories with their number of children.
+		 * 
+		 * @param node
+		 *            the DirNode
+		 * @return the name of the DirNode and, for directories, its number of children
+		 */
+		private String describe(DirNode node) {
+			return node.isDirectory() ? node.getName() + " (" + node.children.size() + ")" : node.getName();
 		}
 	}
 
 	/**
 	 * Counts the number of nodes at a certain depth (useful for checking how many nodes/files/etc.
-	 * are currently in the database).
+	 * are currently in the database). The counts are maintained as children are added and removed,
+	 * so this takes constant time.
 	 * @param node
-	 *            the current dirNode in the traversal
+	 *            the DirNode the depth is relative to
 	 * @param level
-	 *            the number of levels remaining to traverse through
+	 *            the depth, relative to the DirNode, at which nodes are being counted
 	 * @param dirsOnly
 	 *            true to only report tree nodes representing directories, false to report files as
 	 *            well
 	 * @return the number of nodes at a certain depth
 	 */
 	public int countNodes(DirNode node, int level, boolean dirsOnly) {
-
-		// base case
-		if (level == 0) {
-			if (dirsOnly && !node.isDirectory()) {
-				return 0;
-			}
-			return 1;
+		if (node == null) {
+			return 0;
 		}
-
-		// recursive case
-		int nodes = 0;
-		for (DirNode child : node.getChildren()) {
-			nodes += countNodes(child, level - 1, dirsOnly);
+		int[] counts = dirsOnly ? node.dirs : node.all;
+		if (level < 0 || level >= counts.length) {
+			return 0;
 		}
-		return nodes;
+		return counts[level];
 	}
 }
@@ -0,0 +1,101 @@
+package databaseModule;
+
+import java.util.*;
+
+import driver.SQLiteManager;
+
+/**
+ * Computes order-independent content fingerprints of files and directories. A file's fingerprint
+ * is the sum (mod 2^64) of a 64-bit hash of each of its key-value pairs, so it does not depend on
+ * the order in which properties were parsed, and a directory's fingerprint is the sum of the
+ * fingerprints of the files beneath it. Two scopes with equal fingerprints therefore contain the
+ * same key-value pairs, regardless of where those scopes are in the directory structure. Since a
+ * comparison keeps a single property per key, equal fingerprints only mean equal comparisons if no
+ * key is in several files of either scope (see {@link queryModule.QueryEngine#run()}).
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class Fingerprint {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Hashes a single key-value pair.
+	 *
+	 * @param key
+	 *            the property key
+	 * @param value
+	 *            the property value
+	 * @return a 64-bit hash of the pair
+	 */
+	public static long hash(String key, String value) {
+		long h = FNV_OFFSET;
+		for (int i = 0; i < key.length(); i++) {
+			h = (h ^ key.charAt(i)) * FNV_PRIME;
+		}
+		h = (h ^ 0xFFFF) * FNV_PRIME; // separates the key from the value
+		for (int i = 0; i < value.length(); i++) {
+			h = (h ^ value.charAt(i)) * FNV_PRIME;
+		}
+
+		// finalizes so that similar pairs do not sum to similar fingerprints
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * Computes the fingerprint of a single parsed file.
+	 *
+	 * @param properties
+	 *            the parsed properties of the file
+	 * @return the fingerprint of the file
+	 */
+	public static long of(Map<String, Object> properties) {
+		long fingerprint = 0;
+		for (Map.Entry<String, Object> property : properties.entrySet()) {
+			fingerprint += hash(property.getKey(), property.getValue().toString());
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Rolls up the fingerprints of every cached file within a scope.
+	 *
+	 * @param filter
+	 *            the scope, as a standard filter
+	 * @param exclusions
+	 *            the paths of files excluded from the scope
+	 * @return an array containing the number of properties within the scope, the fingerprint of
+	 *         the scope, and the number of properties excluded from the scope, or null if any file
+	 *         within the scope has no valid fingerprint (or if the scope is a past generation, for
+	 *         which no fingerprints are kept)
+	 */
+	public static long[] ofScope(Map<String, String> filter, Set<String> exclusions) {
+		if (filter.containsKey("generation")) {
+			return null;
+		}
+		List<String> params = new ArrayList<>();
+		String sql = "SELECT path, properties, fingerprint FROM " + SQLiteManager.getFileTable()
+				+ SQLiteManager.generateSQLFilter(filter, null, params) + ";";
+		long properties = 0;
+		long fingerprint = 0;
+		long excluded = 0;
+		for (Map<String, String> file : SQLiteManager.select(sql, params.toArray(new String[0]))) {
+			if (exclusions.contains(file.get("path"))) {
+				excluded += Long.parseLong(file.get("properties"));
+				continue;
+			}
+			if (file.get("fingerprint") == null) {
+				return null;
+			}
+			properties += Long.parseLong(file.get("properties"));
+			fingerprint += Long.parseLong(file.get("fingerprint"));
+		}
+		long[] scope = { properties, fingerprint, excluded };
+		return scope;
+	}
+
+}
@@ -0,0 +1,314 @@
+package databaseModule;
+
+import java.util.*;
+import java.util.regex.*;
+
+import driver.SQLiteManager;
+
+/**
+ * Stores and evaluates the rules that determine which properties are ignored during comparisons.
+ * Each rule pairs a scope (an environment, fabric, and node, any of which may be unspecified) with
+ * a key pattern and either ignores or acknowledges the matching properties. Rules are kept in
+ * their own table and evaluated in memory at query time, so toggling an ignore touches a single
+ * rule rather than every matching property.
+ * <p>
+ * When several rules match a property, the rule with the most specific scope wins, and within a
+ * single scope acknowledging wins over ignoring. Patterns are exact keys, globs, or regular
+ * expressions (see {@link KeyMatcher}), and the patterns of each scope are compiled into a single
+ * matcher.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class IgnoreRules {
+
+	private static final String IGNORES = "ignores";
+	private static final String[] SCOPE = { "environment", "fabric", "node" };
+
+	// which of the environment (4), fabric (2), and node (1) a scope specifies, from the most to
+	// the least specific: by the number of specified fields, then by the shallowest specified field
+	private static final int[] SPECIFICITY = { 7, 6, 5, 3, 4, 2, 1, 0 };
+
+	private Map<String, Rules> scopes = new HashMap<>();
+	private Map<String, List<Rules>> applicable = new HashMap<>();
+
+	/**
+	 * The ignore and acknowledge rules of a single scope.
+	 */
+	private static class Rules {
+		List<String> ignored = new ArrayList<>();
+		List<String> acknowledged = new ArrayList<>();
+		KeyMatcher ignoring;
+		KeyMatcher acknowledging;
+
+		/**
+		 * Determines how this scope treats a key.
+		 *
+		 * @param key
+		 *            the property key
+		 * @return TRUE if the key is ignored, FALSE if it is acknowledged, or null if no rule of
+		 *         this scope matches it
+		 */
+		Boolean evaluate(String key) {
+			if (acknowledging.matches(key)) {
+				return Boolean.FALSE;
+			}
+			if (ignoring.matches(key)) {
+				return Boolean.TRUE;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Private constructor, see {@link #load()}.
+	 */
+	private IgnoreRules() {
+	}
+
+	/**
+	 * Loads every rule from the database into a matcher.
+	 *
+	 * @return the matcher
+	 */
+	public static IgnoreRules load() {
+		IgnoreRules rules = new IgnoreRules();
+		String sql = "SELECT environment, fabric, node, pattern, ignore FROM " + IGNORES + ";";
+		for (Map<String, String> rule : SQLiteManager.select(sql)) {
+			String scope = rule.get("environment") + "/" + rule.get("fabric") + "/" + rule.get("node");
+			Rules scoped = rules.scopes.get(scope);
+			if (scoped == null) {
+				scoped = new Rules();
+				rules.scopes.put(scope, scoped);
+			}
+			(rule.get("ignore").equals("true") ? scoped.ignored : scoped.acknowledged).add(rule.get("pattern"));
+		}
+
+		// compiles the patterns of each scope into a single matcher, skipping any invalid regex
+		// stored before patterns were validated
+		for (Rules scoped : rules.scopes.values()) {
+			scoped.ignoring = compile(scoped.ignored);
+			scoped.acknowledging = compile(scoped.acknowledged);
+		}
+		return rules;
+	}
+
+	/**
+	 * Checks if there are no rules at all.
+	 *
+	 * @return true if there are no rules, else false
+	 */
+	public boolean isEmpty() {
+		return scopes.isEmpty();
+	}
+
+	/**
+	 * Determines if a property is ignored.
+	 *
+	 * @param property
+	 *            the property as a standard Map, including its environment, fabric, and node
+	 * @return true if the property is ignored, else false
+	 */
+	public boolean isIgnored(Map<String, String> property) {
+		if (scopes.isEmpty()) {
+			return false;
+		}
+		for (Rules rules : getApplicable(property.get("environment"), property.get("fabric"), property.get("node"))) {
+			Boolean ignored = rules.evaluate(property.get("key"));
+			if (ignored != null) {
+				return ignored;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if any rule could apply to a property within a filter.
+	 *
+	 * @param filter
+	 *            the filter, as a standard Map
+	 * @return true if some rule's scope overlaps the filter, else false
+	 */
+	public boolean appliesWithin(Map<String, String> filter) {
+		for (String scope : scopes.keySet()) {
+			String[] fields = scope.split("/", -1);
+			boolean overlaps = true;
+			for (int i = 0; i < SCOPE.length; i++) {
+				String value = filter.get(SCOPE[i]);
+				overlaps &= fields[i].isEmpty() || value == null || value.equals(fields[i]);
+			}
+			if (overlaps) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the rules of every scope containing a location, from the most to the least specific.
+	 * Locations are cached, since every property of a file shares the same location.
+	 *
+	 * @param environment
+	 *            the environment, or null
+	 * @param fabric
+	 *            the fabric, or null
+	 * @param node
+	 *            the node, or null
+	 * @return the applicable rules
+	 */
+	private List<Rules> getApplicable(String environment, String fabric, String node) {
+		String[] location = { environment == null ? "" : environment, fabric == null ? "" : fabric,
+				node == null ? "" : node };
+		String key = location[0] + "/" + location[1] + "/" + location[2];
+		List<Rules> rules = applicable.get(key);
+		if (rules != null) {
+			return rules;
+		}
+
+		// each field of a containing scope is either unspecified or equal to the location's
+		rules = new ArrayList<>();
+		for (int specified : SPECIFICITY) {
+			String scope = "";
+			for (int i = 0; i < SCOPE.length; i++) {
+				scope += (i == 0 ? "" : "/") + ((specified & (1 << (SCOPE.length - 1 - i))) != 0 ? location[i] : "");
+			}
+			Rules scoped = scopes.get(scope);
+			if (scoped != null && !rules.contains(scoped)) {
+				rules.add(scoped);
+			}
+		}
+		applicable.put(key, rules);
+		return rules;
+	}
+
+	/**
+	 * Sets whether each pattern is ignored within a location, overriding any rules for the same
+	 * patterns within narrower scopes.
+	 *
+	 * @param filter
+	 *            the location, as a standard filter (fields other than environment, fabric, and node
+	 *            are disregarded)
+	 * @param patterns
+	 *            the keys or key patterns
+	 * @param toggle
+	 *            true to ignore the properties, false to acknowledge them
+	 */
+	public static void set(Map<String, String> filter, Collection<String> patterns, boolean toggle) {
+		String[] scope = scopeOf(filter);
+		List<String[]> statements = new ArrayList<>();
+		for (String pattern : patterns) {
+			statements.add(new String[] { "DELETE FROM " + IGNORES + " WHERE pattern = ? AND (? = '' OR environment = ?)"
+					+ " AND (? = '' OR fabric = ?) AND (? = '' OR node = ?);", pattern, scope[0], scope[0], scope[1],
+					scope[1], scope[2], scope[2] });
+			statements.add(new String[] { "INSERT INTO " + IGNORES
+					+ " (environment, fabric, node, pattern, ignore, source) VALUES (?, ?, ?, ?, ?, '');", scope[0],
+					scope[1], scope[2], pattern, toggle ? "true" : "false" });
+		}
+		SQLiteManager.executeTransaction(statements);
+	}
+
+	/**
+	 * Replaces the rules read from a single .ignore file.
+	 *
+	 * @param source
+	 *            the path of the .ignore file
+	 * @param filter
+	 *            the location of the .ignore file, as a standard filter
+	 * @param patterns
+	 *            the keys or key patterns listed in the file
+	 */
+	public static void replace(String source, Map<String, String> filter, Collection<String> patterns) {
+		String[] scope = scopeOf(filter);
+		List<String[]> statements = new ArrayList<>();
+		statements.add(new String[] { "DELETE FROM " + IGNORES + " WHERE source = ?;", source });
+		for (String pattern : patterns) {
+			statements.add(new String[] { "INSERT OR REPLACE INTO " + IGNORES
+					+ " (environment, fabric, node, pattern, ignore, source) VALUES (?, ?, ?, ?, 'true', ?);", scope[0],
+					scope[1], scope[2], pattern, source });
+		}
+		SQLiteManager.executeTransaction(statements);
+	}
+
+	/**
+	 * Gets the paths of the .ignore files whose rules apply within an environment.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @return a Set of the paths of the .ignore files
+	 */
+	public static Set<String> getSources(String environment) {
+		Set<String> sources = new TreeSet<>();
+		String sql = "SELECT DISTINCT source FROM " + IGNORES + " WHERE environment = ? AND source <> '';";
+		for (Map<String, String> rule : SQLiteManager.select(sql, environment)) {
+			sources.add(rule.get("source"));
+		}
+		return sources;
+	}
+
+	/**
+	 * Gets the paths of the .ignore files at or within a path, e.g. those of a deleted directory.
+	 *
+	 * @param path
+	 *            the path of a file or directory, relative to its root
+	 * @return a Set of the paths of the .ignore files
+	 */
+	public static Set<String> getSourcesWithin(String path) {
+		Set<String> sources = new TreeSet<>();
+		String sql = "SELECT DISTINCT source FROM " + IGNORES + " WHERE source = ? OR (source > ? AND source < ?);";
+		for (Map<String, String> rule : SQLiteManager.select(sql, path, path + "/", path + "0")) {
+			sources.add(rule.get("source"));
+		}
+		return sources;
+	}
+
+	/**
+	 * Gets every key or key pattern that is ignored within some scope.
+	 *
+	 * @return a Set of the ignored keys and key patterns
+	 */
+	public static Set<String> getIgnored() {
+		Set<String> ignored = new TreeSet<>();
+		String sql = "SELECT DISTINCT pattern FROM " + IGNORES + " WHERE ignore = 'true';";
+		for (Map<String, String> rule : SQLiteManager.select(sql)) {
+			ignored.add(rule.get("pattern"));
+		}
+		return ignored;
+	}
+
+	/**
+	 * Converts a standard filter to the environment, fabric, and node of a scope.
+	 *
+	 * @param filter
+	 *            the filter, or null for every location
+	 * @return the scope, with empty Strings for unspecified fields
+	 */
+	private static String[] scopeOf(Map<String, String> filter) {
+		String[] scope = new String[SCOPE.length];
+		for (int i = 0; i < SCOPE.length; i++) {
+			String value = filter == null ? null : filter.get(SCOPE[i]);
+			scope[i] = value == null ? "" : value;
+		}
+		return scope;
+	}
+
+	/**
+	 * Compiles key patterns into a matcher, leaving out and reporting any invalid pattern.
+	 *
+	 * @param patterns
+	 *            the keys or key patterns
+	 * @return the matcher
+	 */
+	private static KeyMatcher compile(List<String> patterns) {
+		List<String> valid = new ArrayList<>();
+		for (String pattern : patterns) {
+			try {
+				KeyMatcher.validate(pattern);
+				valid.add(pattern);
+			} catch (PatternSyntaxException e) {
+				System.err.println("[ERROR] Invalid ignore pattern: " + pattern);
+			}
+		}
+		return new KeyMatcher(valid);
+	}
+
+}
@@ -0,0 +1,248 @@
+package databaseModule;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Matches property keys against a set of key patterns at once. Patterns are either exact keys,
+ * globs, or regular expressions:
+ * <ul>
+ * <li>`*` matches any run of characters within a single segment of a key, where segments are
+ * separated by `/` or `.` (e.g. `server.*.port`)
+ * <li>`**` matches any run of characters, including separators (e.g. `**.password`)
+ * <li>a pattern starting with `regex:` is a regular expression that must match the entire key
+ * </ul>
+ * Exact keys are hashed, and every glob is compiled into a single automaton whose deterministic
+ * states are built lazily as keys are matched, so each key is checked in a single pass no matter
+ * how many globs there are. Regular expressions are combined into a single alternation and are
+ * only evaluated for keys that no other pattern matches.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class KeyMatcher {
+
+	public static final String REGEX = "regex:";
+
+	// glob tokens other than literal characters
+	private static final int STAR = -1;
+	private static final int GLOBSTAR = -2;
+	private static final int ACCEPT = -3;
+
+	// the most deterministic states cached before the cache is discarded and rebuilt
+	private static final int MAX_STATES = 100000;
+
+	private Set<String> literals = new HashSet<>();
+	private Pattern regex;
+	private int[] tokens;
+	private int[] starts;
+	private Map<State, State> states = new HashMap<>();
+	private State start;
+
+	/**
+	 * A deterministic state: the set of positions within the globs that a prefix of a key can
+	 * reach, with its outgoing transitions cached as they are taken. Most states have only a few
+	 * transitions, so they are kept in small parallel arrays rather than a table per state.
+	 */
+	private static class State {
+		final int[] positions;
+		final boolean accept;
+		char[] labels = new char[2];
+		State[] targets = new State[2];
+		int transitions;
+
+		State(int[] positions, boolean accept) {
+			this.positions = positions;
+			this.accept = accept;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof State && Arrays.equals(positions, ((State) o).positions);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(positions);
+		}
+	}
+
+	/**
+	 * Constructor. Compiles a Collection of key patterns.
+	 *
+	 * @param patterns
+	 *            the exact keys, globs, and regular expressions
+	 * @throws PatternSyntaxException
+	 *             if any regular expression is invalid
+	 */
+	public KeyMatcher(Collection<String> patterns) throws PatternSyntaxException {
+		List<String> globs = new ArrayList<>();
+		List<String> regexes = new ArrayList<>();
+		for (String pattern : patterns) {
+			if (pattern.startsWith(REGEX)) {
+				validate(pattern);
+				regexes.add("(?:" + pattern.substring(REGEX.length()) + ")");
+			} else if (pattern.contains("*")) {
+				globs.add(pattern);
+			} else {
+				literals.add(pattern);
+			}
+		}
+		if (!regexes.isEmpty()) {
+			regex = Pattern.compile(String.join("|", regexes));
+		}
+
+		// lays out every glob as a run of tokens ending in an accepting position
+		int length = 0;
+		for (String glob : globs) {
+			length += glob.length() + 1;
+		}
+		tokens = new int[length];
+		starts = new int[globs.size()];
+		int position = 0;
+		for (int i = 0; i < globs.size(); i++) {
+			starts[i] = position;
+			String glob = globs.get(i);
+			for (int j = 0; j < glob.length(); j++) {
+				char c = glob.charAt(j);
+				if (c == '*' && j + 1 < glob.length() && glob.charAt(j + 1) == '*') {
+					tokens[position++] = GLOBSTAR;
+					while (j + 1 < glob.length() && glob.charAt(j + 1) == '*') {
+						j++;
+					}
+				} else {
+					tokens[position++] = c == '*' ? STAR : c;
+				}
+			}
+			tokens[position++] = ACCEPT;
+		}
+		tokens = Arrays.copyOf(tokens, position);
+		reset();
+	}
+
+	/**
+	 * Checks if a pattern is valid, i.e. if it is not an invalid regular expression.
+	 *
+	 * @param pattern
+	 *            the key pattern
+	 * @throws PatternSyntaxException
+	 *             if the pattern is an invalid regular expression
+	 */
+	public static void validate(String pattern) throws PatternSyntaxException {
+		if (pattern.startsWith(REGEX)) {
+			Pattern.compile(pattern.substring(REGEX.length()));
+		}
+	}
+
+	/**
+	 * Determines if a key matches any of the patterns.
+	 *
+	 * @param key
+	 *            the property key
+	 * @return true if some pattern matches the key, else false
+	 */
+	public boolean matches(String key) {
+		if (literals.contains(key)) {
+			return true;
+		}
+		if (starts.length > 0) {
+			State state = start;
+			for (int i = 0; i < key.length() && state.positions.length > 0; i++) {
+				state = next(state, key.charAt(i));
+			}
+			if (state.accept) {
+				return true;
+			}
+		}
+		return regex != null && regex.matcher(key).matches();
+	}
+
+	/**
+	 * Follows a transition, computing and caching it if it has not been taken before.
+	 *
+	 * @param state
+	 *            the current state
+	 * @param c
+	 *            the next character of the key
+	 * @return the next state
+	 */
+	private State next(State state, char c) {
+		for (int i = 0; i < state.transitions; i++) {
+			if (state.labels[i] == c) {
+				return state.targets[i];
+			}
+		}
+
+		// advances every position that can consume the character
+		int[] reached = new int[state.positions.length * 2];
+		int size = 0;
+		for (int position : state.positions) {
+			int token = tokens[position];
+			if (token == c) {
+				reached[size++] = position + 1;
+			} else if (token == GLOBSTAR || token == STAR && c != '/' && c != '.') {
+				reached[size++] = position;
+			}
+		}
+		State next = intern(reached, size);
+
+		if (states.size() > MAX_STATES) {
+			reset(); // bounds memory on pathological pattern sets, at the cost of rebuilding states
+		} else {
+			if (state.transitions == state.labels.length) {
+				state.labels = Arrays.copyOf(state.labels, state.transitions * 2);
+				state.targets = Arrays.copyOf(state.targets, state.transitions * 2);
+			}
+			state.labels[state.transitions] = c;
+			state.targets[state.transitions++] = next;
+		}
+		return next;
+	}
+
+	/**
+	 * Discards every cached state and recreates the initial state.
+	 */
+	private void reset() {
+		states.clear();
+		start = intern(starts, starts.length);
+	}
+
+	/**
+	 * Finds or creates the state for a set of positions, after following each wildcard's option to
+	 * match nothing.
+	 *
+	 * @param positions
+	 *            the positions reached, possibly with duplicates
+	 * @param size
+	 *            the number of positions used
+	 * @return the state
+	 */
+	private State intern(int[] positions, int size) {
+		BitSet closure = new BitSet(tokens.length);
+		for (int i = 0; i < size; i++) {
+			int position = positions[i];
+			while (!closure.get(position)) {
+				closure.set(position);
+				if (tokens[position] != STAR && tokens[position] != GLOBSTAR) {
+					break;
+				}
+				position++;
+			}
+		}
+
+		int[] set = new int[closure.cardinality()];
+		boolean accept = false;
+		for (int i = 0, position = closure.nextSetBit(0); position >= 0; position = closure.nextSetBit(position + 1)) {
+			set[i++] = position;
+			accept |= tokens[position] == ACCEPT;
+		}
+		State state = new State(set, accept);
+		State existing = states.get(state);
+		if (existing != null) {
+			return existing;
+		}
+		states.put(state, state);
+		return state;
+	}
+
+}
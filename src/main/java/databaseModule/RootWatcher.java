@@ -0,0 +1,206 @@
+package databaseModule;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps the database in sync with a root directory by watching it for changes. Change events are
+ * debounced, i.e. collected until the root has been quiet for a moment, so that a crawl rewriting
+ * many files results in a single update; only the files that were touched are then re-parsed and
+ * replaced (see {@link DbFunctions#sync(File, Collection, Collection)}). Between changes, the
+ * watcher costs nothing but a blocked thread.
+ * <p>
+ * If events are lost because too many changes happened at once, the root is walked again to
+ * watch any new directories, and every environment watched so far is replaced from the root (see
+ * {@link DbFunctions#replace(String, Collection)}), so that files deleted in the meantime are
+ * removed as well.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class RootWatcher implements Runnable {
+
+	// how long the root must be quiet before pending changes are synced, in milliseconds
+	private static final long DEBOUNCE = 500;
+
+	private final File root;
+	private final Path rootPath;
+	private final WatchService service;
+	private final Map<WatchKey, Path> directories = new HashMap<>();
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor. Registers every directory within the root, whose changes are then queued until
+	 * {@link #run()} is called, so the root may be cached after the watcher is created.
+	 *
+	 * @param root
+	 *            the root directory
+	 * @throws IOException
+	 *             if the root cannot be watched
+	 */
+	public RootWatcher(File root) throws IOException {
+		this.root = root;
+		this.rootPath = root.toPath().toAbsolutePath().normalize();
+		this.service = rootPath.getFileSystem().newWatchService();
+		register(rootPath, null);
+	}
+
+	/**
+	 * Watches the root until {@link #stop()} is called, syncing each batch of changes.
+	 */
+	@Override
+	public void run() {
+		Set<Path> changed = new LinkedHashSet<>();
+		Set<Path> removed = new LinkedHashSet<>();
+		try {
+			while (running) {
+
+				// collects changes until the root has been quiet for the debounce period
+				WatchKey key = service.poll(DEBOUNCE, TimeUnit.MILLISECONDS);
+				if (key == null) {
+					if (!changed.isEmpty() || !removed.isEmpty()) {
+						sync(changed, removed);
+						changed.clear();
+						removed.clear();
+					}
+					continue;
+				}
+
+				Path directory = directories.get(key);
+				boolean overflowed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW) {
+						overflowed = true;
+						continue;
+					}
+					if (directory == null) {
+						continue;
+					}
+					Path child = directory.resolve((Path) event.context());
+					if (event.kind() == ENTRY_DELETE) {
+						removed.add(child);
+						changed.remove(child);
+					} else if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+						if (event.kind() == ENTRY_CREATE) {
+							register(child, changed); // files may be created before it is watched
+						}
+					} else {
+						changed.add(child);
+					}
+				}
+				if (!key.reset()) {
+					directories.remove(key);
+				}
+				if (overflowed) {
+					System.err.println("[DATABASE MESSAGE] Too many changes at once, re-syncing " + root + ".");
+					changed.clear();
+					removed.clear();
+					resync();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			System.err.println("[DATABASE ERROR] Unable to watch " + root + ": " + e.getMessage());
+		} catch (ClosedWatchServiceException e) {
+			// stopped
+		}
+	}
+
+	/**
+	 * Stops watching the root.
+	 */
+	public void stop() {
+		running = false;
+		try {
+			service.close();
+		} catch (IOException e) {
+			// the service is discarded either way
+		}
+	}
+
+	/**
+	 * Applies a batch of changes to the database.
+	 *
+	 * @param changed
+	 *            the files created or modified
+	 * @param removed
+	 *            the files or directories deleted
+	 */
+	private void sync(Set<Path> changed, Set<Path> removed) {
+		List<File> files = new ArrayList<>();
+		for (Path path : changed) {
+			files.add(path.toFile());
+		}
+		List<String> paths = new ArrayList<>();
+		for (Path path : removed) {
+			paths.add(rootPath.relativize(path).toString().replace(File.separatorChar, '/'));
+		}
+		long added = DbFunctions.sync(root, files, paths);
+		String time = new SimpleDateFormat("HH:mm:ss").format(new Date());
+		System.out.println("[" + time + "] Synced " + files.size() + " changed and " + paths.size()
+				+ " removed path(s) (" + added + " properties).");
+	}
+
+	/**
+	 * Re-syncs the whole root after events were lost: stops watching the directories that no
+	 * longer exist, watches every directory of the root again (including any created since), and
+	 * replaces every environment from the root, including those whose directories were deleted.
+	 *
+	 * @throws IOException
+	 *             if a directory cannot be watched
+	 */
+	private void resync() throws IOException {
+		Set<String> environments = new TreeSet<>();
+		Iterator<Map.Entry<WatchKey, Path>> watched = directories.entrySet().iterator();
+		while (watched.hasNext()) {
+			Map.Entry<WatchKey, Path> entry = watched.next();
+			if (rootPath.equals(entry.getValue().getParent())) {
+				environments.add(entry.getValue().getFileName().toString());
+			}
+			if (!Files.isDirectory(entry.getValue(), LinkOption.NOFOLLOW_LINKS)) {
+				entry.getKey().cancel();
+				watched.remove();
+			}
+		}
+		register(rootPath, null);
+		long added = DbFunctions.replace(root.getPath(), environments);
+		String time = new SimpleDateFormat("HH:mm:ss").format(new Date());
+		System.out.println("[" + time + "] Re-synced " + root + " (" + added + " properties).");
+	}
+
+	/**
+	 * Watches a directory and every directory within it.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param files
+	 *            a Set to which every file found is added, or null
+	 * @throws IOException
+	 *             if a directory cannot be watched
+	 */
+	private void register(Path directory, Set<Path> files) throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				directories.put(dir.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (files != null) {
+					files.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
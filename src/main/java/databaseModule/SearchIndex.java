@@ -0,0 +1,489 @@
+package databaseModule;
+
+import java.util.*;
+
+import driver.SQLiteManager;
+
+/**
+ * Maintains and searches a trigram index over every distinct property key and value. Each
+ * distinct key or value is stored once in the "terms" table and its lowercase trigrams are stored
+ * in the "grams" FTS5 table under the same rowid, so a substring search only has to check the
+ * terms containing every trigram of the pattern instead of scanning every property.
+ * <p>
+ * SQLite's own trigram tokenizer is not available in the bundled version of SQLite, so each
+ * trigram is hex-encoded into a single alphanumeric token for the default FTS5 tokenizer.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class SearchIndex {
+
+	private static final String TERMS = "terms";
+	private static final String GRAMS = "grams";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final int PRUNE_BATCH = 500;	// terms looked up per statement
+
+	private static volatile boolean built = false;	// set once the index is known to be complete
+
+	/**
+	 * Adds the keys and values of newly inserted properties to the index.
+	 *
+	 * @param properties
+	 *            a Collection of properties (represented by the standard Map)
+	 */
+	public static void add(Collection<Map<String, String>> properties) {
+
+		// deduplicates terms before touching the database
+		Set<String> keys = new HashSet<>();
+		Set<String> values = new HashSet<>();
+		for (Map<String, String> property : properties) {
+			keys.add(property.get("key"));
+			values.add(property.get("value"));
+		}
+		List<String[]> terms = new ArrayList<>(keys.size() + values.size());
+		for (String key : keys) {
+			terms.add(new String[] { "key", key });
+		}
+		for (String value : values) {
+			terms.add(new String[] { "value", value });
+		}
+
+		// new terms are assigned ids above the current maximum, so only those need trigrams
+		long max = maxId();
+		SQLiteManager.executeBatch("INSERT OR IGNORE INTO " + TERMS + " (type, term) VALUES (?, ?);", terms);
+		indexSince(max);
+	}
+
+	/**
+	 * Removes the terms that no longer appear in any property after files have been overwritten
+	 * or removed. Only the keys and values of the key-value pairs that were removed or replaced
+	 * can have become unused, so only those are looked up, through the indexes on the key and
+	 * value columns (and in every shard if the database is sharded), rather than scanning every
+	 * property.
+	 *
+	 * @param keys
+	 *            the keys of the removed or replaced pairs
+	 * @param values
+	 *            the values of the removed or replaced pairs
+	 */
+	public static void prune(Collection<String> keys, Collection<String> values) {
+		List<String[]> unused = new ArrayList<>();
+		unused.addAll(unused("key", keys));
+		unused.addAll(unused("value", values));
+		SQLiteManager.executeBatch("DELETE FROM " + GRAMS + " WHERE rowid = (SELECT id FROM " + TERMS
+				+ " WHERE type = ? AND term = ?);", unused);
+		SQLiteManager.executeBatch("DELETE FROM " + TERMS + " WHERE type = ? AND term = ?;", unused);
+	}
+
+	/**
+	 * Finds which of the given keys or values no longer appear in any property.
+	 *
+	 * @param type
+	 *            "key" or "value"
+	 * @param terms
+	 *            the keys or values
+	 * @return each unused term, as {type, term}
+	 */
+	private static List<String[]> unused(String type, Collection<String> terms) {
+		List<String[]> unused = new ArrayList<>();
+		List<String> batch = new ArrayList<>(PRUNE_BATCH);
+		Iterator<String> iter = terms.iterator();
+		while (iter.hasNext()) {
+			batch.add(iter.next());
+			if (batch.size() < PRUNE_BATCH && iter.hasNext()) {
+				continue;
+			}
+			String sql = "SELECT DISTINCT " + type + " AS term FROM " + SQLiteManager.getTable() + " WHERE " + type
+					+ " IN " + SQLiteManager.generateSQLSet(batch, true, true) + ";";
+			Set<String> live = new HashSet<>();
+			for (Map<String, String> row : SQLiteManager.select(Collections.<String, String>emptyMap(), sql,
+					batch.toArray(new String[batch.size()]))) {
+				live.add(row.get("term"));
+			}
+			for (String term : batch) {
+				if (!live.contains(term)) {
+					unused.add(new String[] { type, term });
+				}
+			}
+			batch.clear();
+		}
+		return unused;
+	}
+
+	/**
+	 * Rebuilds the index from the properties table, for databases populated before it existed.
+	 */
+	public static void rebuild() {
+		SQLiteManager.execute("DELETE FROM " + TERMS + ";");
+		SQLiteManager.execute("DELETE FROM " + GRAMS + ";");
+		if (SQLiteManager.isSharded()) {
+			List<String[]> terms = new ArrayList<>();
+			for (String type : new String[] { "key", "value" }) {
+				for (String term : SQLiteManager.getDistinct(type, null)) {
+					terms.add(new String[] { type, term });
+				}
+			}
+			SQLiteManager.executeBatch("INSERT OR IGNORE INTO " + TERMS + " (type, term) VALUES (?, ?);", terms);
+		} else {
+			String table = SQLiteManager.getTable();
+			SQLiteManager.execute("INSERT INTO " + TERMS + " (type, term) SELECT DISTINCT 'key', key FROM " + table
+					+ " UNION SELECT DISTINCT 'value', value FROM " + table + ";");
+		}
+		indexSince(0);
+	}
+
+	/**
+	 * Checks if a key or value exists anywhere in the database.
+	 *
+	 * @param term
+	 *            the full key or value
+	 * @param type
+	 *            "key" or "value"
+	 * @return true if the term exists, else false
+	 */
+	public static boolean contains(String term, String type) {
+		ensureBuilt();
+		return !SQLiteManager.select("SELECT id FROM " + TERMS + " WHERE type = ? AND term = ?;", type, term)
+				.isEmpty();
+	}
+
+	/**
+	 * Finds every key or value matching a SQL LIKE pattern, which is implicitly surrounded by
+	 * wildcards. Only terms containing every trigram of the literal fragments of the pattern are
+	 * checked against the pattern itself.
+	 *
+	 * @param pattern
+	 *            the SQL LIKE pattern, without the surrounding wildcards
+	 * @param type
+	 *            "key" or "value"
+	 * @return a Set of matching keys or values
+	 */
+	public static Set<String> search(String pattern, String type) {
+		Set<String> grams = new LinkedHashSet<>();
+		for (String fragment : pattern.split("[%_]")) {
+			grams.addAll(trigrams(fragment));
+		}
+		return searchTerms("term LIKE ?", "%" + pattern + "%", grams, type);
+	}
+
+	/**
+	 * Finds every key or value matching a regular expression anywhere within it. The regular
+	 * expression is evaluated within SQLite (see {@link driver.RegexFunction}), and only against
+	 * the terms containing every trigram of the literals the regular expression requires.
+	 *
+	 * @param regex
+	 *            the regular expression
+	 * @param type
+	 *            "key" or "value"
+	 * @return a Set of matching keys or values
+	 */
+	public static Set<String> searchRegex(String regex, String type) {
+		Set<String> grams = new LinkedHashSet<>();
+		for (String literal : literals(regex)) {
+			grams.addAll(trigrams(literal));
+		}
+		return searchTerms("term REGEXP ?", regex, grams, type);
+	}
+
+	/**
+	 * Extracts literal substrings that every match of a regular expression must contain. The
+	 * extraction is conservative: alternations, groups, character classes, and optional characters
+	 * contribute nothing, and regular expressions with inline flags or lookarounds yield no
+	 * literals at all.
+	 *
+	 * @param regex
+	 *            the regular expression
+	 * @return the required literal substrings
+	 */
+	public static List<String> literals(String regex) {
+		List<String> literals = new ArrayList<>();
+		if (regex.contains("(?")) {
+			return literals;
+		}
+
+		StringBuilder run = new StringBuilder();
+		int depth = 0;
+		int classes = 0; // nesting of character classes, which may contain further classes
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+
+			// escapes are resolved first so that escaped metacharacters are never misread
+			if (c == '\\' && i + 1 < regex.length()) {
+				char next = regex.charAt(++i);
+				if (next == 'Q') {
+					int end = regex.indexOf("\\E", i);
+					end = end == -1 ? regex.length() : end;
+					if (depth == 0 && classes == 0) {
+						run.append(regex, i + 1, end);
+					}
+					i = end + 1;
+				} else if (Character.isLetterOrDigit(next)) {
+					flush(run, literals); // shorthands, anchors, backreferences, and character codes
+					i = endOfEscape(regex, i);
+				} else if (depth == 0 && classes == 0) {
+					run.append(next);
+				}
+				continue;
+			}
+			if (classes > 0) {
+				if (c == '[') {
+					classes++;
+					i = startOfClass(regex, i);
+				} else if (c == ']') {
+					classes--;
+				}
+				continue;
+			}
+
+			switch (c) {
+			case '|':
+				if (depth == 0) {
+					return new ArrayList<>();
+				}
+				break;
+			case '(':
+				depth++;
+				flush(run, literals);
+				break;
+			case ')':
+				depth--;
+				flush(run, literals);
+				break;
+			case '[':
+				classes++;
+				i = startOfClass(regex, i);
+				flush(run, literals);
+				break;
+			case '*':
+			case '?':
+			case '{':
+
+				// the preceding character may not appear at all
+				if (run.length() > 0) {
+					run.setLength(run.length() - 1);
+				}
+				flush(run, literals);
+				if (c == '{') {
+					int end = regex.indexOf('}', i);
+					i = end == -1 ? i : end;
+				}
+				break;
+			case '+':
+			case '.':
+			case '^':
+			case '$':
+				flush(run, literals);
+				break;
+			default:
+				if (depth == 0) {
+					run.append(c);
+				}
+				break;
+			}
+		}
+		flush(run, literals);
+		return literals;
+	}
+
+	/**
+	 * Helper method that finds the last character of an escape sequence. Character codes, named
+	 * backreferences, and Unicode properties span several characters after the escaped one.
+	 *
+	 * @param regex
+	 *            the regular expression
+	 * @param i
+	 *            the index of the escaped character, just past the backslash
+	 * @return the index of the last character of the escape sequence
+	 */
+	private static int endOfEscape(String regex, int i) {
+		int end;
+		switch (regex.charAt(i)) {
+		case 'x':
+			if (i + 1 < regex.length() && regex.charAt(i + 1) == '{') {
+				end = regex.indexOf('}', i);
+				return end == -1 ? regex.length() - 1 : end;
+			}
+			return Math.min(i + 2, regex.length() - 1);
+		case 'u':
+			return Math.min(i + 4, regex.length() - 1);
+		case 'c':
+			return Math.min(i + 1, regex.length() - 1);
+		case 'k':
+			end = regex.indexOf('>', i);
+			return end == -1 ? regex.length() - 1 : end;
+		case 'p':
+		case 'P':
+			if (i + 1 < regex.length() && regex.charAt(i + 1) == '{') {
+				end = regex.indexOf('}', i);
+				return end == -1 ? regex.length() - 1 : end;
+			}
+			return Math.min(i + 1, regex.length() - 1);
+		case '0':
+			end = i;
+			while (end + 1 < regex.length() && end - i < 3 && regex.charAt(end + 1) >= '0'
+					&& regex.charAt(end + 1) <= '7') {
+				end++;
+			}
+			return end;
+		default:
+			end = i;
+			while (Character.isDigit(regex.charAt(i)) && end + 1 < regex.length()
+					&& Character.isDigit(regex.charAt(end + 1))) {
+				end++;
+			}
+			return end;
+		}
+	}
+
+	/**
+	 * Helper method that skips the opening of a character class, where a leading `]` is taken
+	 * literally rather than closing the class.
+	 *
+	 * @param regex
+	 *            the regular expression
+	 * @param i
+	 *            the index of the opening `[`
+	 * @return the index of the last character of the opening
+	 */
+	private static int startOfClass(String regex, int i) {
+		if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+			i++;
+		}
+		return i + 1 < regex.length() && regex.charAt(i + 1) == ']' ? i + 1 : i;
+	}
+
+	/**
+	 * Helper method that ends a run of literal characters.
+	 *
+	 * @param run
+	 *            the current run of literal characters, which is cleared
+	 * @param literals
+	 *            the List of completed literals
+	 */
+	private static void flush(StringBuilder run, List<String> literals) {
+		if (run.length() > 0) {
+			literals.add(run.toString());
+			run.setLength(0);
+		}
+	}
+
+	/**
+	 * Finds every term of a type satisfying a condition, prefiltered by the trigram index.
+	 *
+	 * @param condition
+	 *            the SQL condition on the term, with a single placeholder
+	 * @param param
+	 *            the parameter for the condition
+	 * @param grams
+	 *            the trigrams every match must contain, or an empty Set if there are none
+	 * @param type
+	 *            "key" or "value"
+	 * @return a Set of matching keys or values
+	 */
+	private static Set<String> searchTerms(String condition, String param, Set<String> grams, String type) {
+		ensureBuilt();
+		String sql = "SELECT term FROM " + TERMS + " WHERE type = ? AND " + condition;
+		List<Map<String, String>> rows;
+		if (grams.isEmpty()) {
+
+			// patterns without trigrams still only scan the distinct terms
+			rows = SQLiteManager.select(sql + ";", type, param);
+		} else {
+			String match = "";
+			for (String gram : grams) {
+				match += (match.isEmpty() ? "" : " AND ") + "\"" + encode(gram) + "\"";
+			}
+			sql += " AND id IN (SELECT rowid FROM " + GRAMS + " WHERE " + GRAMS + " MATCH ?);";
+			rows = SQLiteManager.select(sql, type, param, match);
+		}
+
+		Set<String> matches = new HashSet<>();
+		for (Map<String, String> row : rows) {
+			matches.add(row.get("term"));
+		}
+		return matches;
+	}
+
+	/**
+	 * Generates the distinct lowercase trigrams of a String.
+	 *
+	 * @param str
+	 *            the String
+	 * @return the trigrams, in order of first appearance
+	 */
+	public static Set<String> trigrams(String str) {
+		str = str.toLowerCase(Locale.ROOT);
+		Set<String> grams = new LinkedHashSet<>();
+		for (int i = 0; i + 3 <= str.length(); i++) {
+			grams.add(str.substring(i, i + 3));
+		}
+		return grams;
+	}
+
+	/**
+	 * Rebuilds the index once per session if the database predates it. Concurrent searches wait
+	 * for the rebuild rather than searching an incomplete index.
+	 */
+	private static void ensureBuilt() {
+		if (built) {
+			return;
+		}
+		synchronized (SearchIndex.class) {
+			if (!built) {
+				if (maxId() == 0 && SQLiteManager.getSize() > 0) {
+					rebuild();
+				}
+				built = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the largest term id currently in use.
+	 *
+	 * @return the largest term id, or 0 if there are no terms
+	 */
+	private static long maxId() {
+		String max = SQLiteManager.select("SELECT MAX(id) AS max FROM " + TERMS + ";").get(0).get("max");
+		return max == null ? 0 : Long.parseLong(max);
+	}
+
+	/**
+	 * Indexes the trigrams of every term added since a given id.
+	 *
+	 * @param since
+	 *            the largest term id that is already indexed
+	 */
+	private static void indexSince(long since) {
+		String sql = "SELECT id, term FROM " + TERMS + " WHERE id > ?;";
+		List<String[]> rows = new ArrayList<>();
+		for (Map<String, String> term : SQLiteManager.select(sql, Long.toString(since))) {
+			StringBuilder tokens = new StringBuilder();
+			for (String gram : trigrams(term.get("term"))) {
+				tokens.append(encode(gram)).append(' ');
+			}
+			rows.add(new String[] { term.get("id"), tokens.toString() });
+		}
+		SQLiteManager.executeBatch("INSERT INTO " + GRAMS + " (rowid, tokens) VALUES (?, ?);", rows);
+	}
+
+	/**
+	 * Hex-encodes a trigram into a single token for the FTS5 tokenizer.
+	 *
+	 * @param gram
+	 *            the trigram
+	 * @return the token
+	 */
+	private static String encode(String gram) {
+		char[] token = new char[gram.length() * 4];
+		for (int i = 0; i < gram.length(); i++) {
+			char c = gram.charAt(i);
+			token[i * 4] = HEX[(c >> 12) & 0xF];
+			token[i * 4 + 1] = HEX[(c >> 8) & 0xF];
+			token[i * 4 + 2] = HEX[(c >> 4) & 0xF];
+			token[i * 4 + 3] = HEX[c & 0xF];
+		}
+		return new String(token);
+	}
+
+}
@@ -1,5 +1,6 @@
 package driver;
 
+import java.io.*;
 import java.util.*;
 import org.apache.log4j.*;
 
@@ -13,7 +14,12 @@ public class Access {
 
 	public static Scanner s = new Scanner(System.in);
 
+	// false when running a batch of commands, in which case nothing may prompt the user
+	public static boolean interactive = true;
+
 	private static String branch = "home";
+	private static String statsFile;	// the file metrics are exported to, if any
+	private static int failures;	// the number of commands that reported an error
 	public static final String VERSION = "1.4.0";
 	public static final String APPNAME = "lighthouse-v" + VERSION;
 
@@ -23,10 +29,22 @@ public class Access {
 			+ "\n'db'\n\tswitches to the database module to access functions that work directly with the database"
 			+ "\n\tUsage: ~$ db"
 			+ "\n'query'\n\tswitches to the query module to access functions that analyze the contents of the database"
-			+ "\n\tUsage: ~$ query\n";
+			+ "\n\tUsage: ~$ query"
+			+ "\nCommands can also be run without the shell, e.g. from a cron job:"
+			+ "\n\tUsage: $ java -jar lighthouse.jar --batch <script>\t(one or more commands per line, `-` for stdin)"
+			+ "\n\tUsage: $ java -jar lighthouse.jar <commands>\t\t(e.g. \"db populate root; query compare dev1 dev2\")"
+			+ "\n\tUsage: $ java -jar lighthouse.jar --serve [port]\t(serves queries as JSON over HTTP on localhost)"
+			+ "\nAny of the above can be preceded by options that time each command:"
+			+ "\n\t--stats\t\t\tto print a timing breakdown after each command"
+			+ "\n\t--stats-json <file>\tto also append it to a file, one JSON object per command\n";
 
 	/**
-	 * Takes command-line arguments and delegates functionality as appropriate.
+	 * Takes command-line arguments and delegates functionality as appropriate. With no arguments,
+	 * runs the interactive shell. With `--batch <script>`, runs every command in the script (or in
+	 * stdin if the script is `-`), and with any other arguments, runs them as a single line of
+	 * commands. Batch runs skip the splash page and never prompt. With `--serve [port]`, serves
+	 * queries over HTTP instead. Any of these may be preceded by `--stats` and `--stats-json <file>`
+	 * (see {@link Metrics}).
 	 * 
 	 * @param args
 	 *            command-line arguments
@@ -41,6 +59,30 @@ public class Access {
 			logger.setLevel(Level.OFF);
 		}
 
+		// enables metrics, before anything is timed
+		while (args.length > 0 && (args[0].equals("--stats") || args[0].equals("--stats-json"))) {
+			if (args[0].equals("--stats-json")) {
+				if (args.length < 2) {
+					System.err.println("[ERROR] Usage: --stats-json <file>");
+					System.exit(1);
+				}
+				statsFile = args[1];
+				args = Arrays.copyOfRange(args, 1, args.length);
+			}
+			Metrics.enable(true);
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+
+		if (args.length > 0 && args[0].equals("--serve")) {
+			interactive = false;
+			serve(args);
+			return;
+		}
+		if (args.length > 0) {
+			interactive = false;
+			System.exit(runBatch(args) ? 0 : 1);
+		}
+
 		// startup
 		printSplash();
 		SQLiteManager.connectToDatabase();
@@ -51,63 +93,212 @@ public class Access {
 
 			// prompts and takes input, split into array in case of multiple commands
 			System.out.print("lighthouse-v" + VERSION + ": " + branch + " $ ");
-			String[] input = parseStatements(s.nextLine());
-
-			for (int cmdi = 0; cmdi < input.length; cmdi++) {
-
-				// cleans commands for processing
-				args = parseArgs(input[cmdi]);
-
-				// switches modules or exits application
-				switch (args[0]) {
-				case "home":
-				case "db":
-				case "query":
-					branch = args[0];
-					if (args.length > 1) {
-						args = Arrays.copyOfRange(args, 1, args.length);
-					} else {
-						args[0] = "help";
-					}
-					break;
-				case "quit":
-				case "exit":
+			for (String command : parseStatements(s.nextLine())) {
+				if (!execute(command)) {
 					s.close();
 					System.exit(0);
-					break;
 				}
+			}
+		}
+
+	}
 
-				// executes commands for 'home' branch
-				if (branch.equals("home")) {
-					switch (args[0]) {
-					case "man":
-					case "help":
-						System.out.println(help);
-						break;
-					default:
-						System.err.println("Invalid input. Use the 'help' command for details on usage.\n");
-						continue;
+	/**
+	 * Starts the HTTP/JSON query server (see {@link AccessServer}), which runs until the JVM is
+	 * stopped.
+	 * 
+	 * @param args
+	 *            command-line arguments, `--serve [port]`
+	 */
+	private static void serve(String[] args) {
+		int port = AccessServer.DEFAULT_PORT;
+		try {
+			port = args.length > 1 ? Integer.parseInt(args[1]) : port;
+		} catch (NumberFormatException e) {
+			System.err.println("[ERROR] Usage: --serve [port]");
+			System.exit(1);
+		}
+		SQLiteManager.connectToDatabase();
+		try {
+			AccessServer.serve(port);
+		} catch (IOException e) {
+			System.err.println("[ERROR] Unable to serve on port " + port + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs commands without user interaction, reusing a single database connection for every
+	 * command.
+	 * 
+	 * Every command is run even if an earlier one fails, unless a command exits the batch.
+	 * 
+	 * @param args
+	 *            command-line arguments, either `--batch <script>` or a line of commands
+	 * @return true if every command could be read and no command run reported an error, else false
+	 */
+	public static boolean runBatch(String[] args) {
+		failures = 0;
+		List<String> lines = new ArrayList<>();
+		if (args[0].equals("--batch") || args[0].equals("-b")) {
+			if (args.length != 2) {
+				System.err.println("[ERROR] Usage: --batch <script>");
+				return false;
+			}
+			try {
+				BufferedReader script = args[1].equals("-") ? new BufferedReader(new InputStreamReader(System.in))
+						: new BufferedReader(new FileReader(args[1]));
+				String line;
+				while ((line = script.readLine()) != null) {
+
+					// ignores comments
+					if (!line.trim().startsWith("#")) {
+						lines.add(line);
 					}
 				}
+				script.close();
+			} catch (IOException e) {
+				System.err.println("[ERROR] Unable to read script: " + args[1]);
+				return false;
+			}
+		} else {
+			lines.add(String.join(" ", args));
+		}
 
-				// delegates functionality as appropriate
-				switch (branch) {
-				case "home":
-					break;
-				case "db":
-					AccessDB.run(args);
-					break;
-				case "query":
-					AccessQRY.run(args);
-					break;
-				default:
-					System.err.println("[ERROR] This should never run.");
-					break;
+		SQLiteManager.connectToDatabase();
+		for (String line : lines) {
+			for (String command : parseStatements(line)) {
+				System.out.println(APPNAME + ": " + branch + " $ " + command);
+				if (!execute(command)) {
+					return failures == 0;
 				}
+			}
+		}
+		return failures == 0;
+	}
 
-			} // end of multi-command loop
-		} // end of indefinite while loop
+	/**
+	 * Executes a single command within the current module, switching modules first if the command
+	 * starts with a module name.
+	 * 
+	 * @param command
+	 *            a single command-line statement
+	 * @return false if the command exits the application, else true
+	 */
+	public static boolean execute(String command) {
+		if (!Metrics.isEnabled()) {
+			return dispatchOrExit(command);
+		}
+
+		// times the entire command, then reports its breakdown
+		Metrics.reset();
+		long start = Metrics.start();
+		boolean running = dispatchOrExit(command);
+		if (running && !Metrics.isEmpty()) {
+			Metrics.time("command", start);
+			Metrics.print();
+			if (statsFile != null) {
+				Metrics.export(statsFile, command);
+			}
+		}
+		return running;
+	}
+
+	/**
+	 * Reports that a command failed, on stderr. The failures of a batch of commands are counted,
+	 * so that the batch exits with a non-zero status (see {@link #runBatch(String[])}).
+	 * 
+	 * @param message
+	 *            the error message
+	 */
+	static void error(String message) {
+		failures++;
+		System.err.println(message);
+	}
+
+	/**
+	 * Returns the number of commands that reported an error since the last batch started.
+	 * 
+	 * @return the number of failures
+	 */
+	public static int getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Dispatches a command, exiting the application if it fails to read from the database.
+	 * 
+	 * @param command
+	 *            the command
+	 * @return false if the command is to exit the application, else true
+	 */
+	private static boolean dispatchOrExit(String command) {
+		try {
+			return dispatch(command);
+		} catch (SQLiteManager.DatabaseException e) {
+			SQLiteManager.exit(e.getCause());
+			return false;
+		}
+	}
 
+	/**
+	 * Dispatches a single command to its module, switching modules first if the command starts
+	 * with a module name.
+	 * 
+	 * @param command
+	 *            a single command-line statement
+	 * @return false if the command exits the application, else true
+	 */
+	private static boolean dispatch(String command) {
+
+		// cleans commands for processing
+		String[] args = parseArgs(command);
+
+		// switches modules or exits application
+		switch (args[0]) {
+		case "home":
+		case "db":
+		case "query":
+			branch = args[0];
+			if (args.length > 1) {
+				args = Arrays.copyOfRange(args, 1, args.length);
+			} else {
+				args[0] = "help";
+			}
+			break;
+		case "quit":
+		case "exit":
+			return false;
+		}
+
+		// executes commands for 'home' branch
+		if (branch.equals("home")) {
+			switch (args[0]) {
+			case "man":
+			case "help":
+				System.out.println(help);
+				break;
+			default:
+				error("Invalid input. Use the 'help' command for details on usage.\n");
+				return true;
+			}
+		}
+
+		// delegates functionality as appropriate
+		switch (branch) {
+		case "home":
+			break;
+		case "db":
+			AccessDB.run(args);
+			break;
+		case "query":
+			AccessQRY.run(args);
+			break;
+		default:
+			System.err.println("[ERROR] This should never run.");
+			break;
+		}
+		return true;
 	}
 
 	/**
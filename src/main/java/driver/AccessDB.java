@@ -2,8 +2,11 @@ package driver;
 
 import java.io.*;
 import java.util.*;
+import java.util.regex.PatternSyntaxException;
 
 import databaseModule.DbFunctions;
+import databaseModule.KeyMatcher;
+import databaseModule.RootWatcher;
 
 /**
  * Main driver for the database module. Processes input, executes the appropriate functionality, and
@@ -14,16 +17,30 @@ import databaseModule.DbFunctions;
  */
 public class AccessDB {
 
+	private static final int PAGE = 100;
+	private static final int HISTORY = 10;
+
 	private static final String help = "\nDATABASE MODULE -- POSSIBLE COMMANDS"
 			+ "\n'help'\n\tgoes to the help page for 'db'"
 			+ "\n\tUsage: ~$ help"
 			+ "\n'populate'\n\tpopulates the database with the given files"
 			+ "\n\tUsage: ~$ populate <root directory>"
+			+ "\n'replace'\n\treplaces every environment in the given root, removing their files no longer in it"
+			+ "\n\tUsage: ~$ replace <root directory>"
+			+ "\n'watch'\n\tpopulates the database with the given files, then keeps it in sync as they change"
+			+ "\n\tUsage: ~$ watch <root directory>"
+			+ "\n\tNote: in the shell, press Enter to stop watching; otherwise, watches until killed."
 			+ "\n'info'\n\tprovides info about the contents of the database"
 			+ "\n\tUsage: ~$ info"
+			+ "\n'history'\n\tlists the latest generations of the database, i.e. the versions recorded by `populate`"
+			+ "\n\tUsage: ~$ history [number of generations (default " + HISTORY + ")]"
 			+ "\n'list'\n\tprints the structure of the database at optional branches and levels"
-			+ "\n\tUsage: ~$ list [path] [level (1+)]"
+			+ "\n\tUsage: ~$ list [path] [level (1+)] [options]"
 			+ "\n\tNote: the higher the level, the deeper the list."
+			+ "\n\toptions:"
+			+ "\n\t\t-d, --depth <n>\tto list n levels deep (same as level)"
+			+ "\n\t\t-n, --limit <n>\tto list at most n lines"
+			+ "\n\t\t-p, --page <n>\tto pause after every n lines (default " + PAGE + ", 0 to never pause)"
 			+ "\n'ignore'\n\tprovides info about ignored properties, can additionally ignore further properties"
 			+ "\n\tUsage: ~$ ignore [toggle] [-l path] [property] ... [property]"
 			+ "\n\ttoggles:"
@@ -31,6 +48,8 @@ public class AccessDB {
 			+ "\n\t\t\t\talt.: -i, --ignore"
 			+ "\n\t\t-f, --false\tto acknowledge the following properties"
 			+ "\n\t\t\t\talt.: -a, --acknowledge"
+			+ "\n\tNote: a property may be a pattern, where `*` matches within one segment of a key (split on"
+			+ "\n\t`.` or `/`), `**` matches across segments, and `regex:<expr>` matches a regular expression."
 			+ "\n'clear'\n\tclears the database"
 			+ "\n\tUsage: ~$ clear"
 			+ "\nType the name of another module to switch modules. Available modules: home, db, query.\n";
@@ -44,8 +63,9 @@ public class AccessDB {
 	public static void run(String[] args) {
 
 		// warns that database is empty
-		if (SQLiteManager.getSize() == 0 && !args[0].equals("populate") && !args[0].equals("help")) {
-			System.err.println("Database is empty. Use the 'populate' command to feed files to the database.\n");
+		if (SQLiteManager.isEmpty() && !args[0].equals("populate") && !args[0].equals("replace")
+				&& !args[0].equals("watch") && !args[0].equals("help")) {
+			Access.error("Database is empty. Use the 'populate' command to feed files to the database.\n");
 			return;
 		}
 
@@ -62,22 +82,51 @@ public class AccessDB {
 
 			// checks if directory specified
 			if (args == null) {
-				System.err.println("\n[ERROR] No directory specified.\n");
+				Access.error("\n[ERROR] No directory specified.\n");
 				return;
 			}
 
 			// adds all specified directories to database
 			for (int i = 0; i < args.length; i++) {
+				if (!new File(args[i]).isDirectory()) {
+					Access.error("\n[ERROR] Not a directory: " + args[i] + "\n");
+					continue;
+				}
 				long popcount = DbFunctions.populate(args[i]);
 				System.out.println("\nAdded " + popcount + " properties to database.\n");
 			}
 
+			break;
+		case "replace":
+			if (args == null) {
+				Access.error("\n[ERROR] No directory specified.\n");
+				return;
+			}
+			for (int i = 0; i < args.length; i++) {
+				if (!new File(args[i]).isDirectory()) {
+					Access.error("\n[ERROR] Not a directory: " + args[i] + "\n");
+					continue;
+				}
+				long popcount = DbFunctions.replace(args[i]);
+				System.out.println("\nAdded " + popcount + " properties to database.\n");
+			}
+			break;
+		case "watch":
+			if (args == null) {
+				Access.error("\n[ERROR] No directory specified.\n");
+				return;
+			}
+			watch(args[0]);
 			break;
 		case "clear":
 			boolean permission = false;
 			if (args != null && (args[0].equals("-y") || args[0].equals("--yes"))) {
 				permission = true;
 			}
+			if (!permission && !Access.interactive) {
+				Access.error("\n[ERROR] Clearing the database requires -y outside of the shell.\n");
+				break;
+			}
 			permission = !permission ? promptClear() : permission;
 			if (permission) {
 				long n = SQLiteManager.clear();
@@ -87,22 +136,20 @@ public class AccessDB {
 		case "info":
 			DbFunctions.printInfo();
 			break;
-		case "list":
-			int level = -1;
-			String path = "";
-			if (args != null && args.length == 1) {
-				if (validateLevel(args[0])) {
-					level = Integer.parseInt(args[0]);
-				} else {
-					path = args[0];
+		case "history":
+			int generations = HISTORY;
+			if (args != null) {
+				try {
+					generations = Integer.parseInt(args[0]);
+				} catch (NumberFormatException e) {
+					Access.error("\n[ERROR] The number of generations must be numeric.\n");
+					break;
 				}
-			} else if (args != null && args.length > 1) {
-				path = args[0];
-				level = validateLevel(args[1]) ? Integer.parseInt(args[1]) : -1;
 			}
-			System.out.println();
-			DbFunctions.printStructure(path, level);
-			System.out.println();
+			DbFunctions.printHistory(generations);
+			break;
+		case "list":
+			parseList(args);
 			break;
 		case "ignore":
 
@@ -129,11 +176,56 @@ public class AccessDB {
 			System.out.println(help);
 			break;
 		default:
-			System.err.println("[ERROR] invalid input: " + cmd + "\nUse the 'help' command for details on usage.\n");
+			Access.error("[ERROR] invalid input: " + cmd + "\nUse the 'help' command for details on usage.\n");
 		}
 
 	}
 
+	/**
+	 * Populates the database with a root directory, then syncs changes to it until the user presses
+	 * Enter (or, outside of the shell, until the process is killed). The root is watched before it
+	 * is populated, so that files written during the populate are synced afterwards.
+	 * 
+	 * @param root
+	 *            the root directory
+	 */
+	private static void watch(String root) {
+		File directory = new File(root);
+		if (!directory.isDirectory()) {
+			Access.error("\n[ERROR] Not a directory: " + root + "\n");
+			return;
+		}
+		RootWatcher watcher;
+		try {
+			watcher = new RootWatcher(directory);
+		} catch (IOException e) {
+			Access.error("\n[ERROR] Unable to watch " + root + ": " + e.getMessage() + "\n");
+			return;
+		}
+
+		// changes during the populate are queued as events until the watcher runs
+		long popcount = DbFunctions.populate(root);
+		System.out.println("\nAdded " + popcount + " properties to database.");
+		if (!Access.interactive) {
+			System.out.println("Watching " + root + " for changes.\n");
+			watcher.run();
+			return;
+		}
+		System.out.println("Watching " + root + " for changes. Press Enter to stop.\n");
+		Thread thread = new Thread(watcher, "watch");
+		thread.start();
+		if (Access.s.hasNextLine()) {
+			Access.s.nextLine();
+		}
+		watcher.stop();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		System.out.println("Stopped watching " + root + ".\n");
+	}
+
 	/**
 	 * Parses args into a format that can be fed as parameters to the `ignore` function.
 	 * 
@@ -167,7 +259,7 @@ public class AccessDB {
 			case "--loc":
 			case "--location":
 				if (i > args.length - 2) {
-					System.err.println("\n[ERROR] location flag `-l` requires a location argument.");
+					Access.error("\n[ERROR] location flag `-l` requires a location argument.");
 					return;
 				} else {
 
@@ -186,29 +278,127 @@ public class AccessDB {
 		}
 
 		if (properties.isEmpty()) {
-			System.err.println("\n[ERROR] No properties specified.");
+			Access.error("\n[ERROR] No properties specified.");
 			return;
 		}
 
+		for (String property : properties) {
+			try {
+				KeyMatcher.validate(property);
+			} catch (PatternSyntaxException e) {
+				Access.error("[ERROR] Invalid pattern: " + e.getDescription());
+				return;
+			}
+		}
+
 		String table = SQLiteManager.getTable();
 		String check;
 		Map<String, String> filter = location != null ? SQLiteManager.generatePathFilter(location) : null;
 
 		// if the filtered query returns no properties, path is not within database
 		check = "SELECT COUNT(*) FROM " + table + SQLiteManager.generateSQLFilter(filter, null) + ";";
-		if (SQLiteManager.select(check).isEmpty()) {
-			System.err.println("[ERROR] No matching path found.");
+		if (SQLiteManager.select(filter, check).isEmpty()) {
+			Access.error("[ERROR] No matching path found.");
 		}
 
 		check = "SELECT COUNT(*) FROM " + table + SQLiteManager.generateSQLFilter(filter, properties) + ";";
-		if (SQLiteManager.select(check).isEmpty()) {
-			System.err.println("[ERROR] No matching properties found.");
+		if (SQLiteManager.select(filter, check).isEmpty()) {
+			Access.error("[ERROR] No matching properties found.");
 		}
 
 		DbFunctions.ignore(location, properties, toggle);
 
 	}
 
+	/**
+	 * Parses args for the `list` command and pages through the resulting listing.
+	 * 
+	 * @param args
+	 *            command-line arguments
+	 */
+	private static void parseList(String[] args) {
+
+		int level = -1;
+		int limit = -1;
+		int page = Access.interactive ? PAGE : 0; // batch runs never pause
+		String path = "";
+		List<String> positional = new ArrayList<>();
+
+		// option parsing
+		for (int i = 0; args != null && i < args.length; i++) {
+			switch (args[i]) {
+			case "-d":
+			case "--depth":
+			case "-n":
+			case "--limit":
+			case "-p":
+			case "--page":
+				if (i > args.length - 2 || !validateLevel(args[i + 1])) {
+					Access.error("\n[ERROR] `" + args[i] + "` requires a numeric argument.\n");
+					return;
+				}
+				int n = Integer.parseInt(args[++i]);
+				if (args[i - 1].equals("-d") || args[i - 1].equals("--depth")) {
+					level = n;
+				} else if (args[i - 1].equals("-n") || args[i - 1].equals("--limit")) {
+					limit = n;
+				} else {
+					page = n;
+				}
+				break;
+			default:
+				positional.add(args[i]);
+				break;
+			}
+		}
+		if (positional.size() == 1) {
+			if (validateLevel(positional.get(0))) {
+				level = Integer.parseInt(positional.get(0));
+			} else {
+				path = positional.get(0);
+			}
+		} else if (positional.size() > 1) {
+			path = positional.get(0);
+			level = validateLevel(positional.get(1)) ? Integer.parseInt(positional.get(1)) : -1;
+		}
+
+		Iterator<String> lines;
+		try {
+			lines = DbFunctions.listStructure(path, level);
+		} catch (IllegalArgumentException e) {
+			Access.error("\n[ERROR] Invalid path.\n");
+			return;
+		}
+
+		// only generates the lines that are actually shown
+		System.out.println();
+		int shown = 0;
+		while (lines.hasNext() && shown != limit) {
+			System.out.println(lines.next());
+			shown++;
+			if (page > 0 && shown % page == 0 && lines.hasNext() && shown != limit && !promptMore(shown)) {
+				break;
+			}
+		}
+		if (lines.hasNext()) {
+			System.out.println("... (listing stopped after " + shown + " lines; use --limit or --depth to adjust)");
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Prompts user to continue a paged listing.
+	 * 
+	 * @param shown
+	 *            the number of lines shown so far
+	 * @return true if the listing should continue, else false
+	 */
+	private static boolean promptMore(int shown) {
+		System.out.print("-- " + shown + " lines shown, press Enter for more or 'q' to stop -- ");
+		String choice = Access.s.hasNextLine() ? Access.s.nextLine().trim() : "q";
+		return !choice.equalsIgnoreCase("q");
+	}
+
 	/**
 	 * Prompts user to verify that the database should be cleared.
 	 * 
@@ -2,7 +2,9 @@ package driver;
 
 import java.io.*;
 import java.util.*;
+import java.util.regex.*;
 
+import queryModule.ColumnarReport;
 import queryModule.QueryEngine;
 import queryModule.QueryFunctions;
 
@@ -22,16 +24,27 @@ public class AccessQRY {
 	private static String help = "\nQUERY MODULE -- POSSIBLE COMMANDS" + "\n'help'\n\tgoes to the help page for 'query'"
 			+ "\n\tUsage: ~$ help"
 			+ "\n'compare'\n\tcompares the selected root directories and generates appropriate CSVs"
-			+ "\n\tUsage: ~$ compare <path1> <path2>"
+			+ "\n\tUsage: ~$ compare [mode] <path1> <path2>"
+			+ "\n\tmodes:\n\t\t-d, --diff-only\tto only write discrepancies to the CSV"
+			+ "\n\t\t-s, --summary\tto only write discrepancy counts for each pair of queries"
+			+ "\n\t\t-b, --binary\tto write a columnar binary (.lhr) report instead of a CSV"
+			+ "\n\t\t-o, --output <name>\tto name the report rather than being prompted"
+			+ "\n\tNote: a path may end in @<version> to compare its state after an earlier `populate`, where"
+			+ "\n\ta version is a generation (see `db history`), -n for n generations ago, or a date or"
+			+ "\n\ttimestamp (e.g. 2017-09-15 or 2017-09-15T14:30)."
 			+ "\n'exclude'\n\texcludes selected files or directories from the query"
 			+ "\n\tmust be used in conjunction with the 'compare' command"
 			+ "\n\tUsage: ~$ compare <path1> <path2> exclude <path> <path> ... <path>"
 			+ "\n'grep'\n\tfinds every property key or value in the database matching a given pattern"
-			+ "\n\tUsage: ~$ grep [toggle] <pattern>"
+			+ "\n\tUsage: ~$ grep [toggle] [mode] <pattern>"
 			+ "\n\ttoggles:\n\t\t-k\tto find matching keys\n\t\t-v\tto find matching values"
+			+ "\n\tmodes:\n\t\t-r, --regex\tto match a regular expression anywhere within the key or value"
+			+ "\n\t\t-g, --glob\tto match a glob (`*`, `?`, `[...]`) against the entire key or value"
 			+ "\n'find'\n\tprints the locations and values of a key/value (can be toggled) within an optional location"
-			+ "\n\tUsage: ~$ find [toggle] [-l path] <pattern>"
+			+ "\n\tUsage: ~$ find [toggle] [mode] [-l path] <pattern>"
 			+ "\n\ttoggles:\n\t\t-k, --key\tto find matching keys\n\t\t-v, --value\tto find matching values"
+			+ "\n\tmodes:\n\t\t-r, --regex\tto find every key or value matching a regular expression"
+			+ "\n\t\t-g, --glob\tto find every key or value matching a glob"
 			+ "\nType the name of another module to switch modules. Available modules: home, db, query.\n";
 
 	/**
@@ -43,8 +56,8 @@ public class AccessQRY {
 	public static void run(String[] args) {
 
 		// warns that database is empty
-		if (SQLiteManager.getSize() == 0) {
-			System.err.println("[ERROR] Database is empty. Switch to the db module to feed files to the database.\n");
+		if (SQLiteManager.isEmpty()) {
+			Access.error("[ERROR] Database is empty. Switch to the db module to feed files to the database.\n");
 			return;
 		}
 
@@ -59,7 +72,7 @@ public class AccessQRY {
 		switch (cmd) {
 		case "compare":
 			if (args == null) {
-				System.err.println("\n[ERROR] No queries specified.\n");
+				Access.error("\n[ERROR] No queries specified.\n");
 				break;
 			}
 			parseCompare(args);
@@ -75,7 +88,7 @@ public class AccessQRY {
 			System.out.println(help);
 			break;
 		default:
-			System.err.println("[ERROR] invalid input: " + cmd + "\nUse the 'help' command for details on usage.\n");
+			Access.error("[ERROR] invalid input: " + cmd + "\nUse the 'help' command for details on usage.\n");
 		}
 
 	}
@@ -90,10 +103,11 @@ public class AccessQRY {
 
 		String pattern = null;
 		int toggle = 0;
+		int mode = QueryFunctions.SUBSTRING;
 
 		// in case of no args
 		if (args == null) {
-			System.err.println("\n[ERROR] No pattern specified.\n");
+			Access.error("\n[ERROR] No pattern specified.\n");
 			return;
 		}
 
@@ -109,12 +123,20 @@ public class AccessQRY {
 			case "--value":
 				toggle = 1;		// toggle set to 1 for value
 				break;
+			case "-r":
+			case "--regex":
+				mode = QueryFunctions.REGEX;
+				break;
+			case "-g":
+			case "--glob":
+				mode = QueryFunctions.GLOB;
+				break;
 			case "-l":
 			case "--loc":
 			case "--location":
 
 				// location opts not supported for `grep`
-				System.err.println("\n[ERROR] Invalid option: " + args[i] + "\n");
+				Access.error("\n[ERROR] Invalid option: " + args[i] + "\n");
 				return;
 
 			default:
@@ -128,12 +150,18 @@ public class AccessQRY {
 
 		// checks if no pattern found
 		if (pattern == null) {
-			System.err.println("\n[ERROR] No pattern specified.\n");
+			Access.error("\n[ERROR] No pattern specified.\n");
 			return;
 		}
 
 		// prints CLI output
-		Set<String> matches = QueryFunctions.grep(pattern, toggle);
+		Set<String> matches;
+		try {
+			matches = QueryFunctions.grep(pattern, toggle, mode);
+		} catch (PatternSyntaxException e) {
+			Access.error("\n[ERROR] Invalid pattern: " + e.getDescription() + "\n");
+			return;
+		}
 		String type = toggle == 0 ? "key" : "value";
 		if (matches.isEmpty()) {
 			System.out.println("\nNo " + type + " matching \"" + pattern + "\" found.\n");
@@ -156,10 +184,11 @@ public class AccessQRY {
 
 		String pattern = null, location = null;
 		int toggle = 0;
+		int mode = QueryFunctions.SUBSTRING;
 
 		// in case of no args
 		if (args == null) {
-			System.err.println("\n[ERROR] No pattern specified.\n");
+			Access.error("\n[ERROR] No pattern specified.\n");
 			return;
 		}
 
@@ -175,11 +204,19 @@ public class AccessQRY {
 			case "--value":
 				toggle = 1;		// toggle set to 1 for value
 				break;
+			case "-r":
+			case "--regex":
+				mode = QueryFunctions.REGEX;
+				break;
+			case "-g":
+			case "--glob":
+				mode = QueryFunctions.GLOB;
+				break;
 			case "-l":
 			case "--loc":
 			case "--location":
 				if (i == args.length - 2) {
-					System.err.println("[ERROR] location flag `-l` requires a location argument.");
+					Access.error("[ERROR] location flag `-l` requires a location argument.");
 				} else {
 
 					// if location unassigned, assigns the arg after -l flag
@@ -198,12 +235,18 @@ public class AccessQRY {
 
 		// checks if no pattern found
 		if (pattern == null) {
-			System.err.println("\n[ERROR] No pattern specified.\n");
+			Access.error("\n[ERROR] No pattern specified.\n");
 			return;
 		}
 
 		String type = toggle == 0 ? "key" : "value"; // used for printing to CLI
-		List<Map<String, String>> matches = QueryFunctions.findProp(pattern, location, toggle);
+		List<Map<String, String>> matches;
+		try {
+			matches = QueryFunctions.findProp(pattern, location, toggle, mode);
+		} catch (PatternSyntaxException e) {
+			Access.error("\n[ERROR] Invalid pattern: " + e.getDescription() + "\n");
+			return;
+		}
 
 		// prints CLI output
 		if (matches.isEmpty()) {
@@ -242,6 +285,9 @@ public class AccessQRY {
 	private static void parseCompare(String[] args) {
 		ArrayList<String> queries = new ArrayList<String>();
 		ArrayList<String> exclusions = new ArrayList<String>();
+		int mode = QueryEngine.FULL_REPORT;
+		boolean binary = false;
+		String output = null;
 
 		// uses reference 'arr' to populate appropriate List
 		int arg = 0;
@@ -252,40 +298,79 @@ public class AccessQRY {
 			 * if 'exclude' keyword detected, switches references and adds rest of args to
 			 * 'excluded' List, else continues adding to 'queried'
 			 */
-			if (args[arg].equals("exclude")) {
+			switch (args[arg]) {
+			case "exclude":
 				arr = exclusions;
-			} else {
+				break;
+			case "-d":
+			case "--diff":
+			case "--diff-only":
+				mode = QueryEngine.DIFF_ONLY;
+				break;
+			case "-s":
+			case "--summary":
+				mode = QueryEngine.SUMMARY;
+				break;
+			case "-b":
+			case "--bin":
+			case "--binary":
+				binary = true;
+				break;
+			case "-o":
+			case "--output":
+				if (arg == args.length - 1) {
+					Access.error("\n[ERROR] `" + args[arg] + "` requires a file name.\n");
+					return;
+				}
+				output = args[++arg];
+				if (!output.equals(output.replaceAll("[^a-zA-Z0-9_ .-]", "~"))) {
+					Access.error("\n[ERROR] Illegal file name: " + output + "\n");
+					return;
+				}
+				break;
+			default:
 				arr.add(args[arg]);
+				break;
 			}
 			arg++;
 		}
 
 		// invalid query parameters (queries must be made in pairs unless internal)
 		if (queries.isEmpty() || queries.size() > 1 && queries.size() % 2 != 0) {
-			System.err.println("\n[ERROR] Invalid number of queries.\n");
+			Access.error("\n[ERROR] Invalid number of queries.\n");
 			return;
 		}
 
 		// verifies query and exclusion paths
-		String table = SQLiteManager.getTable();
 		ArrayList<String> paths = new ArrayList<>();
 		paths.addAll(queries);
 		paths.addAll(exclusions);
-		for (String path : paths) {
+		for (int i = 0; i < paths.size(); i++) {
+			String path = paths.get(i);
 			if (path.split("/").length > 4) {
-				System.err.println("\n[ERROR] Invalid path input: " + paths + "\n");
+				Access.error("\n[ERROR] Invalid path input: " + paths + "\n");
 				return;
 			}
 
-			Map<String, String> filter = SQLiteManager.generatePathFilter(path);
-			String sql = "SELECT * FROM " + table + SQLiteManager.generateSQLFilter(filter, null);
-			if (SQLiteManager.select(sql).isEmpty()) {
-				System.err.println("\n[ERROR] Invalid path: " + path + "\n");
+			// only the compared paths may select a past generation, not the exclusions
+			Map<String, String> filter;
+			try {
+				filter = SQLiteManager.generatePathFilter(path, i < queries.size());
+			} catch (IllegalArgumentException e) {
+				Access.error("\n[ERROR] " + e.getMessage() + "\n");
+				return;
+			}
+			List<String> params = new ArrayList<>();
+			String sql = "SELECT 1 FROM " + SQLiteManager.getTable(filter)
+					+ SQLiteManager.generateSQLFilter(filter, null, params) + " LIMIT 1;";
+			if (SQLiteManager.select(filter, sql, params.toArray(new String[0])).isEmpty()) {
+				Access.error("\n[ERROR] Invalid path: " + path + "\n");
 				return;
 			}
 		}
 
 		QueryEngine comparator = new QueryEngine();
+		comparator.setMode(mode);
 
 		// tracks all queries added to comparator
 		ArrayList<ArrayList<Map<String, String>>> added = new ArrayList<>();
@@ -295,8 +380,8 @@ public class AccessQRY {
 			String path = cleanPath(queries.get(0));
 
 			// checks that the internal query is not an a file level (an invalid depth)
-			if (SQLiteManager.generatePathFilter(path).get("filename") != null) {
-				System.err.println("[ERROR] Internal queries cannot be at the lowest level (i.e. full file paths).");
+			if (SQLiteManager.generatePathFilter(path, true).get("filename") != null) {
+				Access.error("[ERROR] Internal queries cannot be at the lowest level (i.e. full file paths).");
 				return;
 			}
 
@@ -306,7 +391,7 @@ public class AccessQRY {
 			// in case of insufficient subpaths for valid paths (must be at least two for a
 			// comparison)
 			if (subpaths.size() < 2) {
-				System.err.println("[ERROR] Directory must contain at least 2 files or subdirectories.");
+				Access.error("[ERROR] Directory must contain at least 2 files or subdirectories.");
 				return;
 			}
 
@@ -326,7 +411,7 @@ public class AccessQRY {
 
 				// different split lengths means paths at different levels
 				if (pathL.split("/").length != pathR.split("/").length) {
-					System.err.println("\n[ERROR] Paths must be at the same specified level.\n");
+					Access.error("\n[ERROR] Paths must be at the same specified level.\n");
 					return;
 				}
 
@@ -354,7 +439,7 @@ public class AccessQRY {
 
 		}
 		if (!failures.equals("")) {
-			System.err.println(failures);
+			Access.error(failures);
 		}
 
 		// adds exclusions to comparator
@@ -371,7 +456,7 @@ public class AccessQRY {
 		// runs comparator and stdout for query discrepancies summary
 		Map<String, Integer> compstats = comparator.run();
 		if (compstats.get("queried") == 0) {
-			System.err.println("[ERROR] No matching properties found.\n");
+			Access.error("[ERROR] No matching properties found.\n");
 			return;
 		}
 		System.out.print("Found " + compstats.get("queried") + " properties ");
@@ -381,21 +466,26 @@ public class AccessQRY {
 
 		}
 		System.out.println("matching query.");
+		if (compstats.get("identical") > 0) {
+			System.out.println("Skipped " + compstats.get("identical") + " identical pair(s) of queries.");
+		}
 		int diffkey = comparator.getDiscrepancies().get("key");
 		int diffval = comparator.getDiscrepancies().get("value");
 		int difftotal = diffkey + diffval;
 		int ignored = comparator.getDiscrepancies().get("ignored");
+		int same = comparator.getDiscrepancies().get("same");
 		if (difftotal != 0) {
 			System.out.println("\nKey discrepancies\t" + diffkey);
 			System.out.println("Value discrepancies\t" + diffval);
 			System.out.println("Total discrepancies\t" + difftotal);
 			System.out.println("Ignored properties\t" + ignored);
+			System.out.println("Same properties\t\t" + same);
 			System.out.println();
 		} else {
 
 			// in case of identical configurations
 			System.out.println("\nNo discrepancies found in the directories given by the query.");
-			while (true) {
+			while (Access.interactive) {
 				System.out.print("Still write a CSV report? (y/n): ");
 				String write = "";
 				try {
@@ -416,9 +506,10 @@ public class AccessQRY {
 		}
 
 		// prompts user to either enter a custom CSV name or use default name
-		String filename = comparator.getDefaultName();
-		while (true) {
-			System.out.print("Use default CSV file name " + filename + "? (y/n): ");
+		String filename = output != null ? output : comparator.getDefaultName();
+		String format = binary ? "report" : "CSV";
+		while (output == null && Access.interactive) {
+			System.out.print("Use default " + format + " file name " + filename + "? (y/n): ");
 
 			String choice = "";
 			try {
@@ -434,7 +525,7 @@ public class AccessQRY {
 
 				// checks if custom filename legal across OSes
 				while (true) {
-					System.out.print("Enter custom CSV file name: ");
+					System.out.print("Enter custom " + format + " file name: ");
 					String custom;
 					try {
 						custom = input.readLine();
@@ -448,7 +539,7 @@ public class AccessQRY {
 
 					// if custom != legal, then custom had illegal characters
 					if (!custom.equals(legal)) {
-						System.err.println("\n[ERROR] Illegal CSV file name.");
+						System.err.println("\n[ERROR] Illegal " + format + " file name.");
 						System.err.println("To prevent writing corrupted files, only the following are allowed:"
 								+ "letters, numbers, spaces, and the characters ._-\n");
 						continue;
@@ -475,7 +566,13 @@ public class AccessQRY {
 		}
 		new File(writePath).mkdirs();
 
-		String writeresult = comparator.writeToCSV(filename, writePath);
+		String writeresult;
+		if (binary) {
+			writeresult = comparator.writeToColumnar(filename, writePath);
+			filename += "." + ColumnarReport.EXTENSION;
+		} else {
+			writeresult = comparator.writeToCSV(filename, writePath);
+		}
 		writeresult = writeresult == null ? "Succesfully wrote " + writePath + "/" + filename : writeresult;
 		System.out.println("\n" + writeresult + "\n");
 	}
@@ -487,7 +584,7 @@ public class AccessQRY {
 	 *            the path to be cleaned, usually user input
 	 * @return the cleaned path, with standard path delimiters
 	 */
-	private static String cleanPath(String path) {
+	static String cleanPath(String path) {
 		while (path.contains("\\")) {
 			path = path.replace("\\", "/");
 		}
@@ -0,0 +1,356 @@
+package driver;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.PatternSyntaxException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.*;
+
+import databaseModule.Catalog;
+import queryModule.QueryEngine;
+import queryModule.QueryFunctions;
+
+/**
+ * Serves read-only queries over a local HTTP/JSON API, keeping the JVM and database warm between
+ * requests. Every endpoint takes GET requests with URL-encoded parameters and responds with a JSON
+ * object, or with {"error": message} and a 4xx status for invalid requests (or a 5xx status if the
+ * database cannot be read, which leaves the server running):
+ * <dl>
+ * <dt>/info
+ * <dd>the catalog rows of the database and of every environment, fabric, node, and extension
+ * <dt>/list?path=&amp;depth=&amp;limit=
+ * <dd>the lines of the directory structure, as printed by `list`
+ * <dt>/grep?pattern=&amp;type=key|value&amp;mode=substring|regex|glob
+ * <dd>the matching keys or values
+ * <dt>/find?pattern=&amp;location=&amp;type=key|value&amp;mode=substring|regex|glob
+ * <dd>the key, value, and path of each matching property
+ * <dt>/compare?path=&amp;path=&amp;exclude=&amp;mode=full|diff|summary
+ * <dd>the counts and report tables of a comparison, with one `path` for an internal query or an
+ * even number of paths for pairs of queries, each of which may end in `@version`
+ * <dt>/stats[?reset]
+ * <dd>the metrics collected since the server started (or was last reset), if started with `--stats`
+ * </dl>
+ * Requests are handled concurrently by a fixed pool of threads, each reading through its own
+ * read-only connection (see {@link ConnectionPool}).
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class AccessServer {
+
+	public static final int DEFAULT_PORT = 8750;
+	private static final int THREADS = 4;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Thrown for invalid requests, which are answered with a 400 status.
+	 */
+	private static class BadRequest extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		BadRequest(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Handles a single endpoint, given the parameters of a request.
+	 */
+	private interface Endpoint {
+		Object handle(Map<String, List<String>> params);
+	}
+
+	/**
+	 * Starts the server on localhost. The database must already be connected.
+	 *
+	 * @param port
+	 *            the port to listen on
+	 * @return the running server
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public static HttpServer serve(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/info", wrap(AccessServer::info));
+		server.createContext("/list", wrap(AccessServer::list));
+		server.createContext("/grep", wrap(AccessServer::grep));
+		server.createContext("/find", wrap(AccessServer::find));
+		server.createContext("/compare", wrap(AccessServer::compare));
+		server.createContext("/stats", wrap(AccessServer::stats));
+		server.setExecutor(Executors.newFixedThreadPool(THREADS));
+		server.start();
+		System.out.println("Serving on http://localhost:" + port
+				+ " (endpoints: /info, /list, /grep, /find, /compare, /stats)");
+		return server;
+	}
+
+	/**
+	 * Adapts an endpoint to an HttpHandler that parses parameters and writes JSON responses.
+	 *
+	 * @param endpoint
+	 *            the endpoint
+	 * @return the HttpHandler
+	 */
+	private static HttpHandler wrap(Endpoint endpoint) {
+		return exchange -> {
+			int status = 200;
+			Object body;
+			try {
+				if (!exchange.getRequestMethod().equals("GET")) {
+					throw new BadRequest("Only GET requests are supported.");
+				}
+				body = endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+			} catch (BadRequest e) {
+				status = 400;
+				body = Collections.singletonMap("error", e.getMessage());
+			} catch (SQLiteManager.DatabaseException e) {
+				status = 500;
+				body = Collections.singletonMap("error", "Database error: " + e.getCause().getMessage());
+			} catch (RuntimeException e) {
+				status = 500;
+				body = Collections.singletonMap("error", String.valueOf(e));
+			}
+
+			byte[] json = mapper.writeValueAsBytes(body);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, json.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(json);
+			}
+		};
+	}
+
+	/**
+	 * Handles /info.
+	 */
+	private static Object info(Map<String, List<String>> params) {
+		Map<String, Object> info = new LinkedHashMap<>();
+		info.put("database", Catalog.getDatabase());
+		for (String scope : new String[] { "environment", "fabric", "node", "extension" }) {
+			info.put(scope + "s", Catalog.get(scope));
+		}
+		return info;
+	}
+
+	/**
+	 * Handles /list.
+	 */
+	private static Object list(Map<String, List<String>> params) {
+		String path = get(params, "path", "");
+		int depth = getInt(params, "depth", 1);
+		int limit = getInt(params, "limit", -1);
+		Iterator<String> lines;
+		try {
+			lines = SQLiteManager.getStructure().list(path, depth);
+		} catch (IllegalArgumentException e) {
+			throw new BadRequest("Invalid path: " + path);
+		}
+		List<String> listed = new ArrayList<>();
+		while (lines.hasNext() && listed.size() != limit) {
+			listed.add(lines.next());
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("lines", listed);
+		result.put("truncated", lines.hasNext());
+		return result;
+	}
+
+	/**
+	 * Handles /grep.
+	 */
+	private static Object grep(Map<String, List<String>> params) {
+		String pattern = require(params, "pattern");
+		try {
+			Set<String> matches = QueryFunctions.grep(pattern, getType(params), getMode(params));
+			return Collections.singletonMap("matches", matches);
+		} catch (PatternSyntaxException e) {
+			throw new BadRequest("Invalid pattern: " + e.getDescription());
+		}
+	}
+
+	/**
+	 * Handles /find.
+	 */
+	private static Object find(Map<String, List<String>> params) {
+		String pattern = require(params, "pattern");
+		String location = get(params, "location", null);
+		if (location != null) {
+			validatePath(location, false);
+		}
+		try {
+			List<Map<String, String>> properties = QueryFunctions.findProp(pattern, location, getType(params),
+					getMode(params));
+			return Collections.singletonMap("properties", properties);
+		} catch (PatternSyntaxException e) {
+			throw new BadRequest("Invalid pattern: " + e.getDescription());
+		}
+	}
+
+	/**
+	 * Handles /compare.
+	 */
+	private static Object compare(Map<String, List<String>> params) {
+		List<String> paths = params.getOrDefault("path", new ArrayList<String>());
+		if (paths.isEmpty() || paths.size() > 1 && paths.size() % 2 != 0) {
+			throw new BadRequest("Invalid number of paths.");
+		}
+		List<String> exclusions = params.getOrDefault("exclude", new ArrayList<String>());
+		for (String path : paths) {
+			validatePath(path, true);
+		}
+		for (String exclusion : exclusions) {
+			validatePath(exclusion, false);
+		}
+
+		QueryEngine comparator = new QueryEngine();
+		switch (get(params, "mode", "full")) {
+		case "full":
+			comparator.setMode(QueryEngine.FULL_REPORT);
+			break;
+		case "diff":
+			comparator.setMode(QueryEngine.DIFF_ONLY);
+			break;
+		case "summary":
+			comparator.setMode(QueryEngine.SUMMARY);
+			break;
+		default:
+			throw new BadRequest("Invalid mode: " + get(params, "mode", null));
+		}
+
+		if (paths.size() == 1) {
+			String path = AccessQRY.cleanPath(paths.get(0));
+			List<String> subpaths = comparator.generateInternalQueries(path);
+			if (subpaths.size() < 2) {
+				throw new BadRequest("Directory must contain at least 2 files or subdirectories.");
+			}
+			for (int i = 0; i < subpaths.size() - 1; i++) {
+				for (int j = i + 1; j < subpaths.size(); j++) {
+					comparator.addQuery(subpaths.get(i), subpaths.get(j));
+				}
+			}
+		} else {
+			for (int i = 0; i < paths.size(); i += 2) {
+				String pathL = AccessQRY.cleanPath(paths.get(i));
+				String pathR = AccessQRY.cleanPath(paths.get(i + 1));
+				if (pathL.split("/").length != pathR.split("/").length) {
+					throw new BadRequest("Paths must be at the same specified level.");
+				}
+				comparator.addQuery(pathL, pathR);
+			}
+		}
+		for (String exclusion : exclusions) {
+			comparator.exclude(AccessQRY.cleanPath(exclusion));
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.putAll(comparator.run());
+		result.put("discrepancies", comparator.getDiscrepancies());
+		result.put("tables", comparator.getTables());
+		return result;
+	}
+
+	/**
+	 * Handles /stats.
+	 */
+	private static Object stats(Map<String, List<String>> params) {
+		if (!Metrics.isEnabled()) {
+			throw new BadRequest("Metrics are disabled; start the server with --stats --serve.");
+		}
+		Map<String, Object> stats = Metrics.snapshot();
+		if (params.containsKey("reset")) {
+			Metrics.reset();
+		}
+		return stats;
+	}
+
+	/**
+	 * Parses a URL query string into its parameters, each of which may be repeated.
+	 *
+	 * @param query
+	 *            the raw query string, or null
+	 * @return a Map of each parameter name to its values, in order
+	 */
+	private static Map<String, List<String>> parseQuery(String query) {
+		Map<String, List<String>> params = new HashMap<>();
+		if (query == null) {
+			return params;
+		}
+		try {
+			for (String pair : query.split("&")) {
+				if (pair.isEmpty()) {
+					continue;
+				}
+				int eq = pair.indexOf('=');
+				String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8.name());
+				String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8.name());
+				params.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+			}
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			throw new BadRequest("Malformed query string.");
+		}
+		return params;
+	}
+
+	private static String get(Map<String, List<String>> params, String name, String fallback) {
+		List<String> values = params.get(name);
+		return values == null ? fallback : values.get(0);
+	}
+
+	private static String require(Map<String, List<String>> params, String name) {
+		String value = get(params, name, null);
+		if (value == null || value.isEmpty()) {
+			throw new BadRequest("Missing parameter: " + name);
+		}
+		return value;
+	}
+
+	private static void validatePath(String path, boolean versioned) {
+		if (path.replace("\\", "/").replace("/", "").isEmpty()) {
+			throw new BadRequest("Invalid path: " + path);
+		}
+		try {
+			SQLiteManager.generatePathFilter(path, versioned);
+		} catch (IllegalArgumentException e) {
+			throw new BadRequest(e.getMessage());
+		}
+	}
+
+	private static int getInt(Map<String, List<String>> params, String name, int fallback) {
+		String value = get(params, name, null);
+		try {
+			return value == null ? fallback : Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new BadRequest("Parameter " + name + " must be numeric.");
+		}
+	}
+
+	private static int getType(Map<String, List<String>> params) {
+		switch (get(params, "type", "key")) {
+		case "key":
+			return 0;
+		case "value":
+			return 1;
+		default:
+			throw new BadRequest("Invalid type: " + get(params, "type", null));
+		}
+	}
+
+	private static int getMode(Map<String, List<String>> params) {
+		switch (get(params, "mode", "substring")) {
+		case "substring":
+			return QueryFunctions.SUBSTRING;
+		case "regex":
+			return QueryFunctions.REGEX;
+		case "glob":
+			return QueryFunctions.GLOB;
+		default:
+			throw new BadRequest("Invalid mode: " + get(params, "mode", null));
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+package driver;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Manages the connections to a single SQLite database file: one writer connection, shared by every
+ * thread that modifies the database one at a time, and a pool of read-only connections, so that
+ * reads run in parallel with each other and with an ongoing write. The database is kept in
+ * write-ahead logging mode, in which readers see the last committed state and never wait on the
+ * writer.
+ * <p>
+ * Only the writer connection ever leaves autocommit, and only while its lock is held, so a
+ * transaction on one thread never changes the behavior of statements on another. A thread within
+ * a write reads through the writer connection, so that it sees its own uncommitted changes.
+ * <p>
+ * Once closed, the pool refuses to lend read-only connections with a
+ * {@link SQLTransientConnectionException}, since its file may since have been replaced or deleted:
+ * the caller should look up the connections to the file again and retry.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class ConnectionPool {
+
+	private static final String BUSY_TIMEOUT = "30000";
+
+	private final String database;
+	private final String url;
+	private final Connection writer;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final BlockingQueue<Connection> readers;
+	private final List<Connection> opened = new ArrayList<>();
+	private final int size;
+	private volatile boolean closed;
+	private volatile long dataVersion;
+	private final List<Runnable> committed = new ArrayList<>();	// actions awaiting the commit
+	private boolean transacting;
+
+	/**
+	 * Work done with a connection, which may throw a SQLException.
+	 *
+	 * @param <T>
+	 *            the result type
+	 */
+	@FunctionalInterface
+	public interface Work<T> {
+		T apply(Connection connection) throws SQLException;
+	}
+
+	/**
+	 * Constructor. Opens the writer connection; read-only connections are opened as they are
+	 * needed, up to the given number.
+	 *
+	 * @param database
+	 *            the path of the database file
+	 * @param size
+	 *            the most read-only connections to open
+	 * @throws SQLException
+	 *             if the database cannot be opened
+	 */
+	public ConnectionPool(String database, int size) throws SQLException {
+		this.database = database;
+		this.url = "jdbc:sqlite:" + database;
+		this.size = Math.max(1, size);
+		this.readers = new ArrayBlockingQueue<>(this.size);
+
+		SQLiteConfig config = new SQLiteConfig();
+		config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+		config.setBusyTimeout(BUSY_TIMEOUT);
+		writer = config.createConnection(url);
+		RegexFunction.register(writer);
+	}
+
+	/**
+	 * Returns the path of the database file.
+	 *
+	 * @return the path of the database file
+	 */
+	public String getDatabase() {
+		return database;
+	}
+
+	/**
+	 * Runs work that only reads from the database, on a read-only connection (or on the writer
+	 * connection, if the current thread is within a write). The work must close its statements, or
+	 * the connection keeps reading from the snapshot of its unfinished statement.
+	 *
+	 * @param work
+	 *            the work
+	 * @return the result of the work
+	 * @throws SQLException
+	 *             if the work fails, or a {@link SQLTransientConnectionException} if the pool is
+	 *             closed
+	 */
+	public <T> T read(Work<T> work) throws SQLException {
+		if (lock.isHeldByCurrentThread()) {
+			return work.apply(writer);
+		}
+		Connection reader = borrow();
+		try {
+			return work.apply(reader);
+		} finally {
+			readers.add(reader);
+		}
+	}
+
+	/**
+	 * Runs work that modifies the database on the writer connection, after any other thread's
+	 * write has finished.
+	 *
+	 * @param work
+	 *            the work
+	 * @return the result of the work
+	 * @throws SQLException
+	 *             if the work fails
+	 */
+	public <T> T write(Work<T> work) throws SQLException {
+		lock.lock();
+		try {
+			return work.apply(writer);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs work that modifies the database as a single transaction, rolling it back if the work
+	 * fails. Transactions within a transaction simply become part of the outer transaction.
+	 *
+	 * @param work
+	 *            the work
+	 * @return the result of the work
+	 * @throws SQLException
+	 *             if the work fails
+	 */
+	public <T> T transaction(Work<T> work) throws SQLException {
+		lock.lock();
+		try {
+			if (!writer.getAutoCommit()) {
+				return work.apply(writer);
+			}
+			writer.setAutoCommit(false);
+			transacting = true;
+			T result;
+			List<Runnable> actions;
+			try {
+				result = work.apply(writer);
+				long start = Metrics.start();
+				writer.commit();
+				Metrics.time("sql commit", start);
+			} catch (SQLException | RuntimeException e) {
+				writer.rollback();
+				throw e;
+			} finally {
+				actions = new ArrayList<>(committed);
+				committed.clear();
+				transacting = false;
+				writer.setAutoCommit(true);
+			}
+
+			// runs before other writes, so that the actions of each transaction run in commit order
+			for (Runnable action : actions) {
+				action.run();
+			}
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs an action once the current thread's transaction has committed, or at once if the thread
+	 * is not within a transaction. If the transaction is rolled back, the action never runs, so
+	 * state kept outside of the database should be updated this way.
+	 *
+	 * @param action
+	 *            the action
+	 */
+	public void afterCommit(Runnable action) {
+		if (lock.isHeldByCurrentThread() && transacting) {
+			committed.add(action);
+		} else {
+			action.run();
+		}
+	}
+
+	/**
+	 * Returns the data version of the database file, which changes whenever a connection other
+	 * than the writer, such as one in another process, commits a change to the file. While another
+	 * thread is writing, the value last read is returned instead of waiting for the write.
+	 *
+	 * @return the data version of the database file
+	 * @throws SQLException
+	 *             if the data version cannot be read
+	 */
+	public long getDataVersion() throws SQLException {
+		if (!lock.tryLock()) {
+			return dataVersion;
+		}
+		try (Statement stmt = writer.createStatement();
+				ResultSet rs = stmt.executeQuery("PRAGMA data_version;")) {
+			rs.next();
+			dataVersion = rs.getLong(1);
+			return dataVersion;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks if the current thread is within a write, and so reads through the writer connection.
+	 *
+	 * @return true if the current thread holds the writer connection, else false
+	 */
+	public boolean isWriting() {
+		return lock.isHeldByCurrentThread();
+	}
+
+	/**
+	 * Closes every connection, once every read-only connection in use has been returned, so that
+	 * no read is cut short. Later reads fail rather than reopening the file.
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			synchronized (opened) {
+				closed = true;
+				List<Connection> returned = new ArrayList<>();
+				try {
+					while (returned.size() < opened.size()) {
+						returned.add(readers.take());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				for (Connection reader : opened) {
+					reader.close();
+				}
+				opened.clear();
+			}
+			readers.clear();
+			writer.close();
+		} catch (SQLException e) {
+			// the connections are discarded either way
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes an idle read-only connection, opening a new one if none is idle and the pool is not
+	 * full, else waiting for one to be returned.
+	 *
+	 * @return the read-only connection
+	 * @throws SQLException
+	 *             if a new connection cannot be opened, or a
+	 *             {@link SQLTransientConnectionException} if the pool is closed
+	 */
+	private Connection borrow() throws SQLException {
+		while (true) {
+			Connection reader = readers.poll();
+			if (reader == null) {
+				synchronized (opened) {
+					if (!closed && opened.size() < size) {
+						SQLiteConfig config = new SQLiteConfig();
+						config.setReadOnly(true);
+						config.setBusyTimeout(BUSY_TIMEOUT);
+						reader = config.createConnection(url);
+						RegexFunction.register(reader);
+						opened.add(reader);
+						return reader;
+					}
+				}
+				try {
+					reader = readers.poll(100, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for a connection.", e);
+				}
+			}
+
+			// a closing pool takes back every connection, so none is lent once it is closed
+			if (closed) {
+				if (reader != null) {
+					readers.add(reader);
+				}
+				throw new SQLTransientConnectionException("The connections to " + database + " are closed.");
+			}
+			if (reader != null) {
+				return reader;
+			}
+		}
+	}
+
+}
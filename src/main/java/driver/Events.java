@@ -0,0 +1,188 @@
+package driver;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Emits Java Flight Recorder events for parsing files, running SQL statements, storing files, and
+ * comparing pairs of queries, so that a recording shows which file or query was being handled
+ * during a GC pause or I/O stall. Events are recorded like any other JFR event, e.g. with
+ * `java -XX:StartFlightRecording=filename=lighthouse.jfr -jar lighthouse.jar`, and are listed under
+ * the "Lighthouse" category.
+ * <p>
+ * Each event is started with a `begin` method, which returns the event as an opaque handle (or
+ * null if JFR is unavailable), and ended with the matching `end` method. The fields of an event
+ * are only computed if the recording would keep it, and an event that is not being recorded costs
+ * little more than its allocation.
+ * <p>
+ * This class does not refer to the jdk.jfr API itself: the events are recorded by
+ * {@link FlightEvents}, which is loaded reflectively. On runtimes without JFR (i.e. Java 8 before
+ * update 262), or in builds made with `-Dno-jfr`, it is never loaded and every method returns
+ * immediately.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class Events {
+
+	private static final Recorder recorder = load();
+
+	/**
+	 * Records the events, given the handles it returns from each `begin` method.
+	 */
+	interface Recorder {
+		Object beginParse();
+
+		void endParse(Object handle, File file, Class<?> parser, int properties);
+
+		Object beginStatement();
+
+		void endStatement(Object handle, String sql, long rows);
+
+		Object beginStore();
+
+		void endStore(Object handle, String path, int properties, int changed);
+
+		Object beginCompare();
+
+		void endCompare(Object handle, List<Map<String, String>> query, Function<Map<String, String>, String> format,
+				int rows, boolean identical);
+	}
+
+	/**
+	 * Starts a parse event.
+	 *
+	 * @return the event, or null if JFR is unavailable
+	 */
+	public static Object beginParse() {
+		return recorder == null ? null : recorder.beginParse();
+	}
+
+	/**
+	 * Ends a parse event.
+	 *
+	 * @param handle
+	 *            the event returned by {@link #beginParse()}
+	 * @param file
+	 *            the file parsed
+	 * @param parser
+	 *            the type of parser
+	 * @param properties
+	 *            the number of properties parsed
+	 */
+	public static void endParse(Object handle, File file, Class<?> parser, int properties) {
+		if (handle != null) {
+			recorder.endParse(handle, file, parser, properties);
+		}
+	}
+
+	/**
+	 * Starts a statement event.
+	 *
+	 * @return the event, or null if JFR is unavailable
+	 */
+	public static Object beginStatement() {
+		return recorder == null ? null : recorder.beginStatement();
+	}
+
+	/**
+	 * Ends a statement event.
+	 *
+	 * @param handle
+	 *            the event returned by {@link #beginStatement()}
+	 * @param sql
+	 *            the SQL statement
+	 * @param rows
+	 *            the number of rows selected or modified
+	 */
+	public static void endStatement(Object handle, String sql, long rows) {
+		if (handle != null) {
+			recorder.endStatement(handle, sql, rows);
+		}
+	}
+
+	/**
+	 * Starts a store event.
+	 *
+	 * @return the event, or null if JFR is unavailable
+	 */
+	public static Object beginStore() {
+		return recorder == null ? null : recorder.beginStore();
+	}
+
+	/**
+	 * Ends a store event.
+	 *
+	 * @param handle
+	 *            the event returned by {@link #beginStore()}
+	 * @param path
+	 *            the path of the file stored
+	 * @param properties
+	 *            the number of properties stored
+	 * @param changed
+	 *            the number of key-value pairs added to or closed in the history
+	 */
+	public static void endStore(Object handle, String path, int properties, int changed) {
+		if (handle != null) {
+			recorder.endStore(handle, path, properties, changed);
+		}
+	}
+
+	/**
+	 * Starts a compare event.
+	 *
+	 * @return the event, or null if JFR is unavailable
+	 */
+	public static Object beginCompare() {
+		return recorder == null ? null : recorder.beginCompare();
+	}
+
+	/**
+	 * Ends a compare event.
+	 *
+	 * @param handle
+	 *            the event returned by {@link #beginCompare()}
+	 * @param query
+	 *            the query pair {left filter, right filter}
+	 * @param format
+	 *            formats a filter as a path, e.g. "dev1/storm/*"
+	 * @param rows
+	 *            the number of properties queried for the pair
+	 * @param identical
+	 *            true if the pair was skipped because its fingerprints matched, else false
+	 */
+	public static void endCompare(Object handle, List<Map<String, String>> query,
+			Function<Map<String, String>, String> format, int rows, boolean identical) {
+		if (handle != null) {
+			recorder.endCompare(handle, query, format, rows, identical);
+		}
+	}
+
+	/**
+	 * Checks if JFR events can be recorded, i.e. if the runtime has the jdk.jfr API and the build
+	 * includes {@link FlightEvents}.
+	 *
+	 * @return true if events are recorded, else false
+	 */
+	public static boolean isAvailable() {
+		return recorder != null;
+	}
+
+	/**
+	 * Loads the recorder of the events, if the runtime supports JFR events.
+	 *
+	 * @return the recorder, or null if the jdk.jfr API or {@link FlightEvents} is missing
+	 */
+	private static Recorder load() {
+		try {
+			ClassLoader loader = Events.class.getClassLoader();
+			Class.forName("jdk.jfr.Event", false, loader);
+			return (Recorder) Class.forName(Events.class.getPackage().getName() + ".FlightEvents", true, loader)
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package driver;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.Function;
+
+import jdk.jfr.*;
+
+/**
+ * Records the events of {@link Events} with the jdk.jfr API. This is the only class that refers to
+ * jdk.jfr: it is loaded reflectively, and only if the runtime supports JFR events, and it is left
+ * out of builds made with `-Dno-jfr`, i.e. on Java 8 before update 262 (see the POM).
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+class FlightEvents implements Events.Recorder {
+
+	@Name("lighthouse.Parse")
+	@Label("Parse File")
+	@Category({ "Lighthouse", "Parser" })
+	@Description("Parses and standardizes a single file")
+	static class ParseEvent extends Event {
+		@Label("Path")
+		String path;
+
+		@Label("Parser")
+		String parser;
+
+		@Label("Size")
+		@DataAmount
+		long bytes;
+
+		@Label("Properties")
+		int properties;
+	}
+
+	@Name("lighthouse.Statement")
+	@Label("SQL Statement")
+	@Category({ "Lighthouse", "Database" })
+	@Description("Runs a SQL statement, by its shape (i.e. with every literal replaced by ?)")
+	static class StatementEvent extends Event {
+		@Label("Statement")
+		String statement;
+
+		@Label("Rows")
+		long rows;
+	}
+
+	@Name("lighthouse.StoreFile")
+	@Label("Store File")
+	@Category({ "Lighthouse", "Database" })
+	@Description("Replaces the properties and history of a single file")
+	static class StoreEvent extends Event {
+		@Label("Path")
+		String path;
+
+		@Label("Properties")
+		int properties;
+
+		@Label("Changed Pairs")
+		int changed;
+	}
+
+	@Name("lighthouse.Compare")
+	@Label("Compare Pair")
+	@Category({ "Lighthouse", "Query" })
+	@Description("Compares one pair of queries")
+	static class CompareEvent extends Event {
+		@Label("Left")
+		String left;
+
+		@Label("Right")
+		String right;
+
+		@Label("Rows")
+		int rows;
+
+		@Label("Identical")
+		@Description("Whether the pair was skipped because its fingerprints matched")
+		boolean identical;
+	}
+
+	@Override
+	public Object beginParse() {
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endParse(Object handle, File file, Class<?> parser, int properties) {
+		ParseEvent event = (ParseEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = file.getPath();
+			event.parser = parser.getSimpleName();
+			event.bytes = file.length();
+			event.properties = properties;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginStatement() {
+		StatementEvent event = new StatementEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endStatement(Object handle, String sql, long rows) {
+		StatementEvent event = (StatementEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.statement = Metrics.shape(sql);
+			event.rows = rows;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginStore() {
+		StoreEvent event = new StoreEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endStore(Object handle, String path, int properties, int changed) {
+		StoreEvent event = (StoreEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = path;
+			event.properties = properties;
+			event.changed = changed;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginCompare() {
+		CompareEvent event = new CompareEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endCompare(Object handle, List<Map<String, String>> query,
+			Function<Map<String, String>, String> format, int rows, boolean identical) {
+		CompareEvent event = (CompareEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.left = format.apply(query.get(0));
+			event.right = format.apply(query.get(1));
+			event.rows = rows;
+			event.identical = identical;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+package driver;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Collects timings and counters from the hot paths of `populate` and `compare`, so that their time
+ * can be broken down by phase (directory walk, parsing by parser class, SQL by statement shape,
+ * commits, pairs of queries). Timers are histograms of durations and counters are running sums;
+ * a counter "x.rows" with a timer "x.total" is also reported as a rate in rows per second.
+ * <p>
+ * Metrics are only collected when enabled with `--stats`. When disabled, {@link #start()} returns
+ * 0 and every other call returns immediately, so instrumented code costs a single branch.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class Metrics {
+
+	private static boolean enabled;	// set once at startup, before any instrumented code runs
+
+	private static final Map<String, Histogram> timers = new ConcurrentHashMap<>();
+	private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * A histogram of durations in nanoseconds, with 8 buckets per power of two, so that
+	 * percentiles are accurate to within about 6%.
+	 */
+	private static class Histogram {
+		private final long[] buckets = new long[496];
+		private long count;
+		private long total;
+		private long max;
+
+		synchronized void add(long nanos) {
+			buckets[bucket(Math.max(0, nanos))]++;
+			count++;
+			total += nanos;
+			max = Math.max(max, nanos);
+		}
+
+		synchronized Map<String, Object> summarize() {
+			Map<String, Object> summary = new LinkedHashMap<>();
+			summary.put("count", count);
+			summary.put("total_ms", millis(total));
+			summary.put("mean_ms", millis(count == 0 ? 0 : total / count));
+			summary.put("p50_ms", millis(percentile(0.50)));
+			summary.put("p90_ms", millis(percentile(0.90)));
+			summary.put("p99_ms", millis(percentile(0.99)));
+			summary.put("max_ms", millis(max));
+			return summary;
+		}
+
+		private long percentile(double p) {
+			long rank = (long) Math.ceil(p * count);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank && buckets[i] > 0) {
+					return Math.min(max, midpoint(i));
+				}
+			}
+			return max;
+		}
+
+		private static int bucket(long nanos) {
+			if (nanos < 8) {
+				return (int) nanos;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+			return (exponent - 2) * 8 + (int) (nanos >>> (exponent - 3) & 7);
+		}
+
+		private static long midpoint(int bucket) {
+			if (bucket < 8) {
+				return bucket;
+			}
+			int shift = bucket / 8 - 1;
+			long lower = (8L + bucket % 8) << shift;
+			return lower + (1L << shift) / 2;
+		}
+	}
+
+	/**
+	 * Enables or disables the collection of metrics.
+	 *
+	 * @param enable
+	 *            true to collect metrics, else false
+	 */
+	public static void enable(boolean enable) {
+		enabled = enable;
+	}
+
+	/**
+	 * Checks if metrics are being collected.
+	 *
+	 * @return true if metrics are being collected, else false
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts timing an operation.
+	 *
+	 * @return the start time to pass to {@link #time(String, long)}, or 0 if disabled
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the duration of an operation.
+	 *
+	 * @param name
+	 *            the name of the timer
+	 * @param start
+	 *            the start time returned by {@link #start()}
+	 */
+	public static void time(String name, long start) {
+		if (start == 0) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		timers.computeIfAbsent(name, k -> new Histogram()).add(nanos);
+	}
+
+	/**
+	 * Records the duration of an operation by the type that performed it, e.g. per parser class.
+	 *
+	 * @param name
+	 *            the name of the timer, to which the simple name of the type is appended
+	 * @param type
+	 *            the type
+	 * @param start
+	 *            the start time returned by {@link #start()}
+	 */
+	public static void time(String name, Class<?> type, long start) {
+		if (start == 0) {
+			return;
+		}
+		time(name + " " + type.getSimpleName(), start);
+	}
+
+	/**
+	 * Records the duration of a SQL statement, by the shape of the statement (i.e. with every
+	 * literal replaced by `?`), so that statements differing only in their values share a timer.
+	 *
+	 * @param sql
+	 *            the SQL statement
+	 * @param start
+	 *            the start time returned by {@link #start()}
+	 */
+	public static void timeStatement(String sql, long start) {
+		if (start == 0) {
+			return;
+		}
+		time("sql " + shape(sql), start);
+	}
+
+	/**
+	 * Adds to a counter.
+	 *
+	 * @param name
+	 *            the name of the counter
+	 * @param n
+	 *            the amount to add
+	 */
+	public static void count(String name, long n) {
+		if (!enabled) {
+			return;
+		}
+		counters.computeIfAbsent(name, k -> new LongAdder()).add(n);
+	}
+
+	/**
+	 * Reduces a SQL statement to its shape: string and numeric literals become `?`, and lists of
+	 * placeholders become a single `?, ...`.
+	 *
+	 * @param sql
+	 *            the SQL statement
+	 * @return the shape of the statement
+	 */
+	public static String shape(String sql) {
+		String shape = sql.replaceAll("'(?:[^']|'')*'", "?").replaceAll("\\b[0-9]+\\b", "?");
+		shape = shape.replaceAll("\\?(?:\\s*,\\s*\\?)+", "?, ...").replaceAll("\\s+", " ").trim();
+		return shape.endsWith(";") ? shape.substring(0, shape.length() - 1) : shape;
+	}
+
+	/**
+	 * Takes a snapshot of every metric collected since the last reset.
+	 *
+	 * @return a Map containing the "timers" (each summarized by count, total, mean, percentiles,
+	 *         and maximum in milliseconds, by total time descending), the "counters", and the
+	 *         "rates" in rows per second
+	 */
+	public static Map<String, Object> snapshot() {
+		List<Map.Entry<String, Histogram>> sorted = new ArrayList<>(timers.entrySet());
+		Map<String, Map<String, Object>> summaries = new HashMap<>();
+		for (Map.Entry<String, Histogram> timer : sorted) {
+			summaries.put(timer.getKey(), timer.getValue().summarize());
+		}
+		sorted.sort((a, b) -> Double.compare((double) summaries.get(b.getKey()).get("total_ms"),
+				(double) summaries.get(a.getKey()).get("total_ms")));
+
+		Map<String, Object> timed = new LinkedHashMap<>();
+		for (Map.Entry<String, Histogram> timer : sorted) {
+			timed.put(timer.getKey(), summaries.get(timer.getKey()));
+		}
+		Map<String, Long> counted = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+			counted.put(counter.getKey(), counter.getValue().sum());
+		}
+		Map<String, Long> rates = new TreeMap<>();
+		for (Map.Entry<String, Long> counter : counted.entrySet()) {
+			String name = counter.getKey();
+			if (name.endsWith(".rows") && summaries.containsKey(name.replaceAll("rows$", "total"))) {
+				double seconds = (double) summaries.get(name.replaceAll("rows$", "total")).get("total_ms") / 1000;
+				rates.put(name + "/s", seconds > 0 ? Math.round(counter.getValue() / seconds) : 0);
+			}
+		}
+
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("timers", timed);
+		snapshot.put("counters", counted);
+		snapshot.put("rates", rates);
+		return snapshot;
+	}
+
+	/**
+	 * Clears every metric.
+	 */
+	public static void reset() {
+		timers.clear();
+		counters.clear();
+	}
+
+	/**
+	 * Checks if any metric was collected since the last reset.
+	 *
+	 * @return true if no metric was collected, else false
+	 */
+	public static boolean isEmpty() {
+		return timers.isEmpty() && counters.isEmpty();
+	}
+
+	/**
+	 * Prints every metric collected since the last reset as a table.
+	 */
+	@SuppressWarnings("unchecked")
+	public static void print() {
+		Map<String, Object> snapshot = snapshot();
+		System.out.println(String.format("\n%-60s %8s %11s %9s %9s %9s %9s %9s", "timer", "count", "total ms",
+				"mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+		for (Map.Entry<String, Object> timer : ((Map<String, Object>) snapshot.get("timers")).entrySet()) {
+			Map<String, Object> s = (Map<String, Object>) timer.getValue();
+			String name = timer.getKey().length() > 60 ? timer.getKey().substring(0, 57) + "..." : timer.getKey();
+			System.out.println(String.format("%-60s %8d %11.1f %9.3f %9.3f %9.3f %9.3f %9.3f", name, s.get("count"),
+					s.get("total_ms"), s.get("mean_ms"), s.get("p50_ms"), s.get("p90_ms"), s.get("p99_ms"),
+					s.get("max_ms")));
+		}
+		for (Map.Entry<String, Long> counter : ((Map<String, Long>) snapshot.get("counters")).entrySet()) {
+			System.out.println(String.format("%-60s %8d", counter.getKey(), counter.getValue()));
+		}
+		for (Map.Entry<String, Long> rate : ((Map<String, Long>) snapshot.get("rates")).entrySet()) {
+			System.out.println(String.format("%-60s %8d", rate.getKey(), rate.getValue()));
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Appends every metric collected since the last reset to a file as a single line of JSON.
+	 *
+	 * @param file
+	 *            the file
+	 * @param command
+	 *            the command the metrics were collected for
+	 */
+	public static void export(String file, String command) {
+		Map<String, Object> line = new LinkedHashMap<>();
+		line.put("command", command);
+		line.put("time", System.currentTimeMillis());
+		line.putAll(snapshot());
+		try (Writer writer = new FileWriter(file, true)) {
+			writer.write(mapper.writeValueAsString(line) + "\n");
+		} catch (IOException e) {
+			System.err.println("[ERROR] Unable to write metrics to " + file + ": " + e.getMessage());
+		}
+	}
+
+	private static double millis(long nanos) {
+		return Math.round(nanos / 1e3) / 1e3;
+	}
+
+}
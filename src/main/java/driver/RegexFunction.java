@@ -0,0 +1,71 @@
+package driver;
+
+import java.sql.*;
+import java.util.*;
+import java.util.regex.*;
+
+import org.sqlite.Function;
+
+/**
+ * Implements the SQLite REGEXP operator with {@link java.util.regex.Pattern}, so that regular
+ * expressions are evaluated within the database instead of over every row in Java. SQLite calls
+ * the function once per row, so compiled patterns are cached rather than recompiled per call.
+ * <p>
+ * SQLite rewrites "X REGEXP Y" as "regexp(Y, X)": the first argument is the pattern and the second
+ * is the text being matched. Patterns match anywhere within the text, as with `grep`.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class RegexFunction extends Function {
+
+	private static final int CACHE_SIZE = 64;
+
+	// least-recently-used cache of compiled patterns
+	private final Map<String, Pattern> cache = new LinkedHashMap<String, Pattern>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Registers the function as REGEXP on a connection.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @throws SQLException
+	 *             if the function cannot be registered
+	 */
+	public static void register(Connection connection) throws SQLException {
+		Function.create(connection, "REGEXP", new RegexFunction());
+	}
+
+	/**
+	 * Evaluates a single "text REGEXP pattern" expression.
+	 */
+	@Override
+	protected void xFunc() throws SQLException {
+		String regex = value_text(0);
+		String text = value_text(1);
+		if (regex == null || text == null) {
+			result(0);
+			return;
+		}
+
+		Pattern pattern = cache.get(regex);
+		if (pattern == null) {
+			try {
+				pattern = Pattern.compile(regex);
+			} catch (PatternSyntaxException e) {
+				error("invalid regular expression: " + regex);
+				return;
+			}
+			cache.put(regex, pattern);
+		}
+		result(pattern.matcher(text).find() ? 1 : 0);
+	}
+
+}
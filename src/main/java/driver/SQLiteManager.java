@@ -1,33 +1,248 @@
 package driver;
 
 import java.sql.*;
+import java.time.*;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import databaseModule.Catalog;
+import databaseModule.ChangeFeed;
+import databaseModule.DirTree;
 
 public class SQLiteManager {
 
-	private static final String database = "lighthouse.db";
+	private static final String database = System.getProperty("lighthouse.database", "lighthouse.db");
+	private static final String shardDirectory = System.getProperty("lighthouse.shards");
 	private static final String table = "properties";
+	private static final String files = "files";
+	private static final String history = "history";
+
+	// the valid_to of history rows that are still current
+	private static final long OPEN = Long.MAX_VALUE;
 
 	public static String[] genericPath = { "environment", "fabric", "node", "filename" };
 	public static String[] reversePath = { "filename", "node", "fabric", "environment" };
 
-	private static Connection connection;
+	// the columns of each table, in the order rows are inserted by replaceFiles()
+	private static final String[] propertyColumns = { "key", "value", "filename", "node", "fabric", "environment",
+			"path", "extension", "ignore" };
+	private static final String[] fileColumns = { "path", "filename", "node", "fabric", "environment", "extension",
+			"properties", "fingerprint" };
+	private static final String[] historyColumns = { "key", "value", "filename", "node", "fabric", "environment",
+			"path", "extension", "valid_from", "valid_to" };
+
+	private static ConnectionPool pool;	// a writer connection and read-only connections
+	private static Shards shards;	// the properties of each environment, if sharded
+	private static DirTree structure;	// mirrors the paths in the file table once built
+	private static long structureVersion;	// data version of the file the structure was built from
+
+	/**
+	 * Thrown when a read from the database fails. Unlike failed writes, which exit the
+	 * application, failed reads are left to the caller, so that a server can fail a single request.
+	 */
+	public static class DatabaseException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		DatabaseException(SQLException cause) {
+			super(cause);
+		}
+
+		@Override
+		public SQLException getCause() {
+			return (SQLException) super.getCause();
+		}
+	}
 
 	/**
-	 * Connects to the database and creates the table if necessary.
+	 * Connects to the database and creates the table if necessary. Reads may then run on several
+	 * threads at once, while writes run one at a time (see {@link ConnectionPool}).
+	 * <p>
+	 * If the `lighthouse.shards` system property names a directory, the properties of each
+	 * environment are kept in a shard file of their own within it (see {@link Shards}), and the
+	 * properties of any environment still in the main database are moved into their shards.
 	 */
 	public static void connectToDatabase() {
 		try {
-			DriverManager.setLoginTimeout(30);
-			connection = DriverManager.getConnection("jdbc:sqlite:" + database);
-			Statement statement = connection.createStatement();
+			if (pool != null) {
+				pool.close();
+			}
+			if (shards != null) {
+				shards.close();
+			}
+			int size = Math.max(4, Runtime.getRuntime().availableProcessors());
+			pool = new ConnectionPool(database, size);
+			shards = shardDirectory != null ? new Shards(shardDirectory, size) : null;
+			structure = null;
+			pool.write(SQLiteManager::createTables);
+			if (shards != null) {
+				for (Map<String, String> row : query(pool, "SELECT environment FROM swaps;")) {
+					swap(row.get("environment"));
+				}
+				moveToShards();
+			}
+		} catch (SQLException e) {
+			exit(e);
+		}
+	}
+
+	/**
+	 * Creates the properties table if it does not exist, in the main database or in a shard.
+	 * 
+	 * @param connection
+	 *            the writer connection
+	 * @return null
+	 * @throws SQLException
+	 *             if the table cannot be created
+	 */
+	static Void createPropertiesTable(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
 			String sql = "CREATE TABLE IF NOT EXISTS properties (\n	key text,\n	value text,\n"
 					+ "	filename text,\n	node text,\n	fabric text,\n	environment text,\n"
 					+ "	path text,\n	extension text,\n	ignore text\n);";
 			statement.execute(sql);
-		} catch (SQLException e) {
-			exit(e);
 		}
+		return null;
+	}
+
+	/**
+	 * Creates the indexes of the properties table if they do not exist. A staged shard is only
+	 * indexed once it has been loaded (see {@link #replaceEnvironments(Collection, Runnable)}).
+	 * 
+	 * @param connection
+	 *            the writer connection
+	 * @return null
+	 * @throws SQLException
+	 *             if the indexes cannot be created
+	 */
+	static Void indexPropertiesTable(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE INDEX IF NOT EXISTS properties_key ON properties (key);");
+			statement.execute("CREATE INDEX IF NOT EXISTS properties_path ON properties (path);");
+			statement.execute("CREATE INDEX IF NOT EXISTS properties_value ON properties (value);");
+		}
+		return null;
+	}
+
+	/**
+	 * Moves the properties of every environment out of the main database and into its shard, e.g.
+	 * for a database populated before it was sharded.
+	 * 
+	 * @throws SQLException
+	 *             if the properties cannot be moved
+	 */
+	private static void moveToShards() throws SQLException {
+		List<Map<String, String>> environments = query(pool,
+				"SELECT DISTINCT environment FROM " + table + " WHERE environment IS NOT NULL;");
+		for (Map<String, String> row : environments) {
+			String environment = row.get("environment");
+			List<Map<String, String>> properties = query(pool,
+					"SELECT " + String.join(", ", propertyColumns) + " FROM " + table + " WHERE environment = ?;",
+					environment);
+			pool.transaction(connection -> {
+				shards.get(environment, true).transaction(shard -> insertRows(shard, table, properties));
+				String sql = "DELETE FROM " + table + " WHERE environment = ?;";
+				try (PreparedStatement ps = connection.prepareStatement(sql)) {
+					ps.setString(1, environment);
+					return ps.executeUpdate();
+				}
+			});
+		}
+		if (!environments.isEmpty()) {
+			System.out.println("[DATABASE MESSAGE] Moved the properties of " + environments.size()
+					+ " environment(s) into shards in " + shards.getDirectory() + ".");
+		}
+	}
+
+	/**
+	 * Creates every table that does not exist yet, and migrates older databases.
+	 * 
+	 * @param connection
+	 *            the writer connection
+	 * @return null
+	 * @throws SQLException
+	 *             if the tables cannot be created
+	 */
+	private static Void createTables(Connection connection) throws SQLException {
+		createPropertiesTable(connection);
+		indexPropertiesTable(connection);
+		try (Statement statement = connection.createStatement()) {
+
+			// one row per cached file, with its property count and content fingerprint
+			String sql = "CREATE TABLE IF NOT EXISTS files (\n	path text PRIMARY KEY,\n	filename text,\n"
+					+ "	node text,\n	fabric text,\n	environment text,\n	extension text,\n	properties integer,\n"
+					+ "	fingerprint integer\n);";
+			statement.execute(sql);
+
+			// backfills the file table for databases populated before it existed, without
+			// fingerprints (which are only computed when files are parsed)
+			sql = "INSERT INTO files (path, filename, node, fabric, environment, extension, properties) "
+					+ "SELECT path, filename, node, fabric, environment, extension, COUNT(*) FROM properties "
+					+ "WHERE NOT EXISTS (SELECT 1 FROM files) GROUP BY path;";
+			statement.execute(sql);
+
+			// distinct keys and values, with a full-text index of their trigrams for searches
+			sql = "CREATE TABLE IF NOT EXISTS terms (\n	id integer PRIMARY KEY,\n	type text,\n	term text,\n"
+					+ "	UNIQUE (type, term)\n);";
+			statement.execute(sql);
+			statement.execute("CREATE VIRTUAL TABLE IF NOT EXISTS grams USING fts5(tokens);");
+
+			// ignore rules, evaluated at query time (see databaseModule.IgnoreRules)
+			sql = "CREATE TABLE IF NOT EXISTS ignores (\n	environment text,\n	fabric text,\n	node text,\n"
+					+ "	pattern text,\n	ignore text,\n	source text,\n"
+					+ "	PRIMARY KEY (environment, fabric, node, pattern)\n);";
+			statement.execute(sql);
+
+			// converts properties ignored by earlier versions into rules for their nodes, once
+			ResultSet version = statement.executeQuery("PRAGMA user_version;");
+			boolean migrate = version.next() && version.getInt(1) < 1;
+			version.close();
+			if (migrate) {
+				sql = "INSERT OR IGNORE INTO ignores SELECT DISTINCT IFNULL(environment, ''), IFNULL(fabric, ''), "
+						+ "IFNULL(node, ''), key, 'true', '' FROM properties WHERE ignore = 'true';";
+				statement.execute(sql);
+				statement.execute("PRAGMA user_version = 1;");
+			}
+
+			// every version of every property, valid from the generation that added it until the
+			// generation that changed or removed it (see replaceFiles())
+			sql = "CREATE TABLE IF NOT EXISTS generations (\n	id integer PRIMARY KEY,\n	time integer\n);";
+			statement.execute(sql);
+			sql = "CREATE TABLE IF NOT EXISTS history (\n	key text,\n	value text,\n	filename text,\n"
+					+ "	node text,\n	fabric text,\n	environment text,\n	path text,\n	extension text,\n"
+					+ "	valid_from integer,\n	valid_to integer\n);";
+			statement.execute(sql);
+			statement.execute("CREATE INDEX IF NOT EXISTS history_path ON history (path, valid_to);");
+			statement.execute("CREATE INDEX IF NOT EXISTS history_scope ON history (environment, valid_to, valid_from);");
+
+			// starts the history of databases populated before it existed with their current state
+			version = statement.executeQuery("PRAGMA user_version;");
+			migrate = version.next() && version.getInt(1) < 2;
+			version.close();
+			if (migrate) {
+				ResultSet populated = statement.executeQuery("SELECT 1 FROM properties LIMIT 1;");
+				boolean backfill = populated.next();
+				populated.close();
+				if (backfill) {
+					statement.execute("INSERT INTO generations (id, time) VALUES (1, " + System.currentTimeMillis() + ");");
+					sql = "INSERT INTO history SELECT key, value, filename, node, fabric, environment, path, "
+							+ "extension, 1, " + OPEN + " FROM properties;";
+					statement.execute(sql);
+				}
+				statement.execute("PRAGMA user_version = 2;");
+			}
+
+			// precomputed statistics per scope (see databaseModule.Catalog)
+			sql = "CREATE TABLE IF NOT EXISTS catalog (\n	scope text,\n	name text,\n	environment text,\n"
+					+ "	files integer,\n	properties integer,\n	ignored integer,\n	keys integer,\n"
+					+ "	PRIMARY KEY (scope, name)\n);";
+			statement.execute(sql);
+
+			// the staged shards committed but not yet swapped in (see replaceEnvironments())
+			statement.execute("CREATE TABLE IF NOT EXISTS swaps (\n	environment text PRIMARY KEY\n);");
+		}
+		return null;
 	}
 
 	/**
@@ -44,8 +259,40 @@ public class SQLiteManager {
 	 * @param path
 	 *            the path for which a filter is being generated
 	 * @return the generated filter
+	 * @throws IllegalArgumentException
+	 *             if the path is deeper than a file
 	 */
 	public static Map<String, String> generatePathFilter(String path) {
+		return generatePathFilter(path, false);
+	}
+
+	/**
+	 * Given path inputs, generates filters as in {@link #generatePathFilter(String)}, optionally
+	 * selecting a past generation of the database with a version suffix, e.g. `dev1/fabric2@-1`
+	 * (see {@link #resolveGeneration(String)}). Only comparisons read past generations, so only
+	 * their paths are versioned; the filter of a versioned path must be queried in the table given
+	 * by {@link #getTable(Map)}.
+	 * 
+	 * @param path
+	 *            the path for which a filter is being generated
+	 * @param versioned
+	 *            true if the path may end in a version suffix, else false
+	 * @return the generated filter
+	 * @throws IllegalArgumentException
+	 *             if the path is deeper than a file, or its version matches no generation
+	 */
+	public static Map<String, String> generatePathFilter(String path, boolean versioned) {
+
+		// splits off a version suffix (see resolveGeneration())
+		String generation = null;
+		int at = path.lastIndexOf('@');
+		if (versioned && at >= 0) {
+			Long resolved = resolveGeneration(path.substring(at + 1));
+			if (resolved != null) {
+				generation = resolved.toString();
+				path = path.substring(0, at);
+			}
+		}
 
 		// cleans up the path
 		while (path.contains("\\")) {
@@ -56,13 +303,13 @@ public class SQLiteManager {
 		}
 
 		path = path.length() > 0 && path.charAt(0) == '/' ? path.substring(1) : path;
-		if (path.length() == 0) {
-			return new LinkedHashMap<>();
-		}
 
 		// splits the path by delimiter and adds metadata to filter
-		String[] split = path.split("/");
 		Map<String, String> filter = new LinkedHashMap<>();
+		String[] split = path.length() == 0 ? new String[0] : path.split("/");
+		if (split.length > genericPath.length) {
+			throw new IllegalArgumentException("Invalid path: " + path);
+		}
 		for (int i = 0; i < split.length; i++) {
 			if (split[i].charAt(0) != ('*')) {
 				filter.put(genericPath[i], split[i]);
@@ -70,9 +317,52 @@ public class SQLiteManager {
 				filter.put("extension", split[i].substring("*.".length()));
 			}
 		}
+		if (generation != null) {
+			filter.put("generation", generation);
+		}
 		return filter;
 	}
 
+	/**
+	 * Resolves the version suffix of a path (the part after `@`) to a generation, i.e. to the
+	 * state of the database after a particular `populate`. A version is either a generation number,
+	 * a negative number of generations before the latest (e.g. `-1` for the state before the last
+	 * `populate`), or a local date or timestamp, e.g. `2017-09-15` or `2017-09-15T14:30`, which
+	 * resolves to the last generation recorded at or before that time.
+	 * 
+	 * @param version
+	 *            the version
+	 * @return the generation, or null if the version is not in a version format (in which case the
+	 *         `@` is taken to be part of the path)
+	 * @throws IllegalArgumentException
+	 *             if no generation matches the version
+	 */
+	public static Long resolveGeneration(String version) {
+		List<Map<String, String>> found;
+		if (version.matches("-?[0-9]{1,18}")) {
+			long n = Long.parseLong(version);
+			String sql = n > 0 ? "SELECT id FROM generations WHERE id = ?;"
+					: "SELECT id FROM generations ORDER BY id DESC LIMIT 1 OFFSET ?;";
+			found = select(sql, Long.toString(Math.abs(n)));
+		} else {
+			long time;
+			try {
+				if (version.contains("T")) {
+					time = LocalDateTime.parse(version).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+				} else {
+					time = LocalDate.parse(version).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+				}
+			} catch (DateTimeParseException e) {
+				return null;
+			}
+			found = select("SELECT MAX(id) AS id FROM generations WHERE time <= ?;", Long.toString(time));
+		}
+		if (found.isEmpty() || found.get(0).get("id") == null) {
+			throw new IllegalArgumentException("No generation of the database matches version " + version + ".");
+		}
+		return Long.parseLong(found.get(0).get("id"));
+	}
+
 	/**
 	 * Given a {@link java.util.Collection} of Strings, generates a SQL-compatible set.
 	 * 
@@ -124,6 +414,9 @@ public class SQLiteManager {
 	 * <dd>" WHERE (environment = 'RWC-Dev') AND (fabric = 'hazelcast') AND (key IN
 	 * ('lfs/ingestion/large-file/chunk/size', 'lfs/ingestion/topics', 'report/kibana/version'))"
 	 * </dl>
+	 * A "generation" in the filter selects the rows of the history table valid at that generation,
+	 * as an indexed range predicate (see {@link #getTable(Map)}). Quotes within values are escaped;
+	 * prefer {@link #generateSQLFilter(Map, Set, List)} for filters built from user input.
 	 * 
 	 * @param filter
 	 *            the filter, as a Map with String keys and values
@@ -132,11 +425,34 @@ public class SQLiteManager {
 	 * @return a SQL command-style filter
 	 */
 	public static String generateSQLFilter(Map<String, String> filter, Set<String> keys) {
+		return generateSQLFilter(filter, keys, null);
+	}
+
+	/**
+	 * Generates a SQL command-style filter for a given Map and optional set of keys, as in
+	 * {@link #generateSQLFilter(Map, Set)}, but with placeholders for every value, which are bound
+	 * as parameters.
+	 * 
+	 * @param filter
+	 *            the filter, as a Map with String keys and values
+	 * @param keys
+	 *            an optional Set of keys for the IN operator
+	 * @param params
+	 *            the List to which the parameters of the filter are added, in order, or null to
+	 *            inline every value as a quoted literal
+	 * @return a SQL command-style filter
+	 */
+	public static String generateSQLFilter(Map<String, String> filter, Set<String> keys, List<String> params) {
 		String sql = "";
 		if (filter != null && !filter.isEmpty()) {
 			sql += " WHERE ";
 			for (Map.Entry<String, String> entry : filter.entrySet()) {
-				sql += "(" + entry.getKey() + " = '" + entry.getValue() + "') AND ";
+				if (entry.getKey().equals("generation")) {
+					long generation = Long.parseLong(entry.getValue());
+					sql += "(valid_to > " + generation + ") AND (valid_from <= " + generation + ") AND ";
+				} else {
+					sql += "(" + entry.getKey() + " = " + literal(entry.getValue(), params) + ") AND ";
+				}
 			}
 			sql = sql.substring(0, sql.length() - " AND ".length());
 		}
@@ -145,13 +461,30 @@ public class SQLiteManager {
 			sql = filter == null || filter.isEmpty() ? sql + " WHERE " : sql + " AND ";
 			sql += "key IN (";
 			for (String key : keys) {
-				sql += "'" + key + "', ";
+				sql += literal(key, params) + ", ";
 			}
 			sql = sql.substring(0, sql.length() - ", ".length()) + ")";
 		}
 		return sql;
 	}
 
+	/**
+	 * Helper method that generates the SQL for a single value of a filter.
+	 * 
+	 * @param value
+	 *            the value
+	 * @param params
+	 *            the List to which the value is added if it is bound as a parameter, or null
+	 * @return a placeholder if the value is bound as a parameter, else the value as a quoted literal
+	 */
+	private static String literal(String value, List<String> params) {
+		if (params != null) {
+			params.add(value);
+			return "?";
+		}
+		return "'" + value.replace("'", "''") + "'";
+	}
+
 	/**
 	 * Returns the name of the database table.
 	 * 
@@ -162,20 +495,271 @@ public class SQLiteManager {
 	}
 
 	/**
-	 * Returns the size of the properties table.
+	 * Returns the name of the history table.
+	 * 
+	 * @return the name of the history table
+	 */
+	public static String getHistoryTable() {
+		return history;
+	}
+
+	/**
+	 * Returns the name of the table to query with a filter: the history table if the filter
+	 * selects a past generation, else the properties table.
+	 * 
+	 * @param filter
+	 *            the filter
+	 * @return the name of the table
+	 */
+	public static String getTable(Map<String, String> filter) {
+		return filter != null && filter.containsKey("generation") ? history : table;
+	}
+
+	/**
+	 * Returns the name of the file table, which holds a single row for each cached file.
+	 * 
+	 * @return the name of the file table
+	 */
+	public static String getFileTable() {
+		return files;
+	}
+
+	/**
+	 * Returns the directory structure of every cached file. The DirTree is built from the file
+	 * table the first time it is needed and is then kept in sync as files are inserted and deleted,
+	 * so callers should treat it as read-only. It is rebuilt if another process has changed the
+	 * database since.
+	 * 
+	 * @return the DirTree of every cached file
+	 */
+	public static synchronized DirTree getStructure() {
+		long version;
+		try {
+			version = pool.getDataVersion();
+		} catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		if (structure == null || version != structureVersion) {
+			structureVersion = version;
+			DirTree tree = new DirTree();
+			for (Map<String, String> file : select("SELECT path FROM " + files + ";")) {
+				tree.insert(file.get("path"));
+			}
+			structure = tree;
+		}
+		return structure;
+	}
+
+	/**
+	 * Removes the files matching a file-level filter from the cached directory structure, once the
+	 * current transaction has committed. Filters that do not correspond to a single branch of the
+	 * structure drop the cached structure instead, so that it is rebuilt from the file table when
+	 * next needed.
+	 * 
+	 * @param filter
+	 *            the filter, containing only file-level fields
+	 */
+	private static void forget(Map<String, String> filter) {
+		pool.afterCommit(() -> {
+			synchronized (SQLiteManager.class) {
+				if (structure == null) {
+					return;
+				}
+				if (filter == null) {
+					structure = null;
+					return;
+				}
+
+				// finds the branch from the path, else from the leading path fields
+				String path = filter.get("path");
+				if (path == null) {
+					int depth = 0;
+					path = "";
+					while (depth < genericPath.length && filter.containsKey(genericPath[depth])) {
+						path += (depth == 0 ? "" : "/") + filter.get(genericPath[depth++]);
+					}
+					if (depth == 0 || depth != filter.size()) {
+						structure = null;
+						return;
+					}
+				}
+				structure.remove(path);
+			}
+		});
+	}
+
+	/**
+	 * Adds newly inserted files to the cached directory structure, if it has been built, once the
+	 * current transaction has committed.
+	 * 
+	 * @param files
+	 *            the rows inserted into the file table
+	 */
+	private static void remember(Collection<Map<String, String>> files) {
+		pool.afterCommit(() -> {
+			synchronized (SQLiteManager.class) {
+				if (structure != null) {
+					for (Map<String, String> file : files) {
+						structure.insert(file.get("path"));
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks if the database is sharded by environment (see {@link Shards}).
+	 * 
+	 * @return true if the properties of each environment are kept in a shard file, else false
+	 */
+	public static boolean isSharded() {
+		return shards != null;
+	}
+
+	/**
+	 * Checks if the properties within a scope span several database files, i.e. if a query of the
+	 * properties table within the scope runs once per file and aggregates are not combined.
+	 * 
+	 * @param scope
+	 *            the filter of the query, or null for the entire database
+	 * @return true if the query fans out to several files, else false
+	 */
+	public static boolean spansShards(Map<String, String> scope) {
+		try {
+			return route(scope).size() > 1;
+		} catch (SQLException e) {
+			exit(e);
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the database files holding the properties within a scope. Without shards, or for a
+	 * past generation (which is read from the history table), that is the main database; for an
+	 * environment, it is the environment's shard (or the main database, which then holds none of
+	 * its properties, if the environment has no shard); otherwise, it is the main database and
+	 * every shard.
+	 * 
+	 * @param scope
+	 *            the filter of a query of the properties table, or null for the entire database
+	 * @return the connections to each file, in order
+	 * @throws SQLException
+	 *             if a shard cannot be opened
+	 */
+	private static List<ConnectionPool> route(Map<String, String> scope) throws SQLException {
+		if (shards == null || scope != null && scope.containsKey("generation")) {
+			return Collections.singletonList(pool);
+		}
+		String environment = scope != null ? scope.get("environment") : null;
+		if (environment != null) {
+			return Collections.singletonList(shardOf(environment, false));
+		}
+		Set<ConnectionPool> all = new LinkedHashSet<>();
+		all.add(pool);
+		for (String shard : shards.getEnvironments()) {
+			all.add(shardOf(shard, false));
+		}
+		return new ArrayList<>(all);
+	}
+
+	/**
+	 * Finds the database file holding the properties of an environment, opening its shard if
+	 * necessary.
+	 * 
+	 * @param environment
+	 *            the environment, or null for files outside of any environment
+	 * @param create
+	 *            true to create the environment's shard if it does not exist (i.e. to write to
+	 *            it), else false
+	 * @return the connections to the file: the main database if the database is not sharded, the
+	 *         environment is null, or its shard does not exist and is not created, or the staging
+	 *         file of the environment if it is being replaced
+	 * @throws SQLException
+	 *             if the shard cannot be opened
+	 */
+	private static ConnectionPool shardOf(String environment, boolean create) throws SQLException {
+		if (shards == null || environment == null) {
+			return pool;
+		}
+
+		// a staged environment is written to its staging file, which only the writing thread reads
+		ConnectionPool staging = shards.getStaged(environment);
+		if (staging != null && (create || staging.isWriting())) {
+			return staging;
+		}
+		ConnectionPool shard = shards.get(environment, create);
+		return shard != null ? shard : pool;
+	}
+
+	/**
+	 * Runs work that only reads from a database file. If the file is a shard whose connections
+	 * were closed since the read was routed to it, e.g. because the shard was swapped out, the
+	 * work is retried on the current connections to the shard (see {@link Shards#reopen}).
+	 * 
+	 * @param target
+	 *            the connections to the file
+	 * @param work
+	 *            the work
+	 * @return the result of the work
+	 * @throws SQLException
+	 *             if the work fails
+	 */
+	private static <T> T read(ConnectionPool target, ConnectionPool.Work<T> work) throws SQLException {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return target.read(work);
+			} catch (SQLTransientConnectionException e) {
+				ConnectionPool current = shards != null && attempt < 3 ? shards.reopen(target) : null;
+				if (current == null) {
+					throw e;
+				}
+				target = current;
+			}
+		}
+	}
+
+	/**
+	 * Returns the environment of a cached file, i.e. the first segment of its path.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @return the environment, or null if the file is outside of any environment
+	 */
+	private static String environmentOf(String path) {
+		int slash = path.indexOf('/');
+		return slash > 0 ? path.substring(0, slash) : null;
+	}
+
+	/**
+	 * Returns the size of the properties table, across every shard.
 	 * 
 	 * @return the size of the properties table
 	 */
 	public static long getSize() {
+		long size = 0;
 		try {
-			Statement statement = connection.createStatement();
-			ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table + ";");
-			result.next();
-			return result.getInt(1);
+			for (ConnectionPool target : route(null)) {
+				size += read(target, connection -> {
+					try (Statement statement = connection.createStatement()) {
+						ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table + ";");
+						result.next();
+						return result.getLong(1);
+					}
+				});
+			}
 		} catch (SQLException e) {
-			exit(e);
+			throw new DatabaseException(e);
 		}
-		return -1;
+		return size;
+	}
+
+	/**
+	 * Checks if the properties table is empty, without counting every property.
+	 * 
+	 * @return true if there are no properties, else false
+	 */
+	public static boolean isEmpty() {
+		return select(Collections.<String, String>emptyMap(), "SELECT 1 FROM " + table + " LIMIT 1;").isEmpty();
 	}
 
 	/**
@@ -189,31 +773,42 @@ public class SQLiteManager {
 	 */
 	public static Set<String> getDistinct(String field, Map<String, String> filter) {
 		Set<String> distinct = new LinkedHashSet<>();
-		try {
-			String sql = "SELECT DISTINCT " + field + " FROM " + table + generateSQLFilter(filter, null);
-			Statement statement = connection.createStatement();
-			ResultSet rs = statement.executeQuery(sql);
-			Iterator<Map<String, String>> distinctMaps = parseResultSet(rs).iterator();
-			while (distinctMaps.hasNext()) {
-				distinct.add(distinctMaps.next().get(field));
-			}
-		} catch (SQLException e) {
-			exit(e);
+		List<String> params = new ArrayList<>();
+		String sql = "SELECT DISTINCT " + field + " FROM " + getTable(filter) + generateSQLFilter(filter, null, params);
+		Iterator<Map<String, String>> distinctMaps = select(filter, sql, params.toArray(new String[0])).iterator();
+		while (distinctMaps.hasNext()) {
+			distinct.add(distinctMaps.next().get(field));
 		}
 		return distinct;
 	}
 
 	/**
-	 * Clears all rows from the database table.
+	 * Clears all rows from the database table, and deletes every shard.
 	 * 
 	 * @return the number of properties cleared from the database
 	 */
 	public static long clear() {
 		long size = -1;
 		try {
-			size = getSize();
-			Statement statement = connection.createStatement();
-			statement.execute("DELETE FROM " + table + ";");
+			size = pool.transaction(connection -> {
+				long cleared = getSize();
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("DELETE FROM " + table + ";");
+					statement.execute("DELETE FROM " + files + ";");
+					statement.execute("DELETE FROM terms;");
+					statement.execute("DELETE FROM grams;");
+					statement.execute("DELETE FROM catalog;");
+					statement.execute("DELETE FROM ignores;");
+					statement.execute("DELETE FROM " + history + ";");
+					statement.execute("DELETE FROM generations;");
+					statement.execute("DELETE FROM swaps;");
+				}
+				return cleared;
+			});
+			if (shards != null) {
+				shards.dropAll();
+			}
+			forget(null);
 		} catch (SQLException e) {
 			exit(e);
 		}
@@ -229,58 +824,332 @@ public class SQLiteManager {
 	 *         row within the SQL table
 	 */
 	public static List<Map<String, String>> select(String sql) {
+		return select(sql, new String[0]);
+	}
+
+	/**
+	 * Extracts data from the database with a prepared statement.
+	 * 
+	 * @param sql
+	 *            the full SQLite command, with placeholders for each parameter
+	 * @param params
+	 *            the parameters, in order
+	 * @return the extracted data as a List of Maps, each of which represent a single property, or
+	 *         row within the SQL table
+	 */
+	public static List<Map<String, String>> select(String sql, String... params) {
 		try {
-			Statement statement = connection.createStatement();
-			ResultSet rs = statement.executeQuery(sql);
-			return parseResultSet(rs);
+			return query(pool, sql, params);
 		} catch (SQLException e) {
-			exit(e);
+			throw new DatabaseException(e);
 		}
-		return null;
 	}
 
 	/**
-	 * Inserts new data into a database.
+	 * Extracts properties within a scope from the database, from the file holding that scope if
+	 * the database is sharded (see {@link #route(Map)}). A scope spanning several files is queried
+	 * in every file in parallel and the rows of each are concatenated, in order of file; aggregates
+	 * are therefore computed per file.
 	 * 
-	 * @param property
-	 *            a Map representing the property as a series of key-value pairs (e.g. "environment"
-	 *            : "RWC-Dev", "key" : "some key")
+	 * @param scope
+	 *            the filter of the query, or null for the entire database
+	 * @param sql
+	 *            the full SQLite command, with placeholders for each parameter
+	 * @param params
+	 *            the parameters, in order
+	 * @return the extracted data as a List of Maps, each of which represent a single property, or
+	 *         row within the SQL table
 	 */
-	public static void insert(Map<String, String> property) {
+	public static List<Map<String, String>> select(Map<String, String> scope, String sql, String... params) {
 		try {
-			String sql = "INSERT INTO " + table + generateSQLSet(property.keySet(), true, false) + " VALUES "
-					+ generateSQLSet(property.keySet(), true, true) + ";";
-			PreparedStatement ps = connection.prepareStatement(sql);
-			int i = 1;
-			for (String value : property.values()) {
-				ps.setString(i++, value);
-			}
-			ps.executeUpdate();
+			List<ConnectionPool> targets = route(scope);
+			if (targets.size() == 1) {
+				return query(targets.get(0), sql, params);
+			}
+
+			// a thread within a write must read its own changes, so it cannot hand off the reads
+			boolean writing = targets.stream().anyMatch(ConnectionPool::isWriting);
+			List<List<Map<String, String>>> results = (writing ? targets.stream() : targets.parallelStream())
+					.map(target -> {
+						try {
+							return query(target, sql, params);
+						} catch (SQLException e) {
+							throw new DatabaseException(e);
+						}
+					}).collect(Collectors.toList());
+			List<Map<String, String>> rows = new LinkedList<>();
+			for (List<Map<String, String>> result : results) {
+				rows.addAll(result);
+			}
+			return rows;
 		} catch (SQLException e) {
-			exit(e);
+			throw new DatabaseException(e);
 		}
 	}
 
 	/**
-	 * Updates data in a database.
+	 * Runs a prepared statement that extracts data from a single database file.
 	 * 
-	 * @param updated
-	 *            a Map of fields to be updated
-	 * @param filter
-	 *            a Map of fields with which to filter the updates
-	 * @param keys
-	 *            a Set containing the keys of each property to be updated
+	 * @param target
+	 *            the connections to the file
+	 * @param sql
+	 *            the full SQLite command, with placeholders for each parameter
+	 * @param params
+	 *            the parameters, in order
+	 * @return the extracted rows
+	 * @throws SQLException
+	 *             if the statement fails
 	 */
-	public static void update(Map<String, String> updated, Map<String, String> filter, Set<String> keys) {
-		if (updated == null || updated.isEmpty()) {
-			return;
-		}
+	private static List<Map<String, String>> query(ConnectionPool target, String sql, String... params)
+			throws SQLException {
+		return read(target, connection -> {
+			try (PreparedStatement ps = connection.prepareStatement(sql)) {
+				for (int i = 0; i < params.length; i++) {
+					ps.setString(i + 1, params[i]);
+				}
+				long start = Metrics.start();
+				Object event = Events.beginStatement();
+				List<Map<String, String>> rows = parseResultSet(ps.executeQuery());
+				Events.endStatement(event, sql, rows.size());
+				Metrics.timeStatement(sql, start);
+				return rows;
+			}
+		});
+	}
 
-		// generates the appropriate SQL command
-		String sql = "";
-		sql = "UPDATE " + table + " SET ";
-		for (String key : updated.keySet()) {
-			sql += key + " = ? , ";
+	/**
+	 * Extracts data from the database one row at a time, without keeping every row in memory. The
+	 * same Map is reused for every row, so the action must copy whatever it keeps.
+	 * 
+	 * @param sql
+	 *            the full SQLite command
+	 * @param action
+	 *            the action performed on each row, given as a Map of column names to values
+	 * @return the number of rows extracted
+	 */
+	public static long selectEach(String sql, Consumer<Map<String, String>> action) {
+		try {
+			return each(pool, sql, action);
+		} catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+	}
+
+	/**
+	 * Extracts properties within a scope from the database one row at a time, from the file
+	 * holding that scope if the database is sharded (see {@link #route(Map)}). A scope spanning
+	 * several files is queried in one file after the other, so the action never runs concurrently.
+	 * 
+	 * @param scope
+	 *            the filter of the query, or null for the entire database
+	 * @param sql
+	 *            the full SQLite command, with placeholders for each parameter
+	 * @param action
+	 *            the action performed on each row, given as a Map of column names to values
+	 * @param params
+	 *            the parameters, in order
+	 * @return the number of rows extracted
+	 */
+	public static long selectEach(Map<String, String> scope, String sql, Consumer<Map<String, String>> action,
+			String... params) {
+		long count = 0;
+		try {
+			for (ConnectionPool target : route(scope)) {
+				count += each(target, sql, action, params);
+			}
+		} catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		return count;
+	}
+
+	/**
+	 * Runs a statement that extracts data from a single database file one row at a time, reusing
+	 * the same Map for every row.
+	 * 
+	 * @param target
+	 *            the connections to the file
+	 * @param sql
+	 *            the full SQLite command
+	 * @param action
+	 *            the action performed on each row
+	 * @param params
+	 *            the parameters, in order
+	 * @return the number of rows extracted
+	 * @throws SQLException
+	 *             if the statement fails
+	 */
+	private static long each(ConnectionPool target, String sql, Consumer<Map<String, String>> action,
+			String... params) throws SQLException {
+		return read(target, connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				for (int i = 0; i < params.length; i++) {
+					statement.setString(i + 1, params[i]);
+				}
+				long start = Metrics.start();
+				Object event = Events.beginStatement();
+				long count = 0;
+				try (ResultSet rs = statement.executeQuery()) {
+					String[] columns = new String[rs.getMetaData().getColumnCount()];
+					for (int i = 0; i < columns.length; i++) {
+						columns[i] = rs.getMetaData().getColumnName(i + 1);
+					}
+					Map<String, String> row = new HashMap<>();
+					while (rs.next()) {
+						for (int i = 0; i < columns.length; i++) {
+							row.put(columns[i], rs.getString(i + 1));
+						}
+						action.accept(row);
+						count++;
+					}
+				}
+				Events.endStatement(event, sql, count);
+				Metrics.timeStatement(sql, start);
+				return count;
+			}
+		});
+	}
+
+	/**
+	 * Executes a single prepared statement that modifies the database.
+	 * 
+	 * @param sql
+	 *            the full SQLite command, with placeholders for each parameter
+	 * @param params
+	 *            the parameters, in order
+	 * @return the number of rows modified
+	 */
+	public static int execute(String sql, String... params) {
+		try {
+			return pool.write(connection -> {
+				try (PreparedStatement ps = connection.prepareStatement(sql)) {
+					for (int i = 0; i < params.length; i++) {
+						ps.setString(i + 1, params[i]);
+					}
+					long start = Metrics.start();
+					Object event = Events.beginStatement();
+					int modified = ps.executeUpdate();
+					Events.endStatement(event, sql, modified);
+					Metrics.timeStatement(sql, start);
+					return modified;
+				}
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+		return -1;
+	}
+
+	/**
+	 * Executes a prepared statement once for each set of parameters, as a single batch.
+	 * 
+	 * @param sql
+	 *            the full SQLite command, with placeholders for each parameter
+	 * @param params
+	 *            a Collection of parameter sets, each of which is applied to the statement in order
+	 */
+	public static void executeBatch(String sql, Collection<String[]> params) {
+		if (params == null || params.isEmpty()) {
+			return;
+		}
+
+		try {
+			pool.transaction(connection -> {
+				try (PreparedStatement ps = connection.prepareStatement(sql)) {
+					for (String[] set : params) {
+						for (int i = 0; i < set.length; i++) {
+							ps.setString(i + 1, set[i]);
+						}
+						ps.addBatch();
+					}
+					long start = Metrics.start();
+					Object event = Events.beginStatement();
+					int[] modified = ps.executeBatch();
+					Events.endStatement(event, sql, params.size());
+					Metrics.timeStatement(sql, start);
+					return modified;
+				}
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+	}
+
+	/**
+	 * Executes several prepared statements as a single transaction, so that either all or none of
+	 * their changes are applied.
+	 * 
+	 * @param statements
+	 *            a List of statements, each an array of the full SQLite command followed by its
+	 *            parameters, in order
+	 */
+	public static void executeTransaction(List<String[]> statements) {
+		try {
+			pool.transaction(connection -> {
+				for (String[] statement : statements) {
+					try (PreparedStatement ps = connection.prepareStatement(statement[0])) {
+						for (int i = 1; i < statement.length; i++) {
+							ps.setString(i, statement[i]);
+						}
+						long start = Metrics.start();
+						Object event = Events.beginStatement();
+						int modified = ps.executeUpdate();
+						Events.endStatement(event, statement[0], modified);
+						Metrics.timeStatement(statement[0], start);
+					}
+				}
+				return null;
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+	}
+
+	/**
+	 * Inserts new data into a database.
+	 * 
+	 * @param property
+	 *            a Map representing the property as a series of key-value pairs (e.g. "environment"
+	 *            : "RWC-Dev", "key" : "some key")
+	 */
+	public static void insert(Map<String, String> property) {
+		String sql = "INSERT INTO " + table + generateSQLSet(property.keySet(), true, false) + " VALUES "
+				+ generateSQLSet(property.keySet(), true, true) + ";";
+		try {
+			shardOf(property.get("environment"), true).write(connection -> {
+				try (PreparedStatement ps = connection.prepareStatement(sql)) {
+					int i = 1;
+					for (String value : property.values()) {
+						ps.setString(i++, value);
+					}
+					return ps.executeUpdate();
+				}
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+	}
+
+	/**
+	 * Updates data in a database.
+	 * 
+	 * @param updated
+	 *            a Map of fields to be updated
+	 * @param filter
+	 *            a Map of fields with which to filter the updates
+	 * @param keys
+	 *            a Set containing the keys of each property to be updated
+	 */
+	public static void update(Map<String, String> updated, Map<String, String> filter, Set<String> keys) {
+		if (updated == null || updated.isEmpty()) {
+			return;
+		}
+
+		// generates the appropriate SQL command
+		String sql = "";
+		sql = "UPDATE " + table + " SET ";
+		for (String key : updated.keySet()) {
+			sql += key + " = ? , ";
 		}
 		sql = sql.substring(0, sql.length() - " , ".length());
 
@@ -300,25 +1169,40 @@ public class SQLiteManager {
 			}
 			sql += "?)";
 		}
-		sql += ";";
+		String update = sql + ";";
 
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql);
-			int i = 1;
-			for (String val : updated.values()) {
-				ps.setString(i++, val);
-			}
-			if (filter != null && !filter.isEmpty()) {
-				for (String val : filter.values()) {
-					ps.setString(i++, val);
+			pool.transaction(connection -> {
+
+				// changed keys or values invalidate the fingerprints of the affected files
+				if (updated.containsKey("key") || updated.containsKey("value")) {
+					invalidateFingerprints(connection, filter, keys);
 				}
-			}
-			if (keys != null && !keys.isEmpty()) {
-				for (String key : keys) {
-					ps.setString(i++, key);
+
+				int modified = 0;
+				for (ConnectionPool target : route(filter)) {
+					modified += target.transaction(properties -> {
+						try (PreparedStatement ps = properties.prepareStatement(update)) {
+							int i = 1;
+							for (String val : updated.values()) {
+								ps.setString(i++, val);
+							}
+							if (filter != null && !filter.isEmpty()) {
+								for (String val : filter.values()) {
+									ps.setString(i++, val);
+								}
+							}
+							if (keys != null && !keys.isEmpty()) {
+								for (String key : keys) {
+									ps.setString(i++, key);
+								}
+							}
+							return ps.executeUpdate();
+						}
+					});
 				}
-			}
-			ps.executeUpdate();
+				return modified;
+			});
 		} catch (SQLException e) {
 			exit(e);
 		}
@@ -336,17 +1220,119 @@ public class SQLiteManager {
 		for (String key : filter.keySet()) {
 			sql += "(" + key + " = ?) AND ";
 		}
-		sql = sql.substring(0, sql.length() - " AND ".length()) + ";";
+		String delete = sql.substring(0, sql.length() - " AND ".length()) + ";";
+		boolean wholeFiles = isFileFilter(filter);
+		String environment = filter.get("environment");
+
+		// an entire sharded environment is deleted by dropping its shard once the files are gone
+		boolean dropping = shards != null && environment != null && filter.size() == 1;
+
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql);
-			int i = 1;
-			for (String value : filter.values()) {
-				ps.setString(i++, value);
-			}
-			ps.executeUpdate();
+			pool.transaction(connection -> {
+
+				// whole files are removed from the file table, partially deleted files lose their
+				// fingerprint
+				if (wholeFiles) {
+					String fileSQL = "DELETE FROM " + files + delete.substring(("DELETE FROM " + table).length());
+					try (PreparedStatement ps = connection.prepareStatement(fileSQL)) {
+						int i = 1;
+						for (String value : filter.values()) {
+							ps.setString(i++, value);
+						}
+						ps.executeUpdate();
+					}
+				} else {
+					invalidateFingerprints(connection, filter, null);
+				}
+
+				int deleted = 0;
+				for (ConnectionPool target : dropping ? Collections.singletonList(pool) : route(filter)) {
+					deleted += target.transaction(properties -> {
+						try (PreparedStatement ps = properties.prepareStatement(delete)) {
+							int i = 1;
+							for (String value : filter.values()) {
+								ps.setString(i++, value);
+							}
+							return ps.executeUpdate();
+						}
+					});
+				}
+				return deleted;
+			});
 		} catch (SQLException e) {
 			exit(e);
 		}
+		if (dropping) {
+			shards.drop(environment);
+		}
+		if (wholeFiles) {
+			forget(filter);
+		}
+
+		Catalog.refresh(environment != null ? Collections.singleton(environment) : null);
+	}
+
+	/**
+	 * Checks if a filter only references file metadata, i.e. if it selects whole files.
+	 * 
+	 * @param filter
+	 *            the filter, as a Map with String keys and values
+	 * @return true if every field in the filter is a column of the file table, else false
+	 */
+	private static boolean isFileFilter(Map<String, String> filter) {
+		for (String field : filter.keySet()) {
+			switch (field) {
+			case "environment":
+			case "fabric":
+			case "node":
+			case "filename":
+			case "path":
+			case "extension":
+				break;
+			default:
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Clears the fingerprints of every file containing properties that match the filter, so that
+	 * those files are always compared property by property.
+	 * 
+	 * @param connection
+	 *            the writer connection
+	 * @param filter
+	 *            the filter, as a Map with String keys and values
+	 * @param keys
+	 *            an optional Set of keys for the IN operator
+	 * @throws SQLException
+	 *             if the fingerprints cannot be cleared
+	 */
+	private static void invalidateFingerprints(Connection connection, Map<String, String> filter, Set<String> keys)
+			throws SQLException {
+		List<ConnectionPool> targets = route(filter);
+		if (targets.size() == 1 && targets.get(0) == pool) {
+			String sql = "UPDATE " + files + " SET fingerprint = NULL WHERE path IN (SELECT DISTINCT path FROM "
+					+ table + generateSQLFilter(filter, keys) + ");";
+			try (Statement statement = connection.createStatement()) {
+				statement.executeUpdate(sql);
+			}
+			return;
+		}
+
+		// the paths of sharded properties are looked up in each shard
+		String sql = "SELECT DISTINCT path FROM " + table + generateSQLFilter(filter, keys) + ";";
+		String update = "UPDATE " + files + " SET fingerprint = NULL WHERE path = ?;";
+		try (PreparedStatement ps = connection.prepareStatement(update)) {
+			for (ConnectionPool target : targets) {
+				for (Map<String, String> row : query(target, sql)) {
+					ps.setString(1, row.get("path"));
+					ps.addBatch();
+				}
+			}
+			ps.executeBatch();
+		}
 	}
 
 	/**
@@ -357,36 +1343,632 @@ public class SQLiteManager {
 	 *            a Collection of properties (represented by the standard Map)
 	 */
 	public static void insertBatch(Collection<Map<String, String>> properties) {
+		insertBatch(table, properties);
+	}
+
+	/**
+	 * Batch inserts new rows into a specific table.
+	 * 
+	 * @param table
+	 *            the name of the table
+	 * @param properties
+	 *            a Collection of rows (represented by the standard Map)
+	 */
+	public static void insertBatch(String table, Collection<Map<String, String>> properties) {
 		if (properties == null || properties.isEmpty()) {
 			return;
 		}
 
 		try {
-			connection.setAutoCommit(false);
-			PreparedStatement ps = null;
+			pool.transaction(connection -> {
+				if (!table.equals(SQLiteManager.table)) {
+					return insertRows(connection, table, properties);
+				}
 
-			Iterator<Map<String, String>> iter = properties.iterator();
-			while (iter.hasNext()) {
-				Map<String, String> property = iter.next();
-				if (ps == null) {
-					String sql = "INSERT INTO " + table + generateSQLSet(property.keySet(), true, false) + " VALUES "
-							+ generateSQLSet(property.keySet(), true, true) + ";";
-					ps = connection.prepareStatement(sql);
+				// properties are inserted into the file holding their environment
+				Map<ConnectionPool, List<Map<String, String>>> groups = new LinkedHashMap<>();
+				for (Map<String, String> property : properties) {
+					ConnectionPool target = shardOf(property.get("environment"), true);
+					groups.computeIfAbsent(target, k -> new ArrayList<>()).add(property);
+				}
+				for (Map.Entry<ConnectionPool, List<Map<String, String>>> group : groups.entrySet()) {
+					group.getKey().transaction(shard -> insertRows(shard, table, group.getValue()));
 				}
+				return null;
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+
+		// keeps the cached directory structure in sync with the file table
+		if (table.equals(files)) {
+			remember(properties);
+		}
+	}
+
+	/**
+	 * Inserts rows into a table with a single batched prepared statement, taking the columns from
+	 * the first row.
+	 * 
+	 * @param connection
+	 *            the writer connection
+	 * @param table
+	 *            the name of the table
+	 * @param rows
+	 *            the rows
+	 * @return the number of rows inserted by each execution of the statement
+	 * @throws SQLException
+	 *             if the rows cannot be inserted
+	 */
+	private static int[] insertRows(Connection connection, String table, Collection<Map<String, String>> rows)
+			throws SQLException {
+		Set<String> columns = rows.iterator().next().keySet();
+		String sql = "INSERT INTO " + table + generateSQLSet(columns, true, false) + " VALUES "
+				+ generateSQLSet(columns, true, true) + ";";
+		try (PreparedStatement ps = connection.prepareStatement(sql)) {
+			for (Map<String, String> row : rows) {
 				int i = 1;
-				for (String value : property.values()) {
+				for (String value : row.values()) {
 					ps.setString(i++, value);
 				}
 				ps.addBatch();
+			}
+			return ps.executeBatch();
+		}
+	}
 
+	/**
+	 * Runs work that modifies the database as a single transaction, so that either all or none of
+	 * its changes are applied. Every modification made through SQLiteManager while the work runs
+	 * (including other transactions) becomes part of the transaction.
+	 * 
+	 * @param work
+	 *            the work
+	 */
+	public static void transaction(Runnable work) {
+		transaction(null, work);
+	}
+
+	/**
+	 * Runs work that modifies the database, including the properties of the given environments,
+	 * as a single transaction. If the database is sharded, the work runs within a transaction on
+	 * the shard of each environment as well, nested within the transaction on the main database;
+	 * each shard commits before the main database does, so the transaction is atomic within each
+	 * file but not across files.
+	 * 
+	 * @param environments
+	 *            the environments whose properties the work modifies, or null if it only modifies
+	 *            properties outside of any environment
+	 * @param work
+	 *            the work
+	 */
+	public static void transaction(Collection<String> environments, Runnable work) {
+		try {
+			within(environments, connection -> {
+				work.run();
+				return null;
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+	}
+
+	/**
+	 * Runs work that replaces every property of the given environments as a single transaction.
+	 * If the database is sharded, the properties the work writes to each environment go into a
+	 * fresh staging file instead of the environment's shard, and each staging file is indexed and
+	 * then swapped in for its shard once the transaction has committed (see
+	 * {@link Shards#swap(String)}). Other threads keep reading the old shards until then, and the
+	 * old properties are freed with the old shard files rather than deleted row by row. If the work
+	 * fails, the staging files are discarded and the shards are left as they were.
+	 * <p>
+	 * The transaction also records each staged environment as a pending swap, which is cleared
+	 * as the staging file is swapped in. A process that stops between the commit and the swap
+	 * leaves the swap pending, and the next connection to the database finishes it, so that the
+	 * shards never fall behind the committed main database.
+	 * <p>
+	 * Without shards, the work simply runs as a transaction, replacing the properties in place.
+	 * The work must not be nested within another transaction.
+	 * 
+	 * @param environments
+	 *            the environments being replaced (null environments are not staged)
+	 * @param work
+	 *            the work, which must write every property the environments keep
+	 */
+	public static void replaceEnvironments(Collection<String> environments, Runnable work) {
+		if (shards == null) {
+			transaction(environments, work);
+			return;
+		}
+
+		Set<String> staged = new TreeSet<>();
+		for (String environment : environments) {
+			if (environment != null) {
+				staged.add(environment);
 			}
-			ps.executeBatch();
+		}
+		try {
+			// holds the writer across the commit and the swaps, so that no write falls in between
+			pool.write(main -> {
+				try {
+					for (String environment : staged) {
+						shards.stage(environment);
+					}
+					within(environments, connection -> {
+						work.run();
+						for (String environment : staged) {
+							shards.getStaged(environment).write(SQLiteManager::indexPropertiesTable);
+						}
+						String sql = "INSERT OR IGNORE INTO swaps (environment) VALUES (?);";
+						try (PreparedStatement ps = connection.prepareStatement(sql)) {
+							for (String environment : staged) {
+								ps.setString(1, environment);
+								ps.addBatch();
+							}
+							ps.executeBatch();
+						}
+						return null;
+					});
+				} catch (SQLException | RuntimeException e) {
+					for (String environment : staged) {
+						shards.discard(environment);
+					}
+					throw e;
+				}
+				for (String environment : staged) {
+					swap(environment);
+				}
+				return null;
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+	}
 
-			connection.commit();
-			connection.setAutoCommit(true);
+	/**
+	 * Swaps the staged shard of an environment in and clears its pending swap, as a single
+	 * transaction on the main database. The swap only happens if this thread staged the
+	 * environment, or if the swap is still pending, i.e. if no other process finished it first.
+	 * 
+	 * @param environment
+	 *            the environment
+	 * @throws SQLException
+	 *             if the staging file cannot be swapped in, in which case the swap stays pending
+	 */
+	private static void swap(String environment) throws SQLException {
+		pool.transaction(connection -> {
+			try (PreparedStatement ps = connection.prepareStatement("DELETE FROM swaps WHERE environment = ?;")) {
+				ps.setString(1, environment);
+				if (ps.executeUpdate() > 0 || shards.getStaged(environment) != null) {
+					shards.swap(environment);
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Runs work as a single transaction on the main database and on the shard of each of the given
+	 * environments (see {@link #transaction(Collection, Runnable)}).
+	 * 
+	 * @param environments
+	 *            the environments whose properties the work modifies, or null
+	 * @param work
+	 *            the work, given the writer connection of the main database
+	 * @return the result of the work
+	 * @throws SQLException
+	 *             if the work fails
+	 */
+	private static <T> T within(Collection<String> environments, ConnectionPool.Work<T> work)
+			throws SQLException {
+		return pool.transaction(connection -> {
+			Set<ConnectionPool> targets = new LinkedHashSet<>();
+			if (environments != null) {
+				for (String environment : environments) {
+					targets.add(shardOf(environment, true));
+				}
+			}
+			targets.remove(pool);
+			return nest(targets.iterator(), connection, work);
+		});
+	}
+
+	/**
+	 * Runs work within a transaction on each of the remaining shards, one nested within the other.
+	 * 
+	 * @param shards
+	 *            the remaining shards
+	 * @param connection
+	 *            the writer connection of the main database
+	 * @param work
+	 *            the work
+	 * @return the result of the work
+	 * @throws SQLException
+	 *             if the work fails
+	 */
+	private static <T> T nest(Iterator<ConnectionPool> shards, Connection connection, ConnectionPool.Work<T> work)
+			throws SQLException {
+		if (!shards.hasNext()) {
+			return work.apply(connection);
+		}
+		return shards.next().transaction(shard -> nest(shards, connection, work));
+	}
+
+	/**
+	 * Records a new generation of the database, i.e. a version to which the changes of a single
+	 * `populate` belong.
+	 * 
+	 * @return the generation
+	 */
+	public static long newGeneration() {
+		try {
+			return pool.write(connection -> {
+				try (Statement statement = connection.createStatement()) {
+					statement.executeUpdate("INSERT INTO generations (time) VALUES (" + System.currentTimeMillis() + ");");
+					ResultSet rs = statement.executeQuery("SELECT last_insert_rowid();");
+					rs.next();
+					return rs.getLong(1);
+				}
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+		return -1;
+	}
+
+	/**
+	 * Replaces the properties and file rows of parsed files, deleting each file's previous rows by
+	 * its (indexed) path and reusing a single prepared statement per table. Each file is written
+	 * within its own savepoint, so a file that cannot be written is rolled back and skipped
+	 * without affecting the others.
+	 * <p>
+	 * The history of each file is updated as of the generation of the change feed: its current
+	 * history rows are compared to its new properties, and only the pairs that changed are closed
+	 * or added (and recorded in the feed), so a file that did not change adds nothing to either.
+	 * 
+	 * @param rows
+	 *            the file rows, each containing at least the path
+	 * @param properties
+	 *            the properties of each file, by path
+	 * @param feed
+	 *            the change feed of the generation the new properties belong to
+	 * @return the number of properties inserted
+	 */
+	public static long replaceFiles(Collection<Map<String, String>> rows,
+			Map<String, ? extends Collection<Map<String, String>>> properties, ChangeFeed feed) {
+		if (rows == null || rows.isEmpty()) {
+			return 0;
+		}
+
+		// the properties of each file are written to the file holding its environment
+		Set<String> environments = new HashSet<>();
+		for (Map<String, String> file : rows) {
+			environments.add(file.get("environment"));
+		}
+
+		long inserted = 0;
+		List<Map<String, String>> written = new ArrayList<>();
+		Map<ConnectionPool, PropertyWriter> writers = new HashMap<>();
+		try {
+			inserted = within(environments, connection -> {
+				long count = 0;
+				try (PreparedStatement deleteFile = connection
+						.prepareStatement("DELETE FROM " + files + " WHERE path = ?;");
+						PreparedStatement insertFile = connection.prepareStatement("INSERT INTO " + files
+								+ generateSQLSet(Arrays.asList(fileColumns), true, false) + " VALUES "
+								+ generateSQLSet(Arrays.asList(fileColumns), true, true) + ";");
+						PreparedStatement selectHistory = connection.prepareStatement("SELECT rowid, key, value FROM "
+								+ history + " WHERE path = ? AND valid_to = " + OPEN + ";");
+						PreparedStatement closeHistory = connection
+								.prepareStatement("UPDATE " + history + " SET valid_to = ? WHERE rowid = ?;");
+						PreparedStatement insertHistory = connection.prepareStatement("INSERT INTO " + history
+								+ generateSQLSet(Arrays.asList(historyColumns), true, false) + " VALUES "
+								+ generateSQLSet(Arrays.asList(historyColumns), true, true) + ";");
+						Statement savepoints = connection.createStatement()) {
+
+					for (Map<String, String> file : rows) {
+						String path = file.get("path");
+						Collection<Map<String, String>> rowsOfFile = properties.get(path);
+						PropertyWriter writer = writerOf(writers, connection, file.get("environment"));
+						List<List<String>> replaced = new ArrayList<>();
+						List<List<String>> replacing = new ArrayList<>();
+						long start = Metrics.start();
+						Object event = Events.beginStore();
+						savepoints.execute("SAVEPOINT file;");
+						writer.savepoint("SAVEPOINT file;");
+						try {
+							updateHistory(path, rowsOfFile, feed.getGeneration(), replaced, replacing, selectHistory,
+									closeHistory, insertHistory);
+							Metrics.time("populate.history", start);
+							writer.delete.setString(1, path);
+							writer.delete.executeUpdate();
+							deleteFile.setString(1, path);
+							deleteFile.executeUpdate();
+							if (rowsOfFile != null && !rowsOfFile.isEmpty()) {
+								for (Map<String, String> property : rowsOfFile) {
+									bind(writer.insert, propertyColumns, property);
+									writer.insert.addBatch();
+								}
+								writer.insert.executeBatch();
+							}
+							bind(insertFile, fileColumns, file);
+							insertFile.executeUpdate();
+							writer.savepoint("RELEASE file;");
+							savepoints.execute("RELEASE file;");
+							Metrics.time("populate.replace_file", start);
+							Events.endStore(event, path, rowsOfFile == null ? 0 : rowsOfFile.size(),
+									replaced.size() + replacing.size());
+							feed.record(path, replaced, replacing);
+						} catch (SQLException e) {
+							writer.insert.clearBatch();
+							insertHistory.clearBatch();
+							writer.savepoint("ROLLBACK TO file;");
+							writer.savepoint("RELEASE file;");
+							savepoints.execute("ROLLBACK TO file;");
+							savepoints.execute("RELEASE file;");
+							System.err.println("[DATABASE ERROR] Unable to cache " + path + ", skipping.");
+							continue;
+						}
+						count += rowsOfFile == null ? 0 : rowsOfFile.size();
+						written.add(file);
+					}
+				} finally {
+					for (PropertyWriter writer : writers.values()) {
+						writer.close();
+					}
+				}
+				return count;
+			});
 		} catch (SQLException e) {
 			exit(e);
 		}
+
+		// keeps the cached directory structure in sync with the file table
+		for (Map<String, String> file : written) {
+			forget(Collections.singletonMap("path", file.get("path")));
+		}
+		remember(written);
+		return inserted;
+	}
+
+	/**
+	 * Closes the current history rows of a file whose properties changed and adds rows for its new
+	 * properties, leaving the rows of unchanged properties as they are. This is a hash join of the
+	 * old and new key-value pairs of the file, and the pairs on either side of it are collected as
+	 * the file's changes.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @param properties
+	 *            the new properties of the file, or null if it has none
+	 * @param generation
+	 *            the generation of the change
+	 * @param replaced
+	 *            a List to which the closed key-value pairs are added, each as {key, value}
+	 * @param replacing
+	 *            a List to which the added key-value pairs are added, each as {key, value}
+	 * @param select
+	 *            the prepared statement selecting the current history rows of a path
+	 * @param close
+	 *            the prepared statement closing a history row
+	 * @param insert
+	 *            the prepared statement inserting a history row
+	 * @throws SQLException
+	 *             if the history cannot be updated
+	 */
+	private static void updateHistory(String path, Collection<Map<String, String>> properties, long generation,
+			List<List<String>> replaced, List<List<String>> replacing, PreparedStatement select,
+			PreparedStatement close, PreparedStatement insert) throws SQLException {
+
+		// the current rows of the file, by key-value pair
+		Map<List<String>, Deque<Long>> current = new HashMap<>();
+		select.setString(1, path);
+		try (ResultSet rs = select.executeQuery()) {
+			while (rs.next()) {
+				List<String> pair = Arrays.asList(rs.getString(2), rs.getString(3));
+				current.computeIfAbsent(pair, k -> new ArrayDeque<>()).add(rs.getLong(1));
+			}
+		}
+
+		boolean inserting = false;
+		if (properties != null) {
+			for (Map<String, String> property : properties) {
+				Deque<Long> unchanged = current.get(Arrays.asList(property.get("key"), property.get("value")));
+				if (unchanged != null && !unchanged.isEmpty()) {
+					unchanged.poll();
+					continue;
+				}
+				bind(insert, historyColumns, property);
+				insert.setLong(historyColumns.length - 1, generation);
+				insert.setLong(historyColumns.length, OPEN);
+				insert.addBatch();
+				inserting = true;
+				replacing.add(Arrays.asList(property.get("key"), property.get("value")));
+			}
+		}
+		if (inserting) {
+			insert.executeBatch();
+		}
+
+		boolean closing = false;
+		for (Map.Entry<List<String>, Deque<Long>> changed : current.entrySet()) {
+			for (long rowid : changed.getValue()) {
+				close.setLong(1, generation);
+				close.setLong(2, rowid);
+				close.addBatch();
+				closing = true;
+				replaced.add(changed.getKey());
+			}
+		}
+		if (closing) {
+			close.executeBatch();
+		}
+	}
+
+	/**
+	 * Deletes the properties and file rows of cached files by their (indexed) paths, and closes
+	 * their history as of the generation of the change feed, recording every property as removed.
+	 * 
+	 * @param paths
+	 *            the paths of the files
+	 * @param feed
+	 *            the change feed of the generation the files were removed in
+	 */
+	public static void removeFiles(Collection<String> paths, ChangeFeed feed) {
+		if (paths == null || paths.isEmpty()) {
+			return;
+		}
+		Set<String> environments = new HashSet<>();
+		for (String path : paths) {
+			environments.add(environmentOf(path));
+		}
+
+		Map<ConnectionPool, PropertyWriter> writers = new HashMap<>();
+		try {
+			within(environments, connection -> {
+				try (PreparedStatement deleteFile = connection
+						.prepareStatement("DELETE FROM " + files + " WHERE path = ?;");
+						PreparedStatement selectHistory = connection.prepareStatement("SELECT key, value FROM "
+								+ history + " WHERE path = ? AND valid_to = " + OPEN + ";");
+						PreparedStatement closeHistory = connection.prepareStatement("UPDATE " + history
+								+ " SET valid_to = ? WHERE path = ? AND valid_to = " + OPEN + ";")) {
+					for (String path : paths) {
+						List<List<String>> replaced = new ArrayList<>();
+						selectHistory.setString(1, path);
+						try (ResultSet rs = selectHistory.executeQuery()) {
+							while (rs.next()) {
+								replaced.add(Arrays.asList(rs.getString(1), rs.getString(2)));
+							}
+						}
+						feed.record(path, replaced, Collections.<List<String>>emptyList());
+						PropertyWriter writer = writerOf(writers, connection, environmentOf(path));
+						writer.delete.setString(1, path);
+						writer.delete.addBatch();
+						deleteFile.setString(1, path);
+						deleteFile.addBatch();
+						closeHistory.setLong(1, feed.getGeneration());
+						closeHistory.setString(2, path);
+						closeHistory.addBatch();
+					}
+					for (PropertyWriter writer : writers.values()) {
+						writer.delete.executeBatch();
+					}
+					closeHistory.executeBatch();
+					return deleteFile.executeBatch();
+				} finally {
+					for (PropertyWriter writer : writers.values()) {
+						writer.close();
+					}
+				}
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+
+		// keeps the cached directory structure in sync with the file table
+		for (String path : paths) {
+			forget(Collections.singletonMap("path", path));
+		}
+	}
+
+	/**
+	 * The prepared statements that delete and insert the properties of files in a single database
+	 * file, i.e. the main database or a shard.
+	 */
+	private static class PropertyWriter {
+		private final PreparedStatement delete;
+		private final PreparedStatement insert;
+		private final Statement savepoints;	// null in the main database, whose savepoints are separate
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param connection
+		 *            the writer connection of the file, within a transaction
+		 * @param shard
+		 *            true if the file is a shard, which then needs savepoints of its own
+		 * @throws SQLException
+		 *             if the statements cannot be prepared
+		 */
+		PropertyWriter(Connection connection, boolean shard) throws SQLException {
+			delete = connection.prepareStatement("DELETE FROM " + table + " WHERE path = ?;");
+			insert = connection.prepareStatement("INSERT INTO " + table
+					+ generateSQLSet(Arrays.asList(propertyColumns), true, false) + " VALUES "
+					+ generateSQLSet(Arrays.asList(propertyColumns), true, true) + ";");
+			savepoints = shard ? connection.createStatement() : null;
+		}
+
+		/**
+		 * Starts, releases, or rolls back a savepoint in a shard, matching the savepoint of a file
+		 * in the main database.
+		 * 
+		 * @param sql
+		 *            the savepoint statement
+		 * @throws SQLException
+		 *             if the statement fails
+		 */
+		void savepoint(String sql) throws SQLException {
+			if (savepoints != null) {
+				savepoints.execute(sql);
+			}
+		}
+
+		/**
+		 * Closes the statements.
+		 */
+		void close() throws SQLException {
+			delete.close();
+			insert.close();
+			if (savepoints != null) {
+				savepoints.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets the property writer of the file holding the properties of an environment, preparing it
+	 * the first time it is needed. The shard of the environment must already be within a
+	 * transaction of the current thread (see {@link #within(Collection, ConnectionPool.Work)}).
+	 * 
+	 * @param writers
+	 *            the property writers prepared so far, by file
+	 * @param connection
+	 *            the writer connection of the main database
+	 * @param environment
+	 *            the environment, or null
+	 * @return the property writer
+	 * @throws SQLException
+	 *             if the shard cannot be opened or the statements cannot be prepared
+	 */
+	private static PropertyWriter writerOf(Map<ConnectionPool, PropertyWriter> writers, Connection connection,
+			String environment) throws SQLException {
+		ConnectionPool target = shardOf(environment, true);
+		PropertyWriter writer = writers.get(target);
+		if (writer == null) {
+			writer = target == pool ? new PropertyWriter(connection, false)
+					: new PropertyWriter(target.write(shard -> shard), true);
+			writers.put(target, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * Binds the named fields of a row to the parameters of a prepared statement, in column order.
+	 * Fields missing from the row are bound as null.
+	 * 
+	 * @param ps
+	 *            the prepared statement
+	 * @param columns
+	 *            the column names, in parameter order
+	 * @param row
+	 *            the row
+	 * @throws SQLException
+	 *             if a parameter cannot be bound
+	 */
+	private static void bind(PreparedStatement ps, String[] columns, Map<String, String> row) throws SQLException {
+		for (int i = 0; i < columns.length; i++) {
+			ps.setString(i + 1, row.get(columns[i]));
+		}
 	}
 
 	/**
@@ -397,38 +1979,82 @@ public class SQLiteManager {
 	 *            a {@link java.util.Collection} of filters (represented by the standard Map)
 	 */
 	public static void deleteBatch(Collection<Map<String, String>> filters) {
+		deleteBatch(table, filters);
+	}
+
+	/**
+	 * Batch deletes rows from a specific table.
+	 * 
+	 * @param table
+	 *            the name of the table
+	 * @param filters
+	 *            a {@link java.util.Collection} of filters (represented by the standard Map)
+	 */
+	public static void deleteBatch(String table, Collection<Map<String, String>> filters) {
 		if (filters == null || filters.isEmpty()) {
 			return;
 		}
 
+		String sql = "DELETE FROM " + table + " WHERE ";
+		for (String key : filters.iterator().next().keySet()) {
+			sql += "(" + key + " = ?) AND ";
+		}
+		String delete = sql.substring(0, sql.length() - " AND ".length()) + ";";
 		try {
-			connection.setAutoCommit(false);
-			PreparedStatement ps = null;
-
-			Iterator<Map<String, String>> iter = filters.iterator();
-			while (iter.hasNext()) {
-				Map<String, String> filter = iter.next();
-				if (ps == null) {
-					String sql = "DELETE FROM " + table + " WHERE ";
-					for (String key : filter.keySet()) {
-						sql += "(" + key + " = ?) AND ";
+			pool.transaction(connection -> {
+				if (!table.equals(SQLiteManager.table)) {
+					return deleteRows(connection, delete, filters);
+				}
+
+				// properties are deleted from every file holding the scope of each filter
+				Map<ConnectionPool, List<Map<String, String>>> groups = new LinkedHashMap<>();
+				for (Map<String, String> filter : filters) {
+					for (ConnectionPool target : route(filter)) {
+						groups.computeIfAbsent(target, k -> new ArrayList<>()).add(filter);
 					}
-					sql = sql.substring(0, sql.length() - " AND ".length()) + ";";
-					ps = connection.prepareStatement(sql);
 				}
+				for (Map.Entry<ConnectionPool, List<Map<String, String>>> group : groups.entrySet()) {
+					group.getKey().transaction(shard -> deleteRows(shard, delete, group.getValue()));
+				}
+				return null;
+			});
+		} catch (SQLException e) {
+			exit(e);
+		}
+
+		// keeps the cached directory structure in sync with the file table
+		if (table.equals(files)) {
+			for (Map<String, String> filter : filters) {
+				forget(filter);
+			}
+		}
+	}
+
+	/**
+	 * Deletes rows with a single batched prepared statement, binding the values of each filter in
+	 * turn.
+	 * 
+	 * @param connection
+	 *            the writer connection
+	 * @param delete
+	 *            the delete statement, with a placeholder for each field of the filters
+	 * @param filters
+	 *            the filters
+	 * @return the number of rows deleted by each execution of the statement
+	 * @throws SQLException
+	 *             if the rows cannot be deleted
+	 */
+	private static int[] deleteRows(Connection connection, String delete, Collection<Map<String, String>> filters)
+			throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(delete)) {
+			for (Map<String, String> filter : filters) {
 				int i = 1;
 				for (String value : filter.values()) {
 					ps.setString(i++, value);
 				}
 				ps.addBatch();
-
 			}
-			ps.executeBatch();
-
-			connection.commit();
-			connection.setAutoCommit(true);
-		} catch (SQLException e) {
-			exit(e);
+			return ps.executeBatch();
 		}
 	}
 
@@ -467,7 +2093,7 @@ public class SQLiteManager {
 	 * @param e
 	 *            the SQLException
 	 */
-	private static void exit(SQLException e) {
+	static void exit(SQLException e) {
 		System.err.println("[DATABASE ERROR] A database access error occurred. Exiting with error code 1.");
 		System.exit(1);
 	}
@@ -0,0 +1,296 @@
+package driver;
+
+import java.io.*;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * The shard files of a sharded database: the properties of each environment are kept in their
+ * own SQLite file within a single directory (e.g. `shards/dev1.db`), so that an environment can be
+ * loaded, dropped, or backed up without touching any other. Every other table, and the properties
+ * of files outside of any environment, stay in the main database file.
+ * <p>
+ * Each shard has its own {@link ConnectionPool}, opened the first time the shard is used, rather
+ * than being attached to the connections of the main database: SQLite attaches at most ten
+ * databases to a connection, and cannot attach one within a transaction.
+ * <p>
+ * An environment can also be replaced as a whole by loading its properties into a fresh staging
+ * file (e.g. `shards/dev1.db.staging`) and then swapping that file in for the shard, so that the
+ * old properties are freed with the old file rather than deleted row by row. The main database
+ * records which staging files are committed, so that a swap cut short by a crash is finished the
+ * next time the database is opened (see {@link SQLiteManager#replaceEnvironments}).
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class Shards {
+
+	private static final String SUFFIX = ".db";
+	private static final String STAGING = ".staging";
+
+	private final File directory;
+	private final int size;
+	private final Map<String, ConnectionPool> opened = new HashMap<>();
+	private final Map<String, ConnectionPool> staged = new HashMap<>();
+
+	/**
+	 * Constructor. Creates the directory if necessary; shards are opened as they are needed.
+	 *
+	 * @param directory
+	 *            the path of the directory holding the shard files
+	 * @param size
+	 *            the most read-only connections to open per shard
+	 * @throws SQLException
+	 *             if the directory cannot be created
+	 */
+	public Shards(String directory, int size) throws SQLException {
+		this.directory = new File(directory);
+		this.size = size;
+		if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+			throw new SQLException("Unable to create shard directory " + directory + ".");
+		}
+	}
+
+	/**
+	 * Returns the directory holding the shard files.
+	 *
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the file of an environment's shard, whether or not it exists.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @return the shard file
+	 */
+	public File getFile(String environment) {
+		return new File(directory, environment + SUFFIX);
+	}
+
+	/**
+	 * Returns the staging file of an environment's shard, whether or not it exists.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @return the staging file
+	 */
+	public File getStagingFile(String environment) {
+		return new File(directory, environment + SUFFIX + STAGING);
+	}
+
+	/**
+	 * Lists the environments that have a shard or a staged shard, in order.
+	 *
+	 * @return the environments
+	 */
+	public synchronized SortedSet<String> getEnvironments() {
+		SortedSet<String> environments = new TreeSet<>(opened.keySet());
+		environments.addAll(staged.keySet());
+		String[] names = directory.list();
+		if (names != null) {
+			for (String name : names) {
+				if (name.endsWith(SUFFIX) && name.length() > SUFFIX.length()) {
+					environments.add(name.substring(0, name.length() - SUFFIX.length()));
+				}
+			}
+		}
+		return environments;
+	}
+
+	/**
+	 * Returns the connections to an environment's shard, opening the shard if it is not open yet.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @param create
+	 *            true to create the shard if it does not exist, else false
+	 * @return the connections to the shard, or null if it does not exist and is not created
+	 * @throws SQLException
+	 *             if the shard cannot be opened
+	 */
+	public synchronized ConnectionPool get(String environment, boolean create) throws SQLException {
+		ConnectionPool shard = opened.get(environment);
+		if (shard == null && (create || getFile(environment).isFile())) {
+			shard = new ConnectionPool(getFile(environment).getPath(), size);
+			shard.write(connection -> {
+				SQLiteManager.createPropertiesTable(connection);
+				return SQLiteManager.indexPropertiesTable(connection);
+			});
+			opened.put(environment, shard);
+		}
+		return shard;
+	}
+
+	/**
+	 * Starts replacing an environment's shard: opens a fresh staging file for the environment,
+	 * discarding any left by an interrupted replacement, with an unindexed properties table to
+	 * load the environment into.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @return the connections to the staging file
+	 * @throws SQLException
+	 *             if the staging file cannot be created
+	 */
+	public synchronized ConnectionPool stage(String environment) throws SQLException {
+		discard(environment);
+		ConnectionPool staging = new ConnectionPool(getStagingFile(environment).getPath(), size);
+		staging.write(SQLiteManager::createPropertiesTable);
+		staged.put(environment, staging);
+		return staging;
+	}
+
+	/**
+	 * Returns the connections to an environment's staging file, if it is being replaced.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @return the connections to the staging file, or null if the environment is not staged
+	 */
+	public synchronized ConnectionPool getStaged(String environment) {
+		return staged.get(environment);
+	}
+
+	/**
+	 * Swaps an environment's staging file in for its shard. The old shard is closed once the reads
+	 * in progress on it have finished, and the staging file is then renamed over the shard file,
+	 * so that every later read sees the new shard and the space of the old one is freed at once.
+	 * Reads that still hold the old shard are refused, and find the new one through
+	 * {@link #reopen(ConnectionPool)}.
+	 * <p>
+	 * A staging file left by a process that stopped before its swap can be swapped in as well, by
+	 * a shard set that did not stage it: it is opened first, so that its write-ahead log is
+	 * checkpointed into it. A staging file that is already gone was swapped in by another process.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @throws SQLException
+	 *             if the staging file cannot be renamed
+	 */
+	public synchronized void swap(String environment) throws SQLException {
+		ConnectionPool staging = staged.remove(environment);
+		if (staging == null && getStagingFile(environment).isFile()) {
+			staging = new ConnectionPool(getStagingFile(environment).getPath(), size);
+		}
+		if (staging == null) {
+			return;
+		}
+		staging.close();
+		ConnectionPool shard = opened.remove(environment);
+		if (shard != null) {
+			shard.close();
+		}
+		if (!getStagingFile(environment).isFile()) {
+			return;
+		}
+		File file = getFile(environment);
+		deleteLog(file);
+		try {
+			Files.move(getStagingFile(environment).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new SQLException("Unable to swap in the staged shard of " + environment + ".", e);
+		}
+	}
+
+	/**
+	 * Looks up the connections to a shard again after its connections were closed, e.g. because
+	 * the shard was swapped out while a read was routed to it.
+	 *
+	 * @param closed
+	 *            the closed connections to the shard
+	 * @return the current connections to the same shard, or null if the connections are not those
+	 *         of a shard, or the shard no longer exists
+	 * @throws SQLException
+	 *             if the shard cannot be opened
+	 */
+	public synchronized ConnectionPool reopen(ConnectionPool closed) throws SQLException {
+		File file = new File(closed.getDatabase());
+		if (!file.getParentFile().equals(directory) || !file.getName().endsWith(SUFFIX)) {
+			return null;
+		}
+		String environment = file.getName().substring(0, file.getName().length() - SUFFIX.length());
+		ConnectionPool shard = get(environment, false);
+		return shard != closed ? shard : null;
+	}
+
+	/**
+	 * Abandons the replacement of an environment's shard, deleting its staging file.
+	 *
+	 * @param environment
+	 *            the environment
+	 */
+	public synchronized void discard(String environment) {
+		ConnectionPool staging = staged.remove(environment);
+		if (staging != null) {
+			staging.close();
+		}
+		File file = getStagingFile(environment);
+		deleteLog(file);
+		file.delete();
+	}
+
+	/**
+	 * Closes an environment's shard and deletes its file, along with its write-ahead log. As in
+	 * {@link #close()}, the shard is closed outside of the lock on the shard set.
+	 *
+	 * @param environment
+	 *            the environment
+	 * @return true if the shard existed, else false
+	 */
+	public boolean drop(String environment) {
+		ConnectionPool shard;
+		synchronized (this) {
+			shard = opened.remove(environment);
+		}
+		if (shard != null) {
+			shard.close();
+		}
+		File file = getFile(environment);
+		deleteLog(file);
+		return file.delete();
+	}
+
+	/**
+	 * Closes every shard and deletes every shard file.
+	 */
+	public void dropAll() {
+		for (String environment : getEnvironments()) {
+			drop(environment);
+		}
+	}
+
+	/**
+	 * Deletes the write-ahead log of a closed database file.
+	 *
+	 * @param file
+	 *            the database file
+	 */
+	private static void deleteLog(File file) {
+		new File(file.getPath() + "-wal").delete();
+		new File(file.getPath() + "-shm").delete();
+	}
+
+	/**
+	 * Closes every open shard. Shards are closed outside of the lock on the shard set, since a
+	 * thread writing to a shard may still need to look up others.
+	 */
+	public void close() {
+		List<ConnectionPool> closing;
+		synchronized (this) {
+			closing = new ArrayList<>(opened.values());
+			closing.addAll(staged.values());
+			opened.clear();
+			staged.clear();
+		}
+		for (ConnectionPool shard : closing) {
+			shard.close();
+		}
+	}
+
+}
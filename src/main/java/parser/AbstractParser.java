@@ -12,6 +12,7 @@ import java.util.*;
 public abstract class AbstractParser {
 
 	protected String root, path;
+	private FileMetadata metadata;
 	protected Map<String, Object> data = new LinkedHashMap<>();
 	protected boolean error, internal;
 
@@ -28,48 +29,30 @@ public abstract class AbstractParser {
 	}
 
 	/**
-	 * Getter method for the property metadata (e.g. environment, fabric, node).
+	 * Getter method for the file metadata (e.g. environment, fabric, node), derived when the path
+	 * was set.
 	 * 
-	 * @return a Map representation of the property metadata
+	 * @return the file metadata
 	 */
-	public final Map<String, String> getMetadata() {
-
-		// formats path as array with structure [environment, fabric, node, file],
-		// with null values for non-standard paths (e.g. root/file becomes [null, null, null, file])
-		String[] predictedPath = { "environment", "fabric", "node", "filename" };
-		String relativePath = path.substring(root.length());
-		String[] split = relativePath.split("/");
-		String[] delimitedPath = new String[predictedPath.length];
-		try {
-			for (int i = 0; i < split.length - 1; i++) {
-				delimitedPath[i] = split[i];
-			}
-		} catch (ArrayIndexOutOfBoundsException e) {
+	public final FileMetadata getFileMetadata() {
+		if (metadata == null) {
 			System.err.println("\n[ERROR] Incompatible directory structure.\nExiting with error code 1.");
 			System.exit(1);
 		}
-		delimitedPath[delimitedPath.length - 1] = split[split.length - 1];
-
-		// goes through arrays and adds metadata if not null
-		Map<String, String> metadata = new LinkedHashMap<>();
-		for (int i = predictedPath.length - 1; i >= 0; i--) {
-			if (delimitedPath[i] != null) {
-				metadata.put(predictedPath[i], delimitedPath[i]);
-			}
-		}
-		metadata.put("path", relativePath);
-
-		// adds extensions to metadata with exception for hosts files
-		if (metadata.get("filename").equals("hosts")) {
-			metadata.put("extension", "hosts");
-		} else {
-			metadata.put("extension", relativePath.substring(relativePath.lastIndexOf('.') + 1));
-		}
 		return metadata;
 	}
 
 	/**
-	 * Setter method for file path instance variable.
+	 * Getter method for the property metadata (e.g. environment, fabric, node).
+	 * 
+	 * @return a Map representation of the property metadata
+	 */
+	public final Map<String, String> getMetadata() {
+		return getFileMetadata().toMap();
+	}
+
+	/**
+	 * Setter method for file path instance variable. Also derives the file metadata.
 	 * 
 	 * @param root
 	 *            the root directory from which the File is from
@@ -79,6 +62,7 @@ public abstract class AbstractParser {
 	public final void setPath(String root, String path) {
 		this.root = cleanPath(root + "/");
 		this.path = cleanPath(path);
+		this.metadata = FileMetadata.of(this.path.substring(this.root.length()));
 	}
 
 	/**
@@ -107,7 +91,8 @@ public abstract class AbstractParser {
 	}
 
 	/**
-	 * Helper method to clean path inputs. Reformats paths with slashes for file delimiters.
+	 * Helper method to clean path inputs. Reformats paths with slashes for file delimiters,
+	 * collapsing each run of delimiters into a single slash.
 	 * @param path
 	 *            the path to clean
 	 * @return the cleaned path
@@ -115,20 +100,16 @@ public abstract class AbstractParser {
 	private final String cleanPath(String path) {
 
 		// necessary because Windows file delimiters throw off String methods
-		String p = "";
+		StringBuilder p = new StringBuilder(path.length());
 		for (int i = 0; i < path.length(); i++) {
-			if (path.charAt(i) != '\\') {
-				p += path.charAt(i);
-			} else {
-				p += "/";
+			char c = path.charAt(i);
+			if (c != '/' && c != '\\') {
+				p.append(c);
+			} else if (p.length() == 0 || p.charAt(p.length() - 1) != '/') {
+				p.append('/');
 			}
 		}
-
-		while (p.indexOf("//") != -1) {
-			p = p.replace("//", "/");
-		}
-
-		return p;
+		return p.toString();
 
 	}
 
@@ -143,6 +124,18 @@ public abstract class AbstractParser {
 	 */
 	public abstract void standardize(File input);
 
+	/**
+	 * Replaces the parsed keys and values with their pooled instances (see {@link StringPool}), so
+	 * that the Strings repeated across files are only kept once.
+	 */
+	final void dedup() {
+		Map<String, Object> pooled = new LinkedHashMap<>(data.size() * 4 / 3 + 1);
+		for (Map.Entry<String, Object> property : data.entrySet()) {
+			pooled.put(StringPool.dedup(property.getKey()), StringPool.dedup(property.getValue()));
+		}
+		data = pooled;
+	}
+
 	/**
 	 * Clears the internal data structures.
 	 */
@@ -3,6 +3,8 @@ package parser;
 import java.io.*;
 import java.util.*;
 
+import driver.Metrics;
+
 /**
  * Recursively takes all input files in directory and parses them according to
  * file type.
@@ -72,7 +74,10 @@ public class DirectoryParser {
 	 */
 	public int parseAll() {
 		int parsed = 0;
+		long start = Metrics.start();
 		findFiles(directory);
+		Metrics.time("populate.walk", start);
+		Metrics.count("populate.files", filepaths.size());
 		boolean err = false;
 		for (String path : filepaths) {
 			FileParser reader = new FileParser(directory, new File(path));
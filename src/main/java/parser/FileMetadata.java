@@ -0,0 +1,179 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * The metadata of a parsed file, i.e. its location within the root directory: its environment,
+ * fabric, node, filename, path relative to the root, and extension. Metadata is derived once, when
+ * the path of a parser is set, with a single pass over the path, and is immutable thereafter.
+ * Every segment but the (unique) path is pooled (see {@link StringPool}).
+ * <p>
+ * Files outside of the standard `environment/fabric/node/filename` structure leave the missing
+ * levels null, e.g. `root/file` only has a filename.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public final class FileMetadata {
+
+	private final String environment, fabric, node, filename, path, extension;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param environment
+	 *            the environment, or null
+	 * @param fabric
+	 *            the fabric, or null
+	 * @param node
+	 *            the node, or null
+	 * @param filename
+	 *            the filename
+	 * @param path
+	 *            the path relative to the root
+	 * @param extension
+	 *            the extension
+	 */
+	private FileMetadata(String environment, String fabric, String node, String filename, String path,
+			String extension) {
+		this.environment = environment;
+		this.fabric = fabric;
+		this.node = node;
+		this.filename = filename;
+		this.path = path;
+		this.extension = extension;
+	}
+
+	/**
+	 * Derives the metadata of a file from its path relative to the root.
+	 *
+	 * @param relativePath
+	 *            the cleaned path of the file, relative to the root (i.e. with single `/`
+	 *            delimiters and no leading delimiter)
+	 * @return the metadata, or null if the file is nested too deeply (a single directory within a
+	 *         node is tolerated, and left out of the metadata)
+	 */
+	static FileMetadata of(String relativePath) {
+		String[] levels = new String[3];
+		int level = 0;
+		int start = 0;
+		for (int end = relativePath.indexOf('/'); end != -1; end = relativePath.indexOf('/', start)) {
+			if (level > levels.length) {
+				return null;
+			}
+			if (level < levels.length) {
+				levels[level] = StringPool.dedup(relativePath.substring(start, end));
+			}
+			level++;
+			start = end + 1;
+		}
+		String filename = StringPool.dedup(relativePath.substring(start));
+
+		// hosts files have no extension
+		String extension = filename.equals("hosts") ? "hosts"
+				: StringPool.dedup(relativePath.substring(relativePath.lastIndexOf('.') + 1));
+		return new FileMetadata(levels[0], levels[1], levels[2], filename, relativePath, extension);
+	}
+
+	/**
+	 * Returns the environment.
+	 *
+	 * @return the environment, or null
+	 */
+	public String getEnvironment() {
+		return environment;
+	}
+
+	/**
+	 * Returns the fabric.
+	 *
+	 * @return the fabric, or null
+	 */
+	public String getFabric() {
+		return fabric;
+	}
+
+	/**
+	 * Returns the node.
+	 *
+	 * @return the node, or null
+	 */
+	public String getNode() {
+		return node;
+	}
+
+	/**
+	 * Returns the filename.
+	 *
+	 * @return the filename
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Returns the path relative to the root.
+	 *
+	 * @return the path
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the extension.
+	 *
+	 * @return the extension
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Adds the metadata to a property or file row, in the order of the former metadata Map.
+	 *
+	 * @param row
+	 *            the row
+	 */
+	public void copyTo(Map<String, String> row) {
+		row.put("filename", filename);
+		if (node != null) {
+			row.put("node", node);
+		}
+		if (fabric != null) {
+			row.put("fabric", fabric);
+		}
+		if (environment != null) {
+			row.put("environment", environment);
+		}
+		row.put("path", path);
+		row.put("extension", extension);
+	}
+
+	/**
+	 * Returns the metadata as a standard Map, e.g. for use as a filter.
+	 *
+	 * @return a Map of each present field to its value
+	 */
+	public Map<String, String> toMap() {
+		Map<String, String> map = new LinkedHashMap<>();
+		copyTo(map);
+		return map;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof FileMetadata && path.equals(((FileMetadata) o).path);
+	}
+
+	@Override
+	public int hashCode() {
+		return path.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+}
@@ -2,6 +2,9 @@ package parser;
 
 import java.io.*;
 
+import driver.Events;
+import driver.Metrics;
+
 /**
  * Takes input file and parses according to file type.
  * 
@@ -106,7 +109,12 @@ public class FileParser {
 	 */
 	public boolean parseFile() {
 		if (data != null) {
+			long start = Metrics.start();
+			Object event = Events.beginParse();
 			data.standardize(input);
+			data.dedup();
+			Events.endParse(event, input, data.getClass(), data.getData().size());
+			Metrics.time("parse", data.getClass(), start);
 			return true;
 		}
 		return false;
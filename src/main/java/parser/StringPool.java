@@ -0,0 +1,80 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * A bounded pool of Strings, used to deduplicate the keys, values, and metadata that repeat across
+ * the files of a root (e.g. "true", "localhost", port numbers, environment and fabric names), so
+ * that every copy of a repeated String parsed during a `populate` shares a single instance.
+ * <p>
+ * The pool is a fixed-size, direct-mapped table: each String has a single slot, chosen by its
+ * hash, and a String that is not found replaces whatever occupied its slot. Unlike
+ * {@link String#intern()}, the pool can therefore never grow, and a String that stops repeating
+ * is eventually evicted. Strings longer than {@link #MAX_LENGTH} are rarely repeated and are
+ * never pooled, which bounds the memory the pool retains to a few megabytes.
+ * <p>
+ * The pool may be used from several threads: a race on a slot can only cause a missed
+ * deduplication, never a wrong String.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class StringPool {
+
+	public static final int SLOTS = 1 << 14;
+	public static final int MAX_LENGTH = 256;
+
+	private static final String[] slots = new String[SLOTS];
+	private static boolean enabled = true;
+
+	/**
+	 * Enables or disables the pool, e.g. to measure its effect.
+	 *
+	 * @param enable
+	 *            true to deduplicate Strings, else false
+	 */
+	public static void enable(boolean enable) {
+		enabled = enable;
+	}
+
+	/**
+	 * Returns the pooled instance of a String, pooling it if no equal String is pooled.
+	 *
+	 * @param string
+	 *            the String, or null
+	 * @return an equal String, or the String itself if it is null, too long, or the pool is
+	 *         disabled
+	 */
+	public static String dedup(String string) {
+		if (!enabled || string == null || string.length() > MAX_LENGTH) {
+			return string;
+		}
+		int hash = string.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+		String pooled = slots[slot];
+		if (pooled != null && pooled.equals(string)) {
+			return pooled;
+		}
+		slots[slot] = string;
+		return string;
+	}
+
+	/**
+	 * Returns the pooled instance of a value, if it is a String.
+	 *
+	 * @param value
+	 *            the value
+	 * @return an equal String if the value is a String, else the value itself
+	 */
+	public static Object dedup(Object value) {
+		return value instanceof String ? dedup((String) value) : value;
+	}
+
+	/**
+	 * Empties the pool.
+	 */
+	public static void clear() {
+		Arrays.fill(slots, null);
+	}
+
+}
@@ -0,0 +1,255 @@
+package queryModule;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes and reads Lighthouse reports in a typed, dictionary-encoded, columnar binary format
+ * (".lhr"). Rows are buffered and written in chunks, so memory use while writing is bounded by the
+ * chunk size rather than by the size of the report.
+ * <p>
+ * All integers are big-endian (as written by {@link java.io.DataOutputStream}) and all strings
+ * are UTF-8. A file is laid out as:
+ *
+ * <pre>
+ * header:
+ *   bytes[4]   magic "LHR1"
+ *   int        number of metadata entries, then for each: string key, string value
+ *   int        number of columns, then for each: string name, byte type (0 = string, 1 = int)
+ * chunk (repeated):
+ *   int        number of rows in the chunk (0 marks the end of the file)
+ *   for each column, in order:
+ *     string column:
+ *       int    dictionary size, then each dictionary entry as a string
+ *       byte   index width in bytes (1, 2 or 4)
+ *       index[rows] dictionary index of each row
+ *     int column:
+ *       int[rows] value of each row
+ * string:
+ *   int        length in bytes, then the UTF-8 bytes
+ * </pre>
+ *
+ * Dictionaries are local to each chunk and column, so a chunk can be decoded on its own.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class ColumnarReport {
+
+	public static final String EXTENSION = "lhr";
+	public static final byte STRING = 0;
+	public static final byte INT = 1;
+
+	private static final byte[] MAGIC = { 'L', 'H', 'R', '1' };
+	private static final int CHUNK_ROWS = 65536;
+
+	private DataOutputStream out;
+	private byte[] types;
+	private String[][] chunk;
+	private int rows;
+
+	/**
+	 * Constructor. Opens the file and writes the self-describing header.
+	 *
+	 * @param file
+	 *            the file being written
+	 * @param metadata
+	 *            report-level metadata (e.g. report name, mode), written as key-value pairs
+	 * @param columns
+	 *            the column names
+	 * @param types
+	 *            the type of each column, either {@link #STRING} or {@link #INT}
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public ColumnarReport(File file, Map<String, String> metadata, String[] columns, byte[] types)
+			throws IOException {
+		if (columns.length != types.length) {
+			throw new IllegalArgumentException("Each column requires exactly one type.");
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		this.types = types;
+		this.chunk = new String[CHUNK_ROWS][];
+
+		out.write(MAGIC);
+		out.writeInt(metadata.size());
+		for (Map.Entry<String, String> entry : metadata.entrySet()) {
+			writeString(entry.getKey());
+			writeString(entry.getValue());
+		}
+		out.writeInt(columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			writeString(columns[i]);
+			out.writeByte(types[i]);
+		}
+	}
+
+	/**
+	 * Adds a row to the report, writing out the current chunk once it is full.
+	 *
+	 * @param row
+	 *            the row, with one entry per column
+	 * @throws IOException
+	 *             if the chunk cannot be written
+	 */
+	public void addRow(String[] row) throws IOException {
+		chunk[rows++] = row;
+		if (rows == CHUNK_ROWS) {
+			flushChunk();
+		}
+	}
+
+	/**
+	 * Writes any buffered rows and the end-of-file marker, then closes the file.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void close() throws IOException {
+		flushChunk();
+		out.writeInt(0);
+		out.close();
+	}
+
+	/**
+	 * Encodes the buffered rows column by column.
+	 *
+	 * @throws IOException
+	 *             if the chunk cannot be written
+	 */
+	private void flushChunk() throws IOException {
+		if (rows == 0) {
+			return;
+		}
+		out.writeInt(rows);
+		for (int col = 0; col < types.length; col++) {
+			if (types[col] == INT) {
+				for (int r = 0; r < rows; r++) {
+					String cell = chunk[r][col];
+					out.writeInt(cell == null || cell.isEmpty() ? 0 : Integer.parseInt(cell));
+				}
+				continue;
+			}
+
+			// builds the chunk-local dictionary in order of first appearance
+			Map<String, Integer> dictionary = new LinkedHashMap<>();
+			int[] indices = new int[rows];
+			for (int r = 0; r < rows; r++) {
+				String cell = chunk[r][col] == null ? "" : chunk[r][col];
+				Integer index = dictionary.get(cell);
+				if (index == null) {
+					index = dictionary.size();
+					dictionary.put(cell, index);
+				}
+				indices[r] = index;
+			}
+
+			out.writeInt(dictionary.size());
+			for (String entry : dictionary.keySet()) {
+				writeString(entry);
+			}
+			int width = dictionary.size() <= 0xFF ? 1 : dictionary.size() <= 0xFFFF ? 2 : 4;
+			out.writeByte(width);
+			for (int r = 0; r < rows; r++) {
+				if (width == 1) {
+					out.writeByte(indices[r]);
+				} else if (width == 2) {
+					out.writeShort(indices[r]);
+				} else {
+					out.writeInt(indices[r]);
+				}
+			}
+		}
+		Arrays.fill(chunk, 0, rows, null);
+		rows = 0;
+	}
+
+	/**
+	 * Writes a length-prefixed UTF-8 String.
+	 *
+	 * @param str
+	 *            the String being written
+	 * @throws IOException
+	 *             if the String cannot be written
+	 */
+	private void writeString(String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads an entire report back into memory. Primarily meant for verification and small
+	 * reports--larger consumers should decode chunk by chunk.
+	 *
+	 * @param file
+	 *            the report being read
+	 * @return the report as a List of rows, the first of which is the column header
+	 * @throws IOException
+	 *             if the file cannot be read or is not a Lighthouse report
+	 */
+	public static List<String[]> read(File file) throws IOException {
+		List<String[]> table = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException(file + " is not a Lighthouse report.");
+			}
+			int entries = in.readInt();
+			for (int i = 0; i < entries * 2; i++) {
+				readString(in);
+			}
+
+			int ncols = in.readInt();
+			String[] header = new String[ncols];
+			byte[] types = new byte[ncols];
+			for (int i = 0; i < ncols; i++) {
+				header[i] = readString(in);
+				types[i] = in.readByte();
+			}
+			table.add(header);
+
+			int rows;
+			while ((rows = in.readInt()) != 0) {
+				String[][] chunk = new String[rows][ncols];
+				for (int col = 0; col < ncols; col++) {
+					if (types[col] == INT) {
+						for (int r = 0; r < rows; r++) {
+							chunk[r][col] = Integer.toString(in.readInt());
+						}
+						continue;
+					}
+					String[] dictionary = new String[in.readInt()];
+					for (int i = 0; i < dictionary.length; i++) {
+						dictionary[i] = readString(in);
+					}
+					int width = in.readByte();
+					for (int r = 0; r < rows; r++) {
+						int index = width == 1 ? in.readUnsignedByte() : width == 2 ? in.readUnsignedShort() : in.readInt();
+						chunk[r][col] = dictionary[index];
+					}
+				}
+				table.addAll(Arrays.asList(chunk));
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Reads a length-prefixed UTF-8 String.
+	 *
+	 * @param in
+	 *            the stream being read
+	 * @return the String
+	 * @throws IOException
+	 *             if the String cannot be read
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
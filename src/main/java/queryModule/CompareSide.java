@@ -0,0 +1,242 @@
+package queryModule;
+
+import java.util.*;
+
+/**
+ * A compact, in-memory representation of one side of a query pair, holding only what a comparison
+ * needs: the key, value, and path of each property, and whether it is ignored. Keys, values, and
+ * paths are interned into dictionaries shared by both sides of a pair, so each property is stored
+ * as three int ids in parallel arrays plus a bit, and two values are equal exactly if their ids
+ * are. Properties are looked up by key id in a directly addressed index, since key ids are dense.
+ * <p>
+ * As with the Maps previously used for each side, a key appears once, in the position it was first
+ * added, and a later property with the same key replaces the earlier one.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class CompareSide {
+
+	private final Dictionary keys;
+	private final Dictionary values;
+	private final Dictionary paths;
+
+	private int size;
+	private int[] keyIds = new int[64];
+	private int[] valueIds = new int[64];
+	private int[] pathIds = new int[64];
+	private BitSet ignored = new BitSet();
+	private int[] index = new int[64];	// slot + 1 of each key id, or 0 if absent
+
+	/**
+	 * Interns Strings as dense int ids, in an open-addressing hash table.
+	 */
+	static class Dictionary {
+		private String[] strings = new String[64];
+		private int[] table = new int[128];	// id + 1 of each occupied bucket, or 0
+		private int size;
+
+		/**
+		 * Returns the id of a String, adding it if new.
+		 */
+		int intern(String string) {
+			int mask = table.length - 1;
+			for (int i = mix(string.hashCode()) & mask;; i = (i + 1) & mask) {
+				int id = table[i] - 1;
+				if (id < 0) {
+					break;
+				}
+				if (strings[id].equals(string)) {
+					return id;
+				}
+			}
+			if (size == strings.length) {
+				strings = Arrays.copyOf(strings, size * 2);
+			}
+			strings[size] = string;
+			if (++size * 2 > table.length) {
+				rehash();
+			} else {
+				place(size - 1);
+			}
+			return size - 1;
+		}
+
+		/**
+		 * Returns the String with an id.
+		 */
+		String get(int id) {
+			return strings[id];
+		}
+
+		int size() {
+			return size;
+		}
+
+		private void rehash() {
+			table = new int[table.length * 2];
+			for (int id = 0; id < size; id++) {
+				place(id);
+			}
+		}
+
+		private void place(int id) {
+			int mask = table.length - 1;
+			int i = mix(strings[id].hashCode()) & mask;
+			while (table[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			table[i] = id + 1;
+		}
+
+		private static int mix(int hash) {
+			hash *= 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+	}
+
+	/**
+	 * Constructor for the first side of a pair, with new dictionaries.
+	 */
+	public CompareSide() {
+		this.keys = new Dictionary();
+		this.values = new Dictionary();
+		this.paths = new Dictionary();
+	}
+
+	/**
+	 * Constructor for the other side of a pair, sharing the dictionaries of the first.
+	 *
+	 * @param other
+	 *            the first side of the pair
+	 */
+	public CompareSide(CompareSide other) {
+		this.keys = other.keys;
+		this.values = other.values;
+		this.paths = other.paths;
+	}
+
+	/**
+	 * Adds a property, replacing any property with the same key.
+	 *
+	 * @param key
+	 *            the key of the property
+	 * @param value
+	 *            the value of the property
+	 * @param path
+	 *            the path of the file containing the property
+	 * @param ignore
+	 *            true if the property is ignored, else false
+	 */
+	public void add(String key, String value, String path, boolean ignore) {
+		int keyId = keys.intern(key);
+		int slot = find(keyId);
+		if (slot < 0) {
+			if (size == keyIds.length) {
+				keyIds = Arrays.copyOf(keyIds, size * 2);
+				valueIds = Arrays.copyOf(valueIds, size * 2);
+				pathIds = Arrays.copyOf(pathIds, size * 2);
+			}
+			if (keyId >= index.length) {
+				index = Arrays.copyOf(index, Math.max(keyId + 1, index.length * 2));
+			}
+			slot = size++;
+			keyIds[slot] = keyId;
+			index[keyId] = slot + 1;
+		}
+		valueIds[slot] = value == null ? -1 : values.intern(value);
+		pathIds[slot] = paths.intern(path);
+		ignored.set(slot, ignore);
+	}
+
+	/**
+	 * Returns the number of distinct keys.
+	 *
+	 * @return the number of properties
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds the property with a key, by the key's id.
+	 *
+	 * @param keyId
+	 *            the id of the key, as returned by {@link #keyId(int)} on either side of the pair
+	 * @return the slot of the property, or -1 if this side has no such key
+	 */
+	public int find(int keyId) {
+		return keyId < index.length ? index[keyId] - 1 : -1;
+	}
+
+	/**
+	 * Returns the key id of the property in a slot.
+	 *
+	 * @param slot
+	 *            the slot, between 0 and {@link #size()}
+	 * @return the id of the key
+	 */
+	public int keyId(int slot) {
+		return keyIds[slot];
+	}
+
+	/**
+	 * Returns the key of the property in a slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the key
+	 */
+	public String key(int slot) {
+		return keys.get(keyIds[slot]);
+	}
+
+	/**
+	 * Returns the value of the property in a slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the value, or null if it has none
+	 */
+	public String value(int slot) {
+		return valueIds[slot] < 0 ? null : values.get(valueIds[slot]);
+	}
+
+	/**
+	 * Checks if the properties in slots of this and the other side of the pair have the same value.
+	 *
+	 * @param slot
+	 *            the slot on this side
+	 * @param other
+	 *            the other side of the pair
+	 * @param otherSlot
+	 *            the slot on the other side
+	 * @return true if the values are the same, else false
+	 */
+	public boolean sameValue(int slot, CompareSide other, int otherSlot) {
+		return valueIds[slot] == other.valueIds[otherSlot];
+	}
+
+	/**
+	 * Returns the path of the file containing the property in a slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the path
+	 */
+	public String path(int slot) {
+		return paths.get(pathIds[slot]);
+	}
+
+	/**
+	 * Checks if the property in a slot is ignored.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return true if the property is ignored, else false
+	 */
+	public boolean isIgnored(int slot) {
+		return ignored.get(slot);
+	}
+
+}
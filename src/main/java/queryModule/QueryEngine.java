@@ -4,6 +4,10 @@ import java.io.*;
 import java.text.*;
 import java.util.*;
 
+import databaseModule.Fingerprint;
+import databaseModule.IgnoreRules;
+import driver.Events;
+import driver.Metrics;
 import driver.SQLiteManager;
 
 /**
@@ -14,6 +18,13 @@ import driver.SQLiteManager;
  */
 public class QueryEngine {
 
+	// report modes: every row, only discrepancies, or one summary row per query pair
+	public static final int FULL_REPORT = 0;
+	public static final int DIFF_ONLY = 1;
+	public static final int SUMMARY = 2;
+
+	private int mode = FULL_REPORT;
+
 	// each ArrayList is a single query pair {left filter, right filter}
 	// the Queue then represents a series of queries to be executed
 	private Queue<ArrayList<Map<String, String>>> queuedQueries = new LinkedList<>();
@@ -21,6 +32,9 @@ public class QueryEngine {
 	// Set of paths excluded from query--generated in excludeQuery()
 	private Set<String> exclusions = new HashSet<>();
 
+	// ignore rules, loaded once per run
+	private IgnoreRules rules;
+
 	/*
 	 * String[]: CSV row, formatted {file, key, value, file, key, value, key diff, value diff}
 	 * LinkedList<String[]>: a single table containing the entirety of a comparison between queries
@@ -43,6 +57,28 @@ public class QueryEngine {
 		discrepancies.put("key", 0);
 		discrepancies.put("value", 0);
 		discrepancies.put("ignored", 0);
+		discrepancies.put("same", 0);
+	}
+
+	/**
+	 * Sets the report mode. In {@link #DIFF_ONLY} mode, properties that are the same on both sides
+	 * (or ignored) are counted but never added to the table. In {@link #SUMMARY} mode, no property
+	 * rows are added at all and each query pair is instead reduced to a single row of counts.
+	 * 
+	 * @param mode
+	 *            {@link #FULL_REPORT}, {@link #DIFF_ONLY}, or {@link #SUMMARY}
+	 */
+	public void setMode(int mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Getter method for the report mode.
+	 * 
+	 * @return {@link #FULL_REPORT}, {@link #DIFF_ONLY}, or {@link #SUMMARY}
+	 */
+	public int getMode() {
+		return mode;
 	}
 
 	/**
@@ -60,8 +96,9 @@ public class QueryEngine {
 	 * 
 	 * @return the discrepancy statistics as a Map where the entry "key" corresponds to the total
 	 *         number of differences in the keys of a query, the entry "value" corresponds to the
-	 *         total number of differences in the values of a query, and the entry "ignored"
-	 *         corresponds to the total number of properties that were ignored by the QueryEngine
+	 *         total number of differences in the values of a query, the entry "ignored"
+	 *         corresponds to the total number of properties that were ignored by the QueryEngine,
+	 *         and the entry "same" corresponds to the total number of identical properties
 	 */
 	public Map<String, Integer> getDiscrepancies() {
 		return discrepancies;
@@ -92,7 +129,7 @@ public class QueryEngine {
 	public ArrayList<String> generateInternalQueries(String path) {
 
 		// generates filter
-		Map<String, String> filter = SQLiteManager.generatePathFilter(path);
+		Map<String, String> filter = SQLiteManager.generatePathFilter(path, true);
 
 		// rebuilds path (in case of wildcard extensions)
 		String loc = "";
@@ -131,6 +168,11 @@ public class QueryEngine {
 				}
 				subpath += "." + filter.get("extension");
 			}
+
+			// keeps comparing the same past generation of the database
+			if (filter.get("generation") != null) {
+				subpath += "@" + filter.get("generation");
+			}
 			subpaths.add(subpath);
 		}
 
@@ -151,8 +193,8 @@ public class QueryEngine {
 	public ArrayList<Map<String, String>> addQuery(String pathL, String pathR) {
 
 		ArrayList<Map<String, String>> filters = new ArrayList<>();
-		filters.add(SQLiteManager.generatePathFilter(pathL));
-		filters.add(SQLiteManager.generatePathFilter(pathR));
+		filters.add(SQLiteManager.generatePathFilter(pathL, true));
+		filters.add(SQLiteManager.generatePathFilter(pathR, true));
 		ArrayList<Map<String, String>> added = new ArrayList<>();
 		try {
 
@@ -210,10 +252,12 @@ public class QueryEngine {
 	 * the remaining queried files, and adds the results to a CSV file.
 	 * 
 	 * @return a Map detailing the results of the operation--the "queried" key contains the Integer
-	 *         value of the number of queried properties and the "excluded" key contains the Integer
-	 *         value of the number of properties excluded from comparison
+	 *         value of the number of queried properties, the "excluded" key contains the Integer
+	 *         value of the number of properties excluded from comparison, and the "identical" key
+	 *         contains the number of query pairs skipped because their fingerprints matched
 	 */
 	public Map<String, Integer> run() {
+		long started = Metrics.start();
 
 		// if single query, sets column filenames to query comparison
 		// else, in case of internal query, determines parent directory
@@ -231,6 +275,12 @@ public class QueryEngine {
 					right = val2;
 				}
 			}
+
+			// distinguishes a path from its own past generation
+			if (!Objects.equals(comp1.get("generation"), comp2.get("generation"))) {
+				left = formatFilter(comp1);
+				right = formatFilter(comp2);
+			}
 		} else {
 			Map<String, String> query = queuedQueries.peek().get(0);
 			String stop = "";
@@ -251,131 +301,328 @@ public class QueryEngine {
 			}
 		}
 
-		// adds header for full CSV table
-		String[] header = { left, "left key", "left value", right, "right key", "right value", "key status",
-				"value status" };
+		// adds header for full CSV table, or for the per-pair counts in summary mode
+		String[] header;
+		if (mode == SUMMARY) {
+			header = new String[] { left, right, "same", "key discrepancies", "value discrepancies", "ignored" };
+		} else {
+			header = new String[] { left, "left key", "left value", right, "right key", "right value",
+					"key status", "value status" };
+		}
 		LinkedList<String[]> tableHeader = new LinkedList<>();
 		tableHeader.add(header);
 		tables.add(tableHeader);
 
 		// initializes statistic tracking for comparison
+		rules = IgnoreRules.load();
 		int queried = 0;
 		int excluded = 0;
+		int identical = 0;
 
 		// adds properties matching both sides of query
 		while (queuedQueries.peek() != null) {
 			ArrayList<Map<String, String>> query = queuedQueries.poll();
-
-			// creates Document lists as specified in the query
-			// Maps used to rapidly hash keys and corresponding properties for constant lookup
-			Map<String, Map<String, String>> propsL = new LinkedHashMap<>();
-			Map<String, Map<String, String>> propsR = new LinkedHashMap<>();
-
-			String sql;
-			Iterator<Map<String, String>> iter;
-
-			// finds all unblocked properties on left side of query
-			sql = "SELECT * FROM " + SQL_TABLE + SQLiteManager.generateSQLFilter(query.get(0), null);
-			iter = SQLiteManager.select(sql).iterator();
-			while (iter.hasNext()) {
-				Map<String, String> property = iter.next();
-				if (exclusions.contains(property.get("path"))) {
-					excluded++;
-				} else {
-					propsL.put(property.get("key"), property);
+			long start = Metrics.start();
+			Object event = Events.beginCompare();
+			int rows = queried;
+
+			// skips pairs with identical content when same properties are not being reported; the
+			// fingerprints only describe the compared properties if no key is in several files,
+			// since a comparison keeps a single property per key
+			if (mode != FULL_REPORT) {
+				long[] scopeL = Fingerprint.ofScope(query.get(0), exclusions);
+				long[] scopeR = Fingerprint.ofScope(query.get(1), exclusions);
+				boolean same = scopeL != null && scopeR != null && scopeL[0] == scopeR[0] && scopeL[1] == scopeR[1]
+						&& countKeys(query.get(0)) == scopeL[0] && countKeys(query.get(1)) == scopeR[0];
+				Metrics.time("compare.fingerprint", start);
+				if (same) {
+					queried += scopeL[0] + scopeL[2] + scopeR[0] + scopeR[2];
+					excluded += scopeL[2] + scopeR[2];
+					int[] counts = countIdentical(query, (int) scopeL[0]);
+					discrepancies.put("same", discrepancies.get("same") + counts[0]);
+					discrepancies.put("ignored", discrepancies.get("ignored") + counts[1]);
+					if (mode == SUMMARY) {
+						String[] row = { formatFilter(query.get(0)), formatFilter(query.get(1)),
+								Integer.toString(counts[0]), "0", "0", Integer.toString(counts[1]) };
+						tables.getFirst().add(row);
+					}
+					identical++;
+					Events.endCompare(event, query, this::formatFilter, queried - rows, true);
+					Metrics.time("compare.pair", start);
+					continue;
 				}
-				queried++;
 			}
 
-			// finds all unblocked properties on right side of query
-			sql = "SELECT * FROM " + SQL_TABLE + SQLiteManager.generateSQLFilter(query.get(1), null);
-			iter = SQLiteManager.select(sql).iterator();
-			while (iter.hasNext()) {
-				Map<String, String> property = iter.next();
-				if (exclusions.contains(property.get("path"))) {
-					excluded++;
-				} else {
-					propsR.put(property.get("key"), property);
-				}
-				queried++;
-			}
+			// streams the unexcluded properties of each side into its compact representation
+			long phase = Metrics.start();
+			CompareSide propsL = new CompareSide();
+			CompareSide propsR = new CompareSide(propsL);
+			int[] counts = new int[2];
+			fetch(query.get(0), propsL, counts);
+			fetch(query.get(1), propsR, counts);
+			queried += counts[0];
+			excluded += counts[1];
+			Metrics.time("compare.fetch", phase);
 
 			// compares sides of a query and adds to output table
-			tables.add(compare(propsL, propsR));
+			phase = Metrics.start();
+			if (mode == SUMMARY) {
+				Map<String, Integer> before = new HashMap<>(discrepancies);
+				compare(propsL, propsR);
+				String[] row = { formatFilter(query.get(0)), formatFilter(query.get(1)),
+						delta(before, "same"), delta(before, "key"), delta(before, "value"),
+						delta(before, "ignored") };
+				tables.getFirst().add(row);
+			} else {
+				tables.add(compare(propsL, propsR));
+			}
+			Metrics.time("compare.diff", phase);
+			Events.endCompare(event, query, this::formatFilter, queried - rows, false);
+			Metrics.time("compare.pair", start);
 
 		}
+		Metrics.count("compare.rows", queried);
+		Metrics.time("compare.total", started);
 
 		Map<String, Integer> stats = new HashMap<>();
 		stats.put("queried", queried);
 		stats.put("excluded", excluded);
+		stats.put("identical", identical);
 		return stats;
 	}
 
 	/**
-	 * Compares Documents and adds the comparison outcomes to the table.
+	 * Counts the distinct keys of one side of a query, less any excluded files.
+	 * 
+	 * @param filter
+	 *            the filter for one side of the query
+	 * @return the number of distinct keys
+	 */
+	private long countKeys(Map<String, String> filter) {
+		List<String> params = new ArrayList<>();
+		String where = where(filter, params);
+
+		// counts across files are not combined, so the keys of each file are merged instead
+		if (SQLiteManager.spansShards(filter)) {
+			Set<String> keys = new HashSet<>();
+			String sql = "SELECT DISTINCT key FROM " + SQL_TABLE + where;
+			for (Map<String, String> row : SQLiteManager.select(filter, sql, params.toArray(new String[0]))) {
+				keys.add(row.get("key"));
+			}
+			return keys.size();
+		}
+		String sql = "SELECT COUNT(DISTINCT key) AS keys FROM " + SQL_TABLE + where;
+		return Long.parseLong(SQLiteManager.select(filter, sql, params.toArray(new String[0])).get(0).get("keys"));
+	}
+
+	/**
+	 * Counts the same and ignored properties of a pair of identical queries without retrieving the
+	 * properties themselves. Each distinct key is a single property, just as in
+	 * {@link #compare(CompareSide, CompareSide)}, and the keys and locations of the properties on a
+	 * side are only retrieved if an ignore rule could apply to that side.
+	 * 
+	 * @param query
+	 *            the query pair {left filter, right filter}
+	 * @param keys
+	 *            the number of distinct keys on each side
+	 * @return an array containing the number of same properties and the number of ignored
+	 *         properties
+	 */
+	private int[] countIdentical(ArrayList<Map<String, String>> query, int keys) {
+
+		// a key is ignored if the rules ignore it on either side, just as in a full comparison
+		Set<String> ignored = new HashSet<>();
+		for (Map<String, String> filter : query) {
+			if (!rules.appliesWithin(filter)) {
+				continue;
+			}
+			List<String> params = new ArrayList<>();
+			String sql = "SELECT DISTINCT key, environment, fabric, node FROM " + SQL_TABLE + where(filter, params);
+			for (Map<String, String> property : SQLiteManager.select(filter, sql, params.toArray(new String[0]))) {
+				if (rules.isIgnored(property)) {
+					ignored.add(property.get("key"));
+				}
+			}
+		}
+		int[] counts = { keys - ignored.size(), ignored.size() };
+		return counts;
+	}
+
+	/**
+	 * Generates the SQL filter for one side of a query, less any excluded files, whose paths are
+	 * bound as parameters.
+	 * 
+	 * @param filter
+	 *            the filter for one side of the query
+	 * @param params
+	 *            the List to which the parameters of the filter are added, in order
+	 * @return a SQL command-style filter
+	 */
+	private String where(Map<String, String> filter, List<String> params) {
+		String where = SQLiteManager.generateSQLFilter(filter, null, params);
+		if (!exclusions.isEmpty()) {
+			where += (filter.isEmpty() ? " WHERE " : " AND ") + "path NOT IN "
+					+ SQLiteManager.generateSQLSet(exclusions, true, true);
+			params.addAll(exclusions);
+		}
+		return where;
+	}
+
+	/**
+	 * Streams the properties of one side of a query into its compact representation, skipping
+	 * excluded files. Whether each property is ignored is decided as it is read, so the location
+	 * of a property is only retrieved if an ignore rule could apply to that side.
+	 * 
+	 * @param filter
+	 *            the filter for one side of the query
+	 * @param side
+	 *            the compact representation the properties are added to
+	 * @param counts
+	 *            an array to which the number of queried and excluded properties are added
+	 */
+	private void fetch(Map<String, String> filter, CompareSide side, int[] counts) {
+		boolean ignorable = rules.appliesWithin(filter);
+		List<String> params = new ArrayList<>();
+		String sql = "SELECT key, value, path" + (ignorable ? ", environment, fabric, node" : "") + " FROM "
+				+ SQLiteManager.getTable(filter) + SQLiteManager.generateSQLFilter(filter, null, params);
+		SQLiteManager.selectEach(filter, sql, property -> {
+			String path = property.get("path");
+			if (exclusions.contains(path)) {
+				counts[1]++;
+			} else {
+				side.add(property.get("key"), property.get("value"), path, ignorable && rules.isIgnored(property));
+			}
+			counts[0]++;
+		}, params.toArray(new String[0]));
+	}
+
+	/**
+	 * Compares both sides of a query and adds the comparison outcomes to the table.
 	 * 
 	 * @param propsL
-	 *            a Map representing every property in the left side of the query--the key for each
-	 *            entry is the property key name to allow for hashing and efficient lookup and the
-	 *            value is the full property as a standard Map
+	 *            every property in the left side of the query, by key
 	 * @param propsR
-	 *            a Map representing every property in the right side of the query--the key for each
-	 *            entry is the property key name to allow for hashing and efficient lookup and the
-	 *            value is the full property as a standard Map
+	 *            every property in the right side of the query, by key, sharing the dictionaries
+	 *            of the left side
 	 * @return the resulting table as an ArrayList of String[] containing the entirety of a
-	 *         comparison between queries, with each String[] representing a CSV row
+	 *         comparison between queries (less any rows omitted by the report mode), with each
+	 *         String[] representing a CSV row
 	 */
-	private LinkedList<String[]> compare(Map<String, Map<String, String>> propsL,
-			Map<String, Map<String, String>> propsR) {
-
-		// generates key set
-		Set<String> keyAmalgam = new LinkedHashSet<>();
-		keyAmalgam.addAll(propsL.keySet());
-		keyAmalgam.addAll(propsR.keySet());
+	private LinkedList<String[]> compare(CompareSide propsL, CompareSide propsR) {
 
 		// sets up row information
 		LinkedList<String[]> table = new LinkedList<>();
 
-		for (String key : keyAmalgam) {
-
-			// finds appropriate property from the keyset
-			Map<String, String> propL = propsL.get(key);
-			Map<String, String> propR = propsR.get(key);
-
-			// copies property values to Strings
-			String pathL = propL != null ? propL.get("path") : "";
-			String pathR = propR != null ? propR.get("path") : "";
-			String keyL = propL != null ? key : "";
-			String keyR = propR != null ? key : "";
-			String valueL = propL != null ? propL.get("value") : "";
-			String valueR = propR != null ? propR.get("value") : "";
-
-			// compares and generates diff report
-			String keyStatus, valueStatus;
-			if (propL == null) {
-				keyStatus = valueStatus = "missing in left";
-				discrepancies.put("key", discrepancies.get("key") + 1);
-			} else if (propR == null) {
-				keyStatus = valueStatus = "missing in right";
-				discrepancies.put("key", discrepancies.get("key") + 1);
-			} else if (propL.get("ignore").equals("true") || propL.get("ignore").equals("true")) {
-				keyStatus = valueStatus = "ignored";
-				discrepancies.put("ignored", discrepancies.get("ignored") + 1);
-			} else if (propL.get("key").equals(propL.get("key")) && !valueL.equals(valueR)) {
-				keyStatus = "same";
-				valueStatus = "different";
-				discrepancies.put("value", discrepancies.get("value") + 1);
-			} else if (propL.get("key").equals(propL.get("key"))) {
-				keyStatus = valueStatus = "same";
-			} else {
-				keyStatus = valueStatus = "";
+		// walks the left keys and then the right-only keys instead of building a key union
+		for (int slot = 0; slot < propsL.size(); slot++) {
+			addRow(table, propsL, slot, propsR, propsR.find(propsL.keyId(slot)));
+		}
+		for (int slot = 0; slot < propsR.size(); slot++) {
+			if (propsL.find(propsR.keyId(slot)) < 0) {
+				addRow(table, propsL, -1, propsR, slot);
 			}
-			String[] row = { pathL, keyL, valueL, pathR, keyR, valueR, keyStatus, valueStatus };
-			table.add(row);
 		}
 		return table;
 	}
 
+	/**
+	 * Compares a single property across both sides of a query, updates the discrepancy statistics,
+	 * and adds a CSV row to the table unless the report mode omits it.
+	 * 
+	 * @param table
+	 *            the table being added to
+	 * @param propsL
+	 *            the left side of the query
+	 * @param slotL
+	 *            the slot of the left property, or -1 if missing in left
+	 * @param propsR
+	 *            the right side of the query
+	 * @param slotR
+	 *            the slot of the right property, or -1 if missing in right
+	 */
+	private void addRow(LinkedList<String[]> table, CompareSide propsL, int slotL, CompareSide propsR, int slotR) {
+
+		// compares and generates diff report
+		String keyStatus, valueStatus;
+		boolean discrepancy = true;
+		if (slotL < 0) {
+			keyStatus = valueStatus = "missing in left";
+			discrepancies.put("key", discrepancies.get("key") + 1);
+		} else if (slotR < 0) {
+			keyStatus = valueStatus = "missing in right";
+			discrepancies.put("key", discrepancies.get("key") + 1);
+		} else if (propsL.isIgnored(slotL) || propsR.isIgnored(slotR)) {
+			keyStatus = valueStatus = "ignored";
+			discrepancies.put("ignored", discrepancies.get("ignored") + 1);
+			discrepancy = false;
+		} else if (!propsL.sameValue(slotL, propsR, slotR)) {
+			keyStatus = "same";
+			valueStatus = "different";
+			discrepancies.put("value", discrepancies.get("value") + 1);
+		} else {
+			keyStatus = valueStatus = "same";
+			discrepancies.put("same", discrepancies.get("same") + 1);
+			discrepancy = false;
+		}
+
+		// same and ignored properties are only counted outside of full reports
+		if (mode == SUMMARY || mode == DIFF_ONLY && !discrepancy) {
+			return;
+		}
+
+		// copies property values to Strings
+		String pathL = slotL >= 0 ? propsL.path(slotL) : "";
+		String pathR = slotR >= 0 ? propsR.path(slotR) : "";
+		String keyL = slotL >= 0 ? propsL.key(slotL) : "";
+		String keyR = slotR >= 0 ? propsR.key(slotR) : "";
+		String valueL = slotL >= 0 ? propsL.value(slotL) : "";
+		String valueR = slotR >= 0 ? propsR.value(slotR) : "";
+
+		String[] row = { pathL, keyL, valueL, pathR, keyR, valueR, keyStatus, valueStatus };
+		table.add(row);
+	}
+
+	/**
+	 * Formats a query filter as a path, with wildcards for unspecified levels.
+	 * 
+	 * @param filter
+	 *            the query filter
+	 * @return the path representation of the filter
+	 */
+	private String formatFilter(Map<String, String> filter) {
+		String path = "";
+		int depth = 0;
+		for (int i = 0; i < genericPath.length; i++) {
+			if (filter.containsKey(genericPath[i])) {
+				depth = i + 1;
+			}
+		}
+		for (int i = 0; i < depth; i++) {
+			String level = filter.get(genericPath[i]);
+			path += (level != null ? level : "*") + (i < depth - 1 ? "/" : "");
+		}
+		if (filter.containsKey("extension")) {
+			path += (path.isEmpty() ? "" : "/") + "*." + filter.get("extension");
+		}
+		if (filter.containsKey("generation")) {
+			path += "@" + filter.get("generation");
+		}
+		return path;
+	}
+
+	/**
+	 * Computes how much a discrepancy statistic changed since a snapshot was taken.
+	 * 
+	 * @param before
+	 *            a snapshot of the discrepancy statistics
+	 * @param stat
+	 *            the name of the statistic
+	 * @return the change in the statistic, as a String for CSV output
+	 */
+	private String delta(Map<String, Integer> before, String stat) {
+		return Integer.toString(discrepancies.get(stat) - before.get(stat));
+	}
+
 	/**
 	 * Writes stored data to a CSV file with a user-specified name and directory.
 	 * 
@@ -386,10 +633,11 @@ public class QueryEngine {
 	 * @return a String detailing the results of the operation
 	 */
 	public String writeToCSV(String filename, String directory) {
-		if (tables.size() <= 1) {
+		if (tables.size() <= 1 && (tables.isEmpty() || tables.getFirst().size() <= 1)) {
 			return "[ERROR] Unable to write CSV because no queries were executed.";
 		}
 
+		long start = Metrics.start();
 		try {
 			String path = directory + "/" + filename + ".csv";
 			BufferedWriter writer = new BufferedWriter(new FileWriter(path, true));
@@ -406,12 +654,62 @@ public class QueryEngine {
 				}
 			}
 			writer.close();
+			Metrics.time("compare.write", start);
 			return null;
 		} catch (IOException e) {
 			return "[ERROR] Unable to write to CSV.";
 		}
 	}
 
+	/**
+	 * Writes stored data to a columnar binary report (see {@link ColumnarReport}) with a
+	 * user-specified name and directory. Summary counts are stored as integer columns and every
+	 * other column is dictionary-encoded.
+	 * 
+	 * @param filename
+	 *            the user-specified filename
+	 * @param directory
+	 *            the user-specified directory
+	 * @return a String detailing the results of the operation
+	 */
+	public String writeToColumnar(String filename, String directory) {
+		if (tables.size() <= 1 && (tables.isEmpty() || tables.getFirst().size() <= 1)) {
+			return "[ERROR] Unable to write report because no queries were executed.";
+		}
+
+		String[] header = tables.getFirst().getFirst();
+		byte[] types = new byte[header.length];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = mode == SUMMARY && i >= 2 ? ColumnarReport.INT : ColumnarReport.STRING;
+		}
+		Map<String, String> metadata = new LinkedHashMap<>();
+		metadata.put("name", filename);
+		metadata.put("mode", mode == SUMMARY ? "summary" : mode == DIFF_ONLY ? "diff-only" : "full");
+
+		long start = Metrics.start();
+		try {
+			File file = new File(directory + "/" + filename + "." + ColumnarReport.EXTENSION);
+			ColumnarReport report = new ColumnarReport(file, metadata, header, types);
+			boolean first = true;
+			for (LinkedList<String[]> table : tables) {
+				for (String[] row : table) {
+
+					// header is stored in the report's schema rather than as a row
+					if (first) {
+						first = false;
+						continue;
+					}
+					report.addRow(row);
+				}
+			}
+			report.close();
+			Metrics.time("compare.write", start);
+			return null;
+		} catch (IOException e) {
+			return "[ERROR] Unable to write report.";
+		}
+	}
+
 	/**
 	 * Creates a default name for the CSV file based on the lowest-level metadata provided in the
 	 * query.
@@ -1,6 +1,9 @@
 package queryModule;
 
 import java.util.*;
+import java.util.regex.*;
+
+import databaseModule.SearchIndex;
 import driver.SQLiteManager;
 
 /**
@@ -11,6 +14,11 @@ import driver.SQLiteManager;
  */
 public class QueryFunctions {
 
+	// pattern modes: substrings with `*` wildcards, regular expressions, or full-match globs
+	public static final int SUBSTRING = 0;
+	public static final int REGEX = 1;
+	public static final int GLOB = 2;
+
 	/**
 	 * Finds every key or value in the database that contains a user-given pattern.
 	 * 
@@ -21,6 +29,30 @@ public class QueryFunctions {
 	 * @return a Set of property keys or values that contain the pattern
 	 */
 	public static Set<String> grep(String pattern, int toggle) {
+		return grep(pattern, toggle, SUBSTRING);
+	}
+
+	/**
+	 * Finds every key or value in the database that matches a user-given pattern.
+	 * 
+	 * @param pattern
+	 *            the pattern being searched for
+	 * @param toggle
+	 *            0 for key, 1 for value
+	 * @param mode
+	 *            {@link #SUBSTRING} to find keys or values containing the pattern, {@link #REGEX}
+	 *            to find keys or values containing a match of the regular expression, or
+	 *            {@link #GLOB} to find keys or values entirely matching the glob
+	 * @return a Set of property keys or values that match the pattern
+	 * @throws java.util.regex.PatternSyntaxException
+	 *             if the pattern is not a valid regular expression
+	 */
+	public static Set<String> grep(String pattern, int toggle, int mode) {
+		if (mode != SUBSTRING) {
+			String regex = mode == GLOB ? globToRegex(pattern) : pattern;
+			Pattern.compile(regex); // validates before SQLite evaluates it
+			return SearchIndex.searchRegex(regex, toggle == 0 ? "key" : "value");
+		}
 
 		// determine search type (key or value)
 		String type = toggle == 0 ? "key" : "value";
@@ -30,17 +62,8 @@ public class QueryFunctions {
 			pattern = pattern.replace("*", "%");
 		}
 
-		// sets up SQL statement to get all unique matches
-		String sql = "SELECT DISTINCT " + type + " FROM " + SQLiteManager.getTable() + " WHERE " + type + " LIKE '%"
-				+ pattern + "%';";
-		Iterator<Map<String, String>> iter = SQLiteManager.select(sql).iterator();
-
-		// iterates through and formats all matches
-		Set<String> matches = new HashSet<>();
-		while (iter.hasNext()) {
-			matches.add(iter.next().get(type));
-		}
-		return matches;
+		// searches the trigram index rather than every property
+		return SearchIndex.search(pattern, type);
 	}
 
 	/**
@@ -56,10 +79,53 @@ public class QueryFunctions {
 	 *         key, value, and path of the matching property instance
 	 */
 	public static List<Map<String, String>> findProp(String pattern, String location, int toggle) {
+		return findProp(pattern, location, toggle, SUBSTRING);
+	}
+
+	/**
+	 * Queries the database for every key or value matching a user-given pattern and returns the
+	 * location(s) and value(s) of each matching property.
+	 * 
+	 * @param pattern
+	 *            the key or value being found, or a regular expression or glob matching it
+	 * @param location
+	 *            a specific path within which to find the key
+	 * @param toggle
+	 *            0 for key, 1 for value
+	 * @param mode
+	 *            {@link #SUBSTRING} for an exact key or value, else {@link #REGEX} or {@link #GLOB}
+	 *            as in {@link #grep(String, int, int)}
+	 * @return a List of Maps, each of which represents a single matching property and contains the
+	 *         key, value, and path of the matching property instance
+	 * @throws java.util.regex.PatternSyntaxException
+	 *             if the pattern is not a valid regular expression
+	 */
+	public static List<Map<String, String>> findProp(String pattern, String location, int toggle, int mode) {
 
 		// determine search type (key or value)
 		String type = toggle == 0 ? "key" : "value";
 
+		// resolves patterns to the matching terms first, then finds only those properties
+		if (mode != SUBSTRING) {
+			Set<String> terms = grep(pattern, toggle, mode);
+			if (terms.isEmpty()) {
+				return new LinkedList<>();
+			}
+			Map<String, String> filter = location != null ? SQLiteManager.generatePathFilter(location) : null;
+			List<String> params = new ArrayList<>();
+			String sql = "SELECT key, value, path FROM " + SQLiteManager.getTable()
+					+ SQLiteManager.generateSQLFilter(filter, null, params);
+			sql += (filter == null || filter.isEmpty() ? " WHERE " : " AND ") + type + " IN "
+					+ SQLiteManager.generateSQLSet(terms, true, true) + ";";
+			params.addAll(terms);
+			return SQLiteManager.select(filter, sql, params.toArray(new String[params.size()]));
+		}
+
+		// skips the property scan entirely if the key or value does not exist anywhere
+		if (!SearchIndex.contains(pattern, type)) {
+			return new LinkedList<>();
+		}
+
 		// sets up filter for given property
 		Map<String, String> filter = null;
 		filter = location != null ? SQLiteManager.generatePathFilter(location) : new LinkedHashMap<>();
@@ -67,8 +133,72 @@ public class QueryFunctions {
 
 		// sets up SQL statement to get all key/value/path for each match
 		String table = SQLiteManager.getTable();
-		String sql = "SELECT key, value, path FROM " + table + SQLiteManager.generateSQLFilter(filter, null) + ";";
-		return SQLiteManager.select(sql);
+		List<String> params = new ArrayList<>();
+		String sql = "SELECT key, value, path FROM " + table + SQLiteManager.generateSQLFilter(filter, null, params)
+				+ ";";
+		return SQLiteManager.select(filter, sql, params.toArray(new String[params.size()]));
+	}
+
+	/**
+	 * Translates a glob into an anchored regular expression. `*` matches any run of characters,
+	 * `?` matches any single character, and bracketed character classes match any one of their
+	 * characters or ranges. A class opening with `!` or `^` is negated, and a `]` right after the
+	 * opening is a member of the class rather than its end.
+	 * 
+	 * @param glob
+	 *            the glob
+	 * @return the equivalent regular expression
+	 */
+	public static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder("^");
+		boolean inClass = false;
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (inClass) {
+				inClass = c != ']';
+				if (inClass && c != '-' && !Character.isLetterOrDigit(c)) {
+					regex.append('\\'); // nested classes and intersections are not part of globs
+				}
+				regex.append(c);
+			} else if (c == '*') {
+				regex.append(".*");
+			} else if (c == '?') {
+				regex.append('.');
+			} else if (c == '[' && endOfClass(glob, i) != -1) {
+				regex.append(c);
+				if (glob.charAt(i + 1) == '!' || glob.charAt(i + 1) == '^') {
+					regex.append('^');
+					i++;
+				}
+				if (glob.charAt(i + 1) == ']') {
+					regex.append("\\]");
+					i++;
+				}
+				inClass = true;
+			} else if (Character.isLetterOrDigit(c)) {
+				regex.append(c);
+			} else {
+				regex.append('\\').append(c);
+			}
+		}
+		return regex.append('$').toString();
+	}
+
+	/**
+	 * Helper method that finds the `]` closing a bracketed character class of a glob.
+	 * 
+	 * @param glob
+	 *            the glob
+	 * @param start
+	 *            the index of the opening `[`
+	 * @return the index of the closing `]`, or -1 if the class is never closed
+	 */
+	private static int endOfClass(String glob, int start) {
+		int i = start + 1;
+		if (i < glob.length() && (glob.charAt(i) == '!' || glob.charAt(i) == '^')) {
+			i++;
+		}
+		return glob.indexOf(']', i + 1);
 	}
 
 }
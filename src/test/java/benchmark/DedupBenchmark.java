@@ -0,0 +1,94 @@
+package benchmark;
+
+import java.io.*;
+import java.util.*;
+
+import parser.AbstractParser;
+import parser.DirectoryParser;
+import parser.StringPool;
+
+/**
+ * Compares the memory retained by a parsed root with and without {@link parser.StringPool}. Not a
+ * unit test--run manually against any root directory:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; benchmark.DedupBenchmark &lt;root&gt;
+ * </pre>
+ *
+ * For each mode, the root is parsed and turned into one document per property, just as `populate`
+ * holds them before writing to the database, and the heap in use is measured after a full GC.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class DedupBenchmark {
+
+	/**
+	 * Parses the root with and without deduplication and prints the memory retained by each.
+	 *
+	 * @param args
+	 *            the root directory
+	 */
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: benchmark.DedupBenchmark <root directory>");
+			return;
+		}
+		File root = new File(args[0]);
+
+		System.out.println("mode\t\tproperties\tretained (MB)\tbytes per property");
+		for (boolean dedup : new boolean[] { false, true }) {
+			StringPool.clear();
+			StringPool.enable(dedup);
+			long before = used();
+			List<Map<String, String>> documents = parse(root);
+			long retained = used() - before;
+			System.out.println(String.format("%-12s\t%d\t\t%.1f\t\t%d", dedup ? "pooled" : "unpooled",
+					documents.size(), retained / 1048576.0, retained / Math.max(1, documents.size())));
+			documents.clear();
+		}
+		StringPool.enable(true);
+	}
+
+	/**
+	 * Parses a root into one document per property, with the same fields as `populate` stores.
+	 *
+	 * @param root
+	 *            the root directory
+	 * @return the documents
+	 */
+	private static List<Map<String, String>> parse(File root) {
+		DirectoryParser directory = new DirectoryParser(root);
+		directory.parseAll();
+		List<Map<String, String>> documents = new ArrayList<>();
+		for (AbstractParser parsedFile : directory.getParsedData()) {
+			if (parsedFile.isInternal()) {
+				continue;
+			}
+			Map<String, String> metadata = parsedFile.getMetadata();
+			for (Map.Entry<String, Object> property : parsedFile.getData().entrySet()) {
+				Map<String, String> document = new LinkedHashMap<>();
+				document.put("key", property.getKey());
+				document.put("value", StringPool.dedup(property.getValue().toString()));
+				document.putAll(metadata);
+				document.put("ignore", "false");
+				documents.add(document);
+			}
+		}
+		return documents;
+	}
+
+	/**
+	 * Returns the heap in use after a full GC.
+	 *
+	 * @return the heap in use, in bytes
+	 */
+	private static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,97 @@
+package benchmark;
+
+import java.io.*;
+import java.util.*;
+
+import databaseModule.SearchIndex;
+import driver.SQLiteManager;
+
+/**
+ * Benchmarks substring searches through {@link databaseModule.SearchIndex} against the full
+ * table scan `grep` previously ran. Not a unit test--run manually:
+ * 
+ * <pre>
+ * java -Drows=10000000 -cp target/classes:target/test-classes:&lt;dependencies&gt; benchmark.SearchBenchmark
+ * </pre>
+ * 
+ * The benchmark populates a separate database file (lighthouse-benchmark.db) with synthetic
+ * properties, which it deletes when finished.
+ * 
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class SearchBenchmark {
+
+	private static final int CHUNK = 100000;
+	private static final int RUNS = 5;
+
+	/**
+	 * Populates the benchmark database and times each search.
+	 * 
+	 * @param args
+	 *            unused
+	 */
+	public static void main(String[] args) {
+		String database = "lighthouse-benchmark.db";
+		System.setProperty("lighthouse.database", database);
+		int rows = Integer.getInteger("rows", 10000000);
+
+		SQLiteManager.connectToDatabase();
+		SQLiteManager.clear();
+
+		// roughly 20000 distinct keys and 100000 distinct values, spread over 1000 files
+		long start = System.currentTimeMillis();
+		for (int offset = 0; offset < rows; offset += CHUNK) {
+			List<Map<String, String>> chunk = new ArrayList<>(CHUNK);
+			for (int i = offset; i < Math.min(rows, offset + CHUNK); i++) {
+				String path = "env" + (i % 5) + "/fabric" + (i % 20) + "/node" + (i % 1000) + "/server.properties";
+				Map<String, String> property = new LinkedHashMap<>();
+				property.put("key", "service" + (i % 200) + "/setting/" + (i % 20000) + "/value");
+				property.put("value", "host-" + (i % 100000) + ".example.com");
+				property.put("path", path);
+				property.put("ignore", "false");
+				chunk.add(property);
+			}
+			SQLiteManager.insertBatch(chunk);
+			SearchIndex.add(chunk);
+		}
+		System.out.println("populated " + rows + " properties in " + (System.currentTimeMillis() - start) + " ms\n");
+
+		String[] patterns = { "setting/1999", "service42/", "host-99999", "example", "ting/7%/value" };
+		String[] types = { "key", "key", "value", "value", "key" };
+		System.out.println("pattern\t\t\ttype\tmatches\tscan (ms)\tindex (ms)");
+		for (int p = 0; p < patterns.length; p++) {
+			String sql = "SELECT DISTINCT " + types[p] + " FROM " + SQLiteManager.getTable() + " WHERE " + types[p]
+					+ " LIKE ?;";
+			long[] scan = new long[RUNS];
+			long[] index = new long[RUNS];
+			int matches = 0;
+			for (int r = 0; r < RUNS; r++) {
+				long t = System.nanoTime();
+				SQLiteManager.select(sql, "%" + patterns[p] + "%");
+				scan[r] = System.nanoTime() - t;
+				t = System.nanoTime();
+				matches = SearchIndex.search(patterns[p], types[p]).size();
+				index[r] = System.nanoTime() - t;
+			}
+			System.out.println(String.format("%-20s\t%s\t%d\t%.1f\t\t%.1f", patterns[p], types[p], matches,
+					median(scan) / 1e6, median(index) / 1e6));
+		}
+
+		new File(database).delete();
+	}
+
+	/**
+	 * Returns the median of a set of timings.
+	 * 
+	 * @param timings
+	 *            the timings
+	 * @return the median timing
+	 */
+	private static long median(long[] timings) {
+		long[] sorted = timings.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+}
@@ -0,0 +1,138 @@
+package databaseModuleTester;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import databaseModule.Catalog;
+import databaseModule.DbFunctions;
+import driver.SQLiteManager;
+import fixture.TempRoot;
+
+/**
+ * Tests {@link databaseModule.Catalog}. The POM runs this class a second time with the
+ * `lighthouse.shards` system property set, so that both the plain and the sharded counts are
+ * checked.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class CatalogTester {
+
+	private static final String[] SCOPES = { "environment", "fabric", "node" };
+
+	@Rule
+	public final TempRoot root = new TempRoot("lighthouse-catalog");
+
+	/**
+	 * Sets up the testbed with a root of three environments and populates the database with it.
+	 */
+	@Before
+	public void setup() throws IOException {
+		root.write("dev1/fabric1/node1/server.properties", "port=8080\nhost=localhost\n");
+		root.write("dev1/fabric1/node2/server.properties", "port=8081\nhost=localhost\n");
+		root.write("dev1/fabric2/node1/app.yaml", "app:\n  name: lighthouse\n  port: 9000\n");
+		root.write("dev2/fabric1/node1/server.properties", "port=8080\nuser=admin\n");
+		root.write("dev3/fabric1/node1/server.properties", "port=8080\n");
+		root.populate();
+		assertEquals(System.getProperty("lighthouse.shards") != null, SQLiteManager.isSharded());
+	}
+
+	/**
+	 * Checks every catalog row against counts computed from the database itself.
+	 */
+	private void check() {
+		Map<String, String> database = Catalog.getDatabase();
+		String files = SQLiteManager.getFileTable();
+		assertEquals(Long.toString(SQLiteManager.getSize()), database.get("properties"));
+		assertEquals(Integer.toString(SQLiteManager.getDistinct("key", null).size()), database.get("keys"));
+		assertEquals(SQLiteManager.select("SELECT COUNT(*) AS n FROM " + files + ";").get(0).get("n"),
+				database.get("files"));
+
+		for (String scope : SCOPES) {
+			Set<String> names = new TreeSet<>();
+			for (Map<String, String> file : SQLiteManager.select("SELECT path FROM " + files + ";")) {
+				String[] segments = file.get("path").split("/");
+				names.add(String.join("/", Arrays.copyOf(segments, Arrays.asList(SCOPES).indexOf(scope) + 1)));
+			}
+			List<Map<String, String>> rows = Catalog.get(scope);
+			Set<String> cataloged = new TreeSet<>();
+			for (Map<String, String> row : rows) {
+				cataloged.add(row.get("name"));
+				Map<String, String> filter = SQLiteManager.generatePathFilter(row.get("name"));
+				List<String> params = new ArrayList<>();
+				String where = SQLiteManager.generateSQLFilter(filter, null, params);
+				String[] bound = params.toArray(new String[0]);
+				Map<String, String> counts = SQLiteManager.select(filter, "SELECT COUNT(*) AS n, COUNT(DISTINCT key) "
+						+ "AS k FROM " + SQLiteManager.getTable() + where + ";", bound).get(0);
+				assertEquals(row.get("name"), counts.get("n"), row.get("properties"));
+				assertEquals(row.get("name"), counts.get("k"), row.get("keys"));
+				assertEquals(row.get("name"), SQLiteManager.select("SELECT COUNT(*) AS n FROM " + files + where + ";",
+						bound).get(0).get("n"), row.get("files"));
+			}
+			assertEquals(names, cataloged);
+		}
+
+		Map<String, String> extensions = new TreeMap<>();
+		for (Map<String, String> row : Catalog.get("extension")) {
+			extensions.put(row.get("name"), row.get("files"));
+		}
+		Map<String, String> expected = new TreeMap<>();
+		for (Map<String, String> row : SQLiteManager
+				.select("SELECT extension, COUNT(*) AS n FROM " + files + " GROUP BY extension;")) {
+			expected.put(row.get("extension"), row.get("n"));
+		}
+		assertEquals(expected, extensions);
+	}
+
+	/**
+	 * Tests that the catalog follows the database as an environment is deleted and populated
+	 * again.
+	 */
+	@Test
+	public void testRefresh() {
+		check();
+		assertEquals(3, Catalog.get("environment").size());
+
+		SQLiteManager.delete(SQLiteManager.generatePathFilter("dev2"));
+		check();
+		assertEquals(2, Catalog.get("environment").size());
+
+		DbFunctions.populate(root.getPath());
+		check();
+		assertEquals(3, Catalog.get("environment").size());
+		assertEquals("5", Catalog.getDatabase().get("files"));
+	}
+
+	/**
+	 * Tests that ignoring properties only changes the rule counts.
+	 */
+	@Test
+	public void testIgnore() {
+		Map<String, List<Map<String, String>>> before = new HashMap<>();
+		for (String scope : new String[] { "environment", "fabric", "node", "extension", "database" }) {
+			before.put(scope, Catalog.get(scope));
+		}
+		DbFunctions.ignore("dev1/fabric1", new HashSet<>(Arrays.asList("port")), true);
+		check();
+
+		for (Map.Entry<String, List<Map<String, String>>> scope : before.entrySet()) {
+			List<Map<String, String>> after = Catalog.get(scope.getKey());
+			assertEquals(scope.getValue().size(), after.size());
+			for (int i = 0; i < after.size(); i++) {
+				Map<String, String> row = new HashMap<>(after.get(i));
+				Map<String, String> old = new HashMap<>(scope.getValue().get(i));
+				String name = row.get("name");
+				boolean within = name.equals("") || name.equals("dev1") || name.equals("dev1/fabric1");
+				assertEquals(name, within && !scope.getKey().equals("extension") ? "1" : old.get("ignored"),
+						row.remove("ignored"));
+				old.remove("ignored");
+				assertEquals(name, old, row);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package databaseModuleTester;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.junit.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import databaseModule.ChangeFeed;
+import databaseModule.DbFunctions;
+import fixture.TempRoot;
+
+/**
+ * Tests {@link databaseModule.ChangeFeed}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class ChangeFeedTester {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+	private static final String PATH = "dev1/fabric/node/server.properties";
+
+	File log;
+	long logged;
+
+	/**
+	 * Notes the length of the change log, so that only the changes logged by a test are read.
+	 */
+	@Before
+	public void setup() {
+		assertNotNull(ChangeFeed.getLog());
+		log = new File(ChangeFeed.getLog());
+		logged = log.length();
+	}
+
+	/**
+	 * Reads the changes logged since the test began.
+	 *
+	 * @return each logged change
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Map<String, Object>> read() throws IOException {
+		List<Map<String, Object>> changes = new ArrayList<>();
+		if (!log.exists()) {
+			return changes;
+		}
+		byte[] bytes = Files.readAllBytes(log.toPath());
+		String appended = new String(bytes, (int) logged, bytes.length - (int) logged, StandardCharsets.UTF_8);
+		for (String line : appended.split("\n")) {
+			if (!line.isEmpty()) {
+				changes.add(mapper.readValue(line, Map.class));
+			}
+		}
+		return changes;
+	}
+
+	private static List<String> pair(String key, String value) {
+		return Arrays.asList(key, value);
+	}
+
+	/**
+	 * Tests that several pairs with the same key are joined pair by pair rather than collapsed.
+	 */
+	@Test
+	public void testDuplicateKeys() throws IOException {
+		try (ChangeFeed feed = new ChangeFeed(7)) {
+			feed.record(PATH, Arrays.asList(pair("port", "8080"), pair("port", "8081"), pair("host", "a")),
+					Arrays.asList(pair("port", "9090"), pair("user", "b"), pair("user", "c")));
+			feed.commit();
+			assertEquals(2, (int) feed.getCounts().get(ChangeFeed.ADDED));
+			assertEquals(1, (int) feed.getCounts().get(ChangeFeed.CHANGED));
+			assertEquals(2, (int) feed.getCounts().get(ChangeFeed.REMOVED));
+			assertEquals(new HashSet<>(Arrays.asList("8080", "8081", "a")), feed.getReplaced("value"));
+		}
+
+		List<Map<String, Object>> changes = read();
+		assertEquals(5, changes.size());
+		Map<String, Object> changed = changes.get(0);
+		assertEquals(7, changed.get("generation"));
+		assertEquals(ChangeFeed.CHANGED, changed.get("change"));
+		assertEquals("8080", changed.get("old"));
+		assertEquals("9090", changed.get("new"));
+		Set<String> removed = new HashSet<>();
+		for (Map<String, Object> change : changes) {
+			if (ChangeFeed.REMOVED.equals(change.get("change"))) {
+				removed.add(change.get("old").toString());
+			}
+		}
+		assertEquals(new HashSet<>(Arrays.asList("8081", "a")), removed);
+	}
+
+	/**
+	 * Tests that changes are only logged once committed.
+	 */
+	@Test
+	public void testUncommitted() throws IOException {
+		try (ChangeFeed feed = new ChangeFeed(8)) {
+			feed.record(PATH, Collections.<List<String>>emptyList(), Arrays.asList(pair("port", "8080")));
+			assertTrue(read().isEmpty());
+			assertEquals(1, (int) feed.getCounts().get(ChangeFeed.ADDED));
+		}
+		assertTrue(read().isEmpty());
+	}
+
+	/**
+	 * Tests that replacing a root logs the changed properties of its generation.
+	 */
+	@Test
+	public void testReplace() throws IOException {
+		try (TempRoot root = TempRoot.create("lighthouse-changes")) {
+			root.write(PATH, "port=8080\nhost=localhost\n");
+			root.populate();
+			logged = log.length();
+			root.write(PATH, "port=9090\nhost=localhost\n");
+			DbFunctions.replace(root.getPath());
+
+			List<Map<String, Object>> changes = read();
+			assertEquals(1, changes.size());
+			assertEquals(PATH, changes.get(0).get("path"));
+			assertEquals("port", changes.get(0).get("key"));
+			assertEquals(ChangeFeed.CHANGED, changes.get(0).get("change"));
+			assertEquals("9090", changes.get(0).get("new"));
+		}
+	}
+
+}
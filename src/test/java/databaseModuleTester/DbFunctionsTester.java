@@ -2,14 +2,18 @@ package databaseModuleTester;
 
 import static org.junit.Assert.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.apache.log4j.*;
 import org.junit.*;
 
 import databaseModule.DbFunctions;
 import databaseModule.DirTree;
+import databaseModule.IgnoreRules;
 import driver.SQLiteManager;
+import fixture.TempRoot;
 
 /**
  * Tests {@link databaseModule.DbFunctions}.
@@ -59,45 +63,43 @@ public class DbFunctionsTester {
 	public void testIgnore() {
 
 		Set<String> properties;
-		Iterator<Map<String, String>> iter;
-		Map<String, String> filter;
-		String sql;
+		IgnoreRules rules;
+		String sql = "SELECT * FROM properties;";
 
 		// adds all property keys to HashSet
 		properties = SQLiteManager.getDistinct("key", null);
 
 		// sets all properties to not be ignored and verifies none are being ignored
 		DbFunctions.ignore("", properties, false);
-		filter = new HashMap<>();
-		filter.put("ignore", "true");
-		sql = "SELECT * FROM properties" + SQLiteManager.generateSQLFilter(filter, null) + ";";
-		assertFalse(SQLiteManager.select(sql).iterator().hasNext());
+		rules = IgnoreRules.load();
+		for (Map<String, String> property : SQLiteManager.select(sql)) {
+			assertFalse(rules.isIgnored(property));
+		}
+		assertTrue(DbFunctions.getIgnored().isEmpty());
 
 		// sets all properties to be ignored and verifies all are being ignored
 		DbFunctions.ignore("", properties, true);
-		filter.put("ignore", "false");
-		sql = "SELECT * FROM properties" + SQLiteManager.generateSQLFilter(filter, null) + ";";
-		assertFalse(SQLiteManager.select(sql).iterator().hasNext());
-
-		// sets all properties within RWC-Dev/hazelcast to be ignored and verifies
-		DbFunctions.ignore("RWC-Dev/hazelcast", properties, true);
-		filter = new HashMap<>();
-		filter.put("environment", "RWC-Dev");
-		filter.put("fabric", "hazelcast");
-		filter.put("ignore", "false");
-		sql = "SELECT * FROM properties" + SQLiteManager.generateSQLFilter(filter, null);
-		assertFalse(SQLiteManager.select(sql).iterator().hasNext());
-		properties = DbFunctions.getIgnored();
-		for (String prop : properties) {
-			filter = new HashMap<>();
-			filter.put("key", prop);
-			sql = "SELECT * FROM properties" + SQLiteManager.generateSQLFilter(filter, null);
-			iter = SQLiteManager.select(sql).iterator();
-			while (iter.hasNext()) {
-				assertEquals(iter.next().get("ignore"), "true");
-			}
+		rules = IgnoreRules.load();
+		for (Map<String, String> property : SQLiteManager.select(sql)) {
+			assertTrue(rules.isIgnored(property));
+		}
+		assertEquals(DbFunctions.getIgnored(), properties);
+
+		// acknowledges all properties within RWC-Dev/hazelcast and verifies the narrower rule wins
+		DbFunctions.ignore("RWC-Dev/hazelcast", properties, false);
+		rules = IgnoreRules.load();
+		for (Map<String, String> property : SQLiteManager.select(sql)) {
+			boolean within = "RWC-Dev".equals(property.get("environment"))
+					&& "hazelcast".equals(property.get("fabric"));
+			assertEquals(rules.isIgnored(property), !within);
 		}
 
+		// ignoring at a broader location overrides the narrower rules again
+		DbFunctions.ignore("RWC-Dev", properties, true);
+		rules = IgnoreRules.load();
+		for (Map<String, String> property : SQLiteManager.select(sql)) {
+			assertTrue(rules.isIgnored(property));
+		}
 	}
 
 	/**
@@ -117,4 +119,141 @@ public class DbFunctionsTester {
 		assertEquals(size, 0);
 	}
 
+	/**
+	 * Tests {@link databaseModule.DbFunctions#replace(java.lang.String path)}: the environments in
+	 * the root are replaced as a whole while concurrent reads see either their old or their new
+	 * properties, and environments outside of the root are kept.
+	 */
+	@Test
+	public void testReplace() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (TempRoot replaced = TempRoot.create("lighthouse-replace")) {
+			replaced.write("dev1/fabric/node/a.properties", "k1=1\nk2=2\n");
+			replaced.write("dev2/fabric/node/a.properties", "k1=1\n");
+			replaced.populate();
+
+			replaced.write("dev1/fabric/node/a.properties", "k1=3\nk2=4\nk3=5\n");
+			replaced.delete("dev2");
+
+			Map<String, String> scope = SQLiteManager.generatePathFilter("dev1");
+			String sql = "SELECT COUNT(*) AS n FROM " + SQLiteManager.getTable() + " WHERE environment = 'dev1';";
+			List<Future<Set<String>>> reads = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				reads.add(executor.submit(() -> {
+					Set<String> seen = new HashSet<>();
+					for (int j = 0; j < 50; j++) {
+						seen.add(SQLiteManager.select(scope, sql).get(0).get("n"));
+					}
+					return seen;
+				}));
+			}
+			assertEquals(3, DbFunctions.replace(replaced.getPath()));
+			for (Future<Set<String>> read : reads) {
+				Set<String> seen = read.get(30, TimeUnit.SECONDS);
+				seen.removeAll(Arrays.asList("2", "3"));
+				assertTrue(seen.isEmpty());
+			}
+
+			assertEquals("3", SQLiteManager.select(scope, sql).get(0).get("n"));
+			assertEquals(new HashSet<>(Arrays.asList("3", "4", "5")), SQLiteManager.getDistinct("value",
+					SQLiteManager.generatePathFilter("dev1/fabric/node/a.properties")));
+			assertEquals(new HashSet<>(Arrays.asList("dev1", "dev2")), SQLiteManager.getDistinct("environment",
+					Collections.<String, String>emptyMap()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests {@link databaseModule.DbFunctions#sync(File, Collection, Collection)} with changed,
+	 * created, and deleted files and directories, including .ignore files.
+	 */
+	@Test
+	public void testSync() throws Exception {
+		try (TempRoot synced = TempRoot.create("lighthouse-sync")) {
+			synced.write("dev1/fabric/node/a.properties", "k1=1\nk2=2\n");
+			synced.write("dev1/fabric/node/b.properties", "k1=1\n");
+			synced.write("dev1/fabric/other/a.properties", "k1=1\n");
+			synced.write("dev1/fabric/.ignore", "k2\n");
+			synced.populate();
+			assertFalse(IgnoreRules.getSources("dev1").isEmpty());
+
+			// a changed file, a created file, a deleted file, a deleted directory, and an .ignore file
+			synced.write("dev1/fabric/node/a.properties", "k1=3\n");
+			synced.write("dev1/fabric/node/c.properties", "k4=4\n");
+			synced.file("dev1/fabric/node/b.properties").delete();
+			synced.file("dev1/fabric/other/a.properties").delete();
+			synced.file("dev1/fabric/other").delete();
+			synced.file("dev1/fabric/.ignore").delete();
+			List<File> changed = Arrays.asList(synced.file("dev1/fabric/node/a.properties"),
+					synced.file("dev1/fabric/node/c.properties"));
+			List<String> removed = Arrays.asList("dev1/fabric/node/b.properties", "dev1/fabric/other",
+					"dev1/fabric/.ignore");
+			assertEquals(2, DbFunctions.sync(synced.getRoot(), changed, removed));
+
+			String sql = "SELECT path FROM " + SQLiteManager.getFileTable() + " ORDER BY path;";
+			List<String> paths = new ArrayList<>();
+			for (Map<String, String> file : SQLiteManager.select(sql)) {
+				paths.add(file.get("path"));
+			}
+			assertEquals(Arrays.asList("dev1/fabric/node/a.properties", "dev1/fabric/node/c.properties"), paths);
+			assertEquals(new HashSet<>(Arrays.asList("3")), SQLiteManager.getDistinct("value",
+					SQLiteManager.generatePathFilter("dev1/fabric/node/a.properties")));
+			assertEquals(2, SQLiteManager.getSize());
+			assertTrue(IgnoreRules.getSources("dev1").isEmpty());
+			assertTrue(SQLiteManager.getStructure().hasKey("dev1/fabric/node/c.properties"));
+			assertFalse(SQLiteManager.getStructure().hasKey("dev1/fabric/other/a.properties"));
+		}
+	}
+
+	/**
+	 * Tests {@link databaseModule.DbFunctions#sync(File, Collection, Collection)} with a renamed
+	 * directory, reported only as the directory being deleted, whose .ignore file moves with it.
+	 */
+	@Test
+	public void testSyncRenamedDirectory() throws Exception {
+		try (TempRoot synced = TempRoot.create("lighthouse-rename")) {
+			synced.write("dev1/fabric/node/a.properties", "k1=1\n");
+			synced.write("dev1/moved/node/a.properties", "k1=1\nk2=2\n");
+			synced.write("dev1/moved/.ignore", "k2\n");
+			synced.populate();
+			assertEquals(new TreeSet<>(Arrays.asList("dev1/moved/.ignore")), IgnoreRules.getSources("dev1"));
+
+			assertTrue(synced.file("dev1/moved").renameTo(synced.file("dev1/renamed")));
+			List<File> changed = Arrays.asList(synced.file("dev1/renamed/node/a.properties"),
+					synced.file("dev1/renamed/.ignore"));
+			assertEquals(2, DbFunctions.sync(synced.getRoot(), changed, Arrays.asList("dev1/moved")));
+
+			assertEquals(new TreeSet<>(Arrays.asList("dev1/renamed/.ignore")), IgnoreRules.getSources("dev1"));
+			String sql = "SELECT path FROM " + SQLiteManager.getFileTable() + " ORDER BY path;";
+			List<String> paths = new ArrayList<>();
+			for (Map<String, String> file : SQLiteManager.select(sql)) {
+				paths.add(file.get("path"));
+			}
+			assertEquals(Arrays.asList("dev1/fabric/node/a.properties", "dev1/renamed/node/a.properties"), paths);
+		}
+	}
+
+	/**
+	 * Tests {@link databaseModule.DbFunctions#replace(String, Collection)} with an environment
+	 * whose directory was deleted, as when re-syncing a watched root.
+	 */
+	@Test
+	public void testReplaceDeletedEnvironment() throws Exception {
+		try (TempRoot replaced = TempRoot.create("lighthouse-resync")) {
+			replaced.write("dev1/fabric/node/a.properties", "k1=1\n");
+			replaced.write("dev2/fabric/node/a.properties", "k1=1\n");
+			replaced.write("dev2/fabric/.ignore", "k1\n");
+			replaced.populate();
+
+			replaced.write("dev3/fabric/node/a.properties", "k1=1\nk2=2\n");
+			replaced.delete("dev2");
+			assertEquals(3, DbFunctions.replace(replaced.getPath(), Arrays.asList("dev1", "dev2")));
+			assertEquals(new HashSet<>(Arrays.asList("dev1", "dev3")), SQLiteManager.getDistinct("environment",
+					Collections.<String, String>emptyMap()));
+			assertTrue(IgnoreRules.getSources("dev2").isEmpty());
+			assertFalse(SQLiteManager.getStructure().hasKey("dev2/fabric/node/a.properties"));
+		}
+	}
+
 }
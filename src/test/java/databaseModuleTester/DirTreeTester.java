@@ -125,4 +125,120 @@ public class DirTreeTester {
 		assertEquals(tree.countNodes(tree.getRoot(), 4, false), 81);
 	}
 
+	/**
+	 * Tests {@link databaseModule.DirTree#hasKey(java.lang.String)} on files, directories, and
+	 * partial or malformed paths.
+	 */
+	@Test
+	public void testHasKey() {
+		assertTrue(tree.hasKey("dev2/fabric1/node0/file2"));
+		assertTrue(tree.hasKey("dev2/fabric1"));
+		assertTrue(tree.hasKey("dev2/fabric1/"));
+		assertTrue(tree.hasKey("file"));
+		assertFalse(tree.hasKey("dev2/fabric1/node0/file3"));
+		assertFalse(tree.hasKey("fabric1"));
+		assertFalse(tree.hasKey("dev0/file"));
+	}
+
+	/**
+	 * Tests that the cached counts follow DirNodes being added and removed at every depth,
+	 * including inserts beneath existing branches and removals of whole branches.
+	 */
+	@Test
+	public void testCountsFollowChanges() {
+
+		// inserting beneath an existing branch only counts the new DirNodes, once
+		tree.insert("dev1/fabric2/node3/file0");
+		tree.insert("dev1/fabric2/node3/file0");
+		assertEquals(tree.countNodes(tree.getRoot(), 3, true), 28);
+		assertEquals(tree.countNodes(tree.getRoot(), 4, false), 82);
+		assertEquals(tree.getSize(), paths.size() + 1);
+
+		// removing a whole environment removes every level beneath it
+		assertTrue(tree.remove("dev1"));
+		assertEquals(tree.countNodes(tree.getRoot(), 1, false), 3);
+		assertEquals(tree.countNodes(tree.getRoot(), 2, true), 6);
+		assertEquals(tree.countNodes(tree.getRoot(), 3, false), 18);
+		assertEquals(tree.countNodes(tree.getRoot(), 4, false), 54);
+		assertEquals(tree.getSize(), paths.size() - 28);
+
+		// removing every path leaves nothing counted
+		for (String path : paths) {
+			tree.remove(path);
+		}
+		for (int level = 1; level <= 4; level++) {
+			assertEquals(tree.countNodes(tree.getRoot(), level, false), 0);
+		}
+		assertEquals(tree.getSize(), 0);
+	}
+
+	/**
+	 * Tests {@link databaseModule.DirTree#remove(java.lang.String)}.
+	 */
+	@Test
+	public void testRemove() {
+
+		// removes a single file
+		assertTrue(tree.remove("dev0/fabric0/node0/file0"));
+		assertFalse(tree.hasKey("dev0/fabric0/node0/file0"));
+		assertEquals(tree.countNodes(tree.getRoot(), 4, false), 80);
+		assertEquals(tree.getSize(), paths.size() - 1);
+
+		// removes a branch, along with the directory it leaves empty
+		assertTrue(tree.remove("dev1/fabric2/file"));
+		for (int k = 0; k < 3; k++) {
+			assertTrue(tree.remove("dev1/fabric2/node" + k));
+		}
+		assertFalse(tree.hasKey("dev1/fabric2"));
+		assertEquals(tree.countNodes(tree.getRoot(), 2, true), 8);
+		assertEquals(tree.countNodes(tree.getRoot(), 3, true), 24);
+		assertEquals(tree.countNodes(tree.getRoot(), 4, false), 71);
+		assertEquals(tree.getSize(), paths.size() - 11);
+
+		// verifies removing nonexistent paths
+		assertFalse(tree.remove("dev1/fabric2"));
+		assertFalse(tree.remove("BENG-Dev"));
+
+		// reinserted paths are counted again
+		tree.insert("dev1/fabric2/node0/file0");
+		assertEquals(tree.countNodes(tree.getRoot(), 2, true), 9);
+		assertEquals(tree.countNodes(tree.getRoot(), 4, false), 72);
+	}
+
+	/**
+	 * Tests {@link databaseModule.DirTree#list(java.lang.String, int)}.
+	 */
+	@Test
+	public void testList() {
+
+		// verifies depth-first order, buffers, and child-count annotations
+		Iterator<String> lines = tree.list("dev0/fabric0", 2);
+		assertEquals(lines.next(), "fabric0 (3)");
+		assertEquals(lines.next(), " | node0 (3)");
+		assertEquals(lines.next(), " |  | file0");
+		int count = 3;
+		while (lines.hasNext()) {
+			lines.next();
+			count++;
+		}
+		assertEquals(count, 13);
+
+		// verifies levels, including the entire tree
+		assertFalse(tree.list("dev0", 0).next().contains(" | "));
+		assertEquals(tree.list("", 1).next(), "dev0 (3)");
+		count = 0;
+		for (lines = tree.list("", -1); lines.hasNext(); lines.next()) {
+			count++;
+		}
+		assertEquals(count, 3 + 9 + 27 + 81 + 2);
+
+		// verifies throwing IllegalArgumentException
+		try {
+			tree.list("BENG-Dev", 1);
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);
+		}
+	}
+
 }
@@ -0,0 +1,110 @@
+package databaseModuleTester;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import databaseModule.Fingerprint;
+import driver.SQLiteManager;
+import fixture.TempRoot;
+import queryModule.QueryEngine;
+
+/**
+ * Tests {@link databaseModule.Fingerprint} and its use to skip identical pairs in
+ * {@link queryModule.QueryEngine}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class FingerprintTester {
+
+	@Rule
+	public final TempRoot root = new TempRoot("lighthouse-fingerprint");
+
+	/**
+	 * Sets up the testbed with a root in which each key of the `swap` environments is in two files
+	 * with swapped values, and populates the database with it.
+	 */
+	@Before
+	public void setup() throws IOException {
+		root.write("swap1/fabric/node/a.properties", "k=1\nx=same\n");
+		root.write("swap1/fabric/node/b.properties", "k=2\n");
+		root.write("swap2/fabric/node/a.properties", "k=2\nx=same\n");
+		root.write("swap2/fabric/node/b.properties", "k=1\n");
+		root.write("same1/fabric/node/a.properties", "k=1\nx=same\n");
+		root.write("same1/fabric/node/o'brien.properties", "y=1\n");
+		root.write("same2/fabric/node/a.properties", "x=same\nk=1\n");
+		root.write("same2/fabric/node/o'brien.properties", "y=2\n");
+		root.populate();
+	}
+
+	/**
+	 * Tests that fingerprints do not depend on the order of the properties.
+	 */
+	@Test
+	public void testOf() {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		properties.put("a", "1");
+		properties.put("b", "2");
+		Map<String, Object> reversed = new LinkedHashMap<>();
+		reversed.put("b", "2");
+		reversed.put("a", "1");
+		assertEquals(Fingerprint.of(properties), Fingerprint.of(reversed));
+		assertNotEquals(Fingerprint.hash("a", "1"), Fingerprint.hash("a1", ""));
+		assertNotEquals(Fingerprint.hash("a", "1"), Fingerprint.hash("a", "2"));
+	}
+
+	/**
+	 * Tests {@link databaseModule.Fingerprint#ofScope(java.util.Map, java.util.Set)}, including
+	 * excluded files.
+	 */
+	@Test
+	public void testOfScope() {
+		long[] left = Fingerprint.ofScope(SQLiteManager.generatePathFilter("swap1"), Collections.<String>emptySet());
+		long[] right = Fingerprint.ofScope(SQLiteManager.generatePathFilter("swap2"), Collections.<String>emptySet());
+		assertEquals(3, left[0]);
+		assertEquals(left[1], right[1]);
+
+		Set<String> excluded = Collections.singleton("same1/fabric/node/o'brien.properties");
+		left = Fingerprint.ofScope(SQLiteManager.generatePathFilter("same1"), excluded);
+		assertEquals(2, left[0]);
+		assertEquals(1, left[2]);
+	}
+
+	/**
+	 * Tests that pairs whose fingerprints match are only skipped if no key is in several files,
+	 * since a comparison keeps a single property per key.
+	 */
+	@Test
+	public void testDuplicateKeys() {
+		QueryEngine comparator = new QueryEngine();
+		comparator.setMode(QueryEngine.SUMMARY);
+		comparator.addQuery("swap1", "swap2");
+		Map<String, Integer> stats = comparator.run();
+		assertEquals(0, (int) stats.get("identical"));
+		assertEquals(1, (int) comparator.getDiscrepancies().get("value"));
+		assertEquals(1, (int) comparator.getDiscrepancies().get("same"));
+	}
+
+	/**
+	 * Tests that pairs are skipped once excluded files leave
+	 * them identical.
+	 */
+	@Test
+	public void testExcludedIdentical() {
+		QueryEngine comparator = new QueryEngine();
+		comparator.setMode(QueryEngine.DIFF_ONLY);
+		comparator.addQuery("same1", "same2");
+		comparator.exclude("same1/fabric/node/o'brien.properties");
+		comparator.exclude("same2/fabric/node/o'brien.properties");
+		Map<String, Integer> stats = comparator.run();
+		assertEquals(1, (int) stats.get("identical"));
+		assertEquals(2, (int) stats.get("excluded"));
+		assertEquals(2, (int) comparator.getDiscrepancies().get("same"));
+		assertEquals(0, (int) comparator.getDiscrepancies().get("value"));
+	}
+
+}
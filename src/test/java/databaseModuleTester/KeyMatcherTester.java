@@ -0,0 +1,91 @@
+package databaseModuleTester;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.*;
+
+import databaseModule.KeyMatcher;
+
+/**
+ * Tests {@link databaseModule.KeyMatcher}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class KeyMatcherTester {
+
+	/**
+	 * Tests exact keys and single-segment wildcards.
+	 */
+	@Test
+	public void testGlob() {
+		KeyMatcher matcher = new KeyMatcher(Arrays.asList("server.dr.mongo.host.port", "server.*.port", "lfs/*/key1*"));
+		assertTrue(matcher.matches("server.dr.mongo.host.port"));
+		assertTrue(matcher.matches("server.http.port"));
+		assertTrue(matcher.matches("server..port"));
+		assertFalse(matcher.matches("server.dr.http.port"));
+		assertTrue(matcher.matches("lfs/ingestion/key1"));
+		assertTrue(matcher.matches("lfs/ingestion/key10"));
+		assertFalse(matcher.matches("lfs/ingestion/key1/a"));
+		assertFalse(matcher.matches("lfs/ingestion/key2"));
+		assertFalse(matcher.matches("server.dr.mongo.host"));
+	}
+
+	/**
+	 * Tests wildcards that match across segments.
+	 */
+	@Test
+	public void testGlobstar() {
+		KeyMatcher matcher = new KeyMatcher(Arrays.asList("**.password", "export/**/size"));
+		assertTrue(matcher.matches("server.db.password"));
+		assertTrue(matcher.matches("a/b.password"));
+		assertFalse(matcher.matches("password"));
+		assertFalse(matcher.matches("server.password.old"));
+		assertTrue(matcher.matches("export/output/chunk/size"));
+		assertTrue(matcher.matches("export//size"));
+		assertFalse(matcher.matches("export/size"));
+	}
+
+	/**
+	 * Tests regular expressions, which must match the entire key.
+	 */
+	@Test
+	public void testRegex() {
+		KeyMatcher matcher = new KeyMatcher(Arrays.asList("regex:.*\\.(host|port)", "regex:key[0-9]+"));
+		assertTrue(matcher.matches("server.mongo.host"));
+		assertTrue(matcher.matches("server.mongo.port"));
+		assertFalse(matcher.matches("server.mongo.hostname"));
+		assertTrue(matcher.matches("key42"));
+		assertFalse(matcher.matches("key"));
+		try {
+			KeyMatcher.validate("regex:(");
+			fail("Invalid regular expression should not validate.");
+		} catch (PatternSyntaxException e) {
+		}
+		KeyMatcher.validate("(");
+	}
+
+	/**
+	 * Tests many patterns at once against the equivalent individual patterns.
+	 */
+	@Test
+	public void testMany() {
+		List<String> patterns = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			patterns.add("group" + i + ".*.key" + (i % 7));
+			patterns.add("**.suffix" + i);
+		}
+		KeyMatcher matcher = new KeyMatcher(patterns);
+		for (int i = 0; i < 1000; i += 37) {
+			assertTrue(matcher.matches("group" + i + ".x.key" + (i % 7)));
+			assertFalse(matcher.matches("group" + i + ".x.key" + ((i + 1) % 7)));
+			assertTrue(matcher.matches("a.b/c.suffix" + i));
+			assertFalse(matcher.matches("a.b/c.suffix" + i + "x"));
+		}
+		assertFalse(new KeyMatcher(new ArrayList<String>()).matches("anything"));
+	}
+
+}
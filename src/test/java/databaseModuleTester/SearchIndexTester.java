@@ -0,0 +1,132 @@
+package databaseModuleTester;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import databaseModule.DbFunctions;
+import databaseModule.SearchIndex;
+import fixture.TempRoot;
+
+/**
+ * Tests {@link databaseModule.SearchIndex}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class SearchIndexTester {
+
+	@Rule
+	public final TempRoot root = new TempRoot("lighthouse-search");
+
+	/**
+	 * Sets up the testbed with a small root and populates the database with it.
+	 */
+	@Before
+	public void setup() throws IOException {
+		root.write("dev1/fabric/node/a.properties", "server/port=8080\nserver/host=localhost\n");
+		root.write("dev1/fabric/node/b.properties", "client/port=8080\nclient/timeout=30\n");
+		root.write("dev2/fabric/node/a.properties", "server/port=9090\n");
+		root.populate();
+	}
+
+	/**
+	 * Tests {@link databaseModule.SearchIndex#trigrams(java.lang.String)}.
+	 */
+	@Test
+	public void testTrigrams() {
+		assertEquals(new ArrayList<>(Arrays.asList("por", "ort")), new ArrayList<>(SearchIndex.trigrams("PORT")));
+		assertEquals(new ArrayList<>(Arrays.asList("aaa")), new ArrayList<>(SearchIndex.trigrams("aaaaa")));
+		assertTrue(SearchIndex.trigrams("ab").isEmpty());
+	}
+
+	/**
+	 * Tests {@link databaseModule.SearchIndex#search(java.lang.String, java.lang.String)} and
+	 * {@link databaseModule.SearchIndex#contains(java.lang.String, java.lang.String)}.
+	 */
+	@Test
+	public void testSearch() {
+		assertEquals(new HashSet<>(Arrays.asList("server/port", "client/port")), SearchIndex.search("port", "key"));
+		assertEquals(new HashSet<>(Arrays.asList("server/port", "server/host")), SearchIndex.search("SERVER/%", "key"));
+		assertEquals(new HashSet<>(Arrays.asList("8080", "9090", "30")), SearchIndex.search("0", "value"));
+		assertEquals(Collections.singleton("client/timeout"), SearchIndex.search("t_me", "key"));
+		assertTrue(SearchIndex.search("nothing", "key").isEmpty());
+
+		assertTrue(SearchIndex.contains("server/port", "key"));
+		assertFalse(SearchIndex.contains("server/port", "value"));
+		assertFalse(SearchIndex.contains("server", "key"));
+	}
+
+	/**
+	 * Tests {@link databaseModule.SearchIndex#searchRegex(java.lang.String, java.lang.String)}.
+	 */
+	@Test
+	public void testSearchRegex() {
+		assertEquals(new HashSet<>(Arrays.asList("server/port", "client/port")),
+				SearchIndex.searchRegex("^[a-z]+/port$", "key"));
+		assertEquals(Collections.singleton("9090"), SearchIndex.searchRegex("9+0", "value"));
+		assertEquals(Collections.singleton("localhost"), SearchIndex.searchRegex("local|remote", "value"));
+	}
+
+	/**
+	 * Tests that overwriting and removing files prunes only the terms no property uses anymore.
+	 */
+	@Test
+	public void testPrune() throws IOException {
+		root.write("dev1/fabric/node/a.properties", "server/address=localhost\n");
+		root.file("dev1/fabric/node/b.properties").delete();
+		DbFunctions.replace(root.getPath());
+
+		assertFalse(SearchIndex.contains("server/host", "key"));
+		assertFalse(SearchIndex.contains("client/timeout", "key"));
+		assertFalse(SearchIndex.contains("8080", "value"));
+		assertFalse(SearchIndex.contains("30", "value"));
+		assertTrue(SearchIndex.contains("server/address", "key"));
+		assertTrue(SearchIndex.contains("localhost", "value"));
+		assertTrue(SearchIndex.contains("9090", "value"));
+		assertEquals(Collections.singleton("server/port"), SearchIndex.search("port", "key"));
+	}
+
+	/**
+	 * Tests {@link databaseModule.SearchIndex#literals(String)}.
+	 */
+	@Test
+	public void testLiterals() {
+		assertEquals(Arrays.asList("server/", "ort"), SearchIndex.literals("server/p?ort"));
+		assertEquals(Arrays.asList("a.b"), SearchIndex.literals("a\\.b"));
+		assertEquals(Arrays.asList("x*y"), SearchIndex.literals("\\Qx*y\\E"));
+		assertEquals(Collections.emptyList(), SearchIndex.literals("abc|def"));
+		assertEquals(Collections.emptyList(), SearchIndex.literals("(?i)abc"));
+
+		// character codes, backreferences, and properties are not taken literally
+		assertEquals(Arrays.asList("BC"), SearchIndex.literals("\\x41BC"));
+		assertEquals(Arrays.asList("ab"), SearchIndex.literals("\\x{1F600}ab"));
+		assertEquals(Arrays.asList("port", "x"), SearchIndex.literals("port\\u003dx"));
+		assertEquals(Arrays.asList("a", "bc"), SearchIndex.literals("a\\0101bc"));
+		assertEquals(Arrays.asList("bc"), SearchIndex.literals("\\cAbc"));
+		assertEquals(Arrays.asList("x", "abc"), SearchIndex.literals("x\\k<n>abc"));
+		assertEquals(Arrays.asList("abc"), SearchIndex.literals("\\p{Lu}abc"));
+		assertEquals(Arrays.asList("abc"), SearchIndex.literals("\\pLabc"));
+		assertEquals(Arrays.asList("ab"), SearchIndex.literals("(x)\\12ab"));
+
+		// nested and intersected classes end only at their outermost bracket
+		assertEquals(Arrays.asList("xyz"), SearchIndex.literals("[a-z&&[^b]]xyz"));
+		assertEquals(Arrays.asList("xyz"), SearchIndex.literals("[]a]xyz"));
+		assertEquals(Arrays.asList("xyz"), SearchIndex.literals("[^]a]xyz"));
+		assertEquals(Arrays.asList("xyz"), SearchIndex.literals("[\\]a]xyz"));
+
+		// every extracted literal is required by the regular expression
+		String[] regexes = { "\\x41BC", "port\\u003dx", "a\\0101bc", "[a-z&&[^b]]xyz", "\\p{Lu}abc" };
+		String[] inputs = { "ABC", "port=x", "aAbc", "axyz", "Qabc" };
+		for (int i = 0; i < regexes.length; i++) {
+			assertTrue(inputs[i].matches(regexes[i]));
+			for (String literal : SearchIndex.literals(regexes[i])) {
+				assertTrue(inputs[i].contains(literal));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package driverTester;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import driver.AccessServer;
+import driver.SQLiteManager;
+import fixture.TempRoot;
+
+/**
+ * Tests {@link driver.AccessServer}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class AccessServerTester {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+	private static final String FIND = "/find?pattern=server%2Fport";
+
+	@Rule
+	public final TempRoot root = new TempRoot("lighthouse-server");
+	HttpServer server;
+
+	/**
+	 * Sets up the testbed with a root containing a file whose name needs quoting in SQL, populates
+	 * the database with it, and starts the server on a free port.
+	 */
+	@Before
+	public void setup() throws IOException {
+		root.write("dev1/fabric/node/o'brien.properties", "server/port=8080\n");
+		root.write("dev2/fabric/node/o'brien.properties", "server/port=9090\n");
+		root.populate();
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		server = AccessServer.serve(port);
+	}
+
+	/**
+	 * Stops the server.
+	 */
+	@After
+	public void teardown() {
+		server.stop(0);
+	}
+
+	/**
+	 * Sends a GET request to the server.
+	 *
+	 * @param query
+	 *            the path and query string of the request, with each parameter URL-encoded
+	 * @return the status, as the "status" entry, and the parsed JSON response
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> get(String query) throws IOException {
+		URL url = new URL("http://localhost:" + server.getAddress().getPort() + query);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			Map<String, Object> response = new LinkedHashMap<>(mapper.readValue(in, Map.class));
+			response.put("status", status);
+			return response;
+		}
+	}
+
+	private static String encode(String param) throws UnsupportedEncodingException {
+		return URLEncoder.encode(param, "UTF-8");
+	}
+
+	/**
+	 * Tests that paths containing quotes are matched as is rather than breaking the SQL.
+	 */
+	@Test
+	public void testQuotedPaths() throws IOException {
+		Map<String, Object> found = get(FIND + "&location=" + encode("dev1/fabric/node/o'brien.properties"));
+		assertEquals(200, found.get("status"));
+		assertEquals(1, ((List<?>) found.get("properties")).size());
+
+		found = get(FIND + "&mode=glob&location=" + encode("dev1/fabric/node/o'brien.properties"));
+		assertEquals(200, found.get("status"));
+		assertEquals(1, ((List<?>) found.get("properties")).size());
+
+		Map<String, Object> compared = get("/compare?mode=summary&path=" + encode("dev1/fabric/node/o'brien.properties")
+				+ "&path=" + encode("dev2/fabric/node/o'brien.properties") + "&exclude=" + encode("dev1/fab'ric"));
+		assertEquals(200, compared.get("status"));
+	}
+
+	/**
+	 * Tests that malformed requests are rejected without stopping the server.
+	 */
+	@Test
+	public void testMalformedRequests() throws IOException {
+		assertEquals(400, get(FIND + "&location=" + encode("a/b/c/d/e")).get("status"));
+		assertEquals(400, get("/find?pattern=" + encode("(") + "&mode=regex").get("status"));
+		assertEquals(400, get("/compare?path=" + encode("/")).get("status"));
+		assertEquals(400, get("/compare?path=dev1&path=dev2&exclude=" + encode("a/b/c/d/e")).get("status"));
+		assertEquals(200, get(FIND + "&location=" + encode("dev1'; DROP TABLE properties; --")).get("status"));
+
+		// the server and database are still up
+		Map<String, Object> found = get(FIND);
+		assertEquals(200, found.get("status"));
+		assertEquals(2, ((List<?>) found.get("properties")).size());
+	}
+
+	/**
+	 * Tests that a failed read throws rather than exiting, and leaves the database readable.
+	 */
+	@Test
+	public void testFailedRead() throws IOException {
+		try {
+			SQLiteManager.select("SELECT * FROM missing;");
+			fail();
+		} catch (SQLiteManager.DatabaseException e) {
+			assertNotNull(e.getCause());
+		}
+		assertEquals(200, get("/info").get("status"));
+	}
+
+}
@@ -2,9 +2,12 @@ package driverTester;
 
 import static org.junit.Assert.*;
 
+import java.io.*;
+
 import org.junit.*;
 
 import driver.Access;
+import fixture.TempRoot;
 
 /**
  * Tests {@link driver.Access}.
@@ -98,4 +101,65 @@ public class AccessTester {
 		expected[2] = "query compare RWC-Dev/storm/*/*.properties";
 		assertArrayEquals(Access.parseStatements(command), expected);
 	}
+
+	/**
+	 * Tests {@link driver.Access#execute(java.lang.String)}: failed commands are counted, and only
+	 * `exit` and `quit` stop the application.
+	 */
+	@Test
+	public void testExecute() throws IOException {
+		Access.interactive = false;
+		try (TempRoot root = createRoot()) {
+			assertTrue(Access.runBatch(new String[] { "db", "populate", root.getPath() }));
+			int failures = Access.getFailures();
+			assertTrue(Access.execute("db info"));
+			assertTrue(Access.execute("query grep port"));
+			assertEquals(failures, Access.getFailures());
+
+			assertTrue(Access.execute("query frobnicate"));
+			assertTrue(Access.execute("db populate " + root.file("missing").getPath()));
+			assertTrue(Access.execute("query compare a/b/c/d/e f"));
+			assertTrue(Access.execute("home frobnicate"));
+			assertEquals(failures + 4, Access.getFailures());
+
+			assertFalse(Access.execute("exit"));
+			assertFalse(Access.execute("quit"));
+		}
+	}
+
+	/**
+	 * Tests {@link driver.Access#runBatch(java.lang.String[])}: a batch fails if any of its commands
+	 * fails, even if it exits afterwards, and stops at `exit`.
+	 */
+	@Test
+	public void testRunBatch() throws IOException {
+		Access.interactive = false;
+		try (TempRoot root = createRoot(); TempRoot scripts = TempRoot.create("lighthouse-batch")) {
+			File script = scripts.write("batch.txt",
+					"# populates, then queries\ndb populate " + root.getPath() + "\nquery grep port; db info\n");
+			assertTrue(Access.runBatch(new String[] { "--batch", script.getPath() }));
+
+			scripts.write("batch.txt", "query frobnicate\ndb info\n");
+			assertFalse(Access.runBatch(new String[] { "--batch", script.getPath() }));
+			assertEquals(1, Access.getFailures());
+
+			scripts.write("batch.txt", "query frobnicate; exit\n");
+			assertFalse(Access.runBatch(new String[] { "--batch", script.getPath() }));
+
+			// commands after `exit` are not run
+			scripts.write("batch.txt", "db info; exit; query frobnicate\n");
+			assertTrue(Access.runBatch(new String[] { "--batch", script.getPath() }));
+
+			assertFalse(Access.runBatch(new String[] { "--batch", root.file("missing").getPath() }));
+			assertFalse(Access.runBatch(new String[] { "--batch" }));
+			assertFalse(Access.runBatch(new String[] { "query", "frobnicate" }));
+		}
+	}
+
+	private TempRoot createRoot() throws IOException {
+		TempRoot root = TempRoot.create("lighthouse-access");
+		root.write("dev1/fabric/node/server.properties", "server/port=8080\n");
+		return root;
+	}
+
 }
@@ -0,0 +1,209 @@
+package driverTester;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import driver.ConnectionPool;
+
+/**
+ * Tests {@link driver.ConnectionPool}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class ConnectionPoolTester {
+
+	File file;
+	ConnectionPool pool;
+
+	/**
+	 * Sets up the testbed with a single table in a fresh database.
+	 */
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("lighthouse-pool", ".db");
+		pool = new ConnectionPool(file.getPath(), 3);
+		pool.write(connection -> connection.createStatement().execute("CREATE TABLE t (n integer);"));
+	}
+
+	/**
+	 * Closes the pool and deletes the database.
+	 */
+	@After
+	public void teardown() {
+		pool.close();
+		for (String suffix : new String[] { "", "-wal", "-shm" }) {
+			new File(file.getPath() + suffix).delete();
+		}
+	}
+
+	private int count() throws SQLException {
+		return pool.read(connection -> {
+
+			// statements must be closed, else the connection keeps reading from the same snapshot
+			try (Statement statement = connection.createStatement()) {
+				ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM t;");
+				rs.next();
+				return rs.getInt(1);
+			}
+		});
+	}
+
+	/**
+	 * Tests that committed writes are visible to reads, and that failed transactions are rolled
+	 * back.
+	 */
+	@Test
+	public void testTransaction() throws Exception {
+		pool.transaction(connection -> connection.createStatement().executeUpdate("INSERT INTO t VALUES (1);"));
+		assertEquals(1, count());
+
+		try {
+			pool.transaction(connection -> {
+				connection.createStatement().executeUpdate("INSERT INTO t VALUES (2);");
+				assertEquals(2, count()); // reads within a write see its uncommitted changes
+				throw new SQLException("fails");
+			});
+			fail("Transaction should have failed.");
+		} catch (SQLException e) {
+		}
+		assertEquals(1, count());
+	}
+
+	/**
+	 * Tests that reads on other threads see the last committed state while a write is ongoing.
+	 */
+	@Test
+	public void testConcurrentReads() throws Exception {
+		pool.write(connection -> connection.createStatement().executeUpdate("INSERT INTO t VALUES (1);"));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			int during = pool.transaction(connection -> {
+				connection.createStatement().executeUpdate("INSERT INTO t VALUES (2);");
+				List<Future<Integer>> reads = new ArrayList<>();
+				for (int i = 0; i < 16; i++) {
+					reads.add(executor.submit(this::count));
+				}
+				int seen = -1;
+				for (Future<Integer> read : reads) {
+					try {
+						seen = read.get(10, TimeUnit.SECONDS);
+						assertEquals(1, seen);
+					} catch (InterruptedException | ExecutionException | TimeoutException e) {
+						throw new SQLException(e);
+					}
+				}
+				return seen;
+			});
+			assertEquals(1, during);
+			assertEquals(2, count());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that actions wait for the transaction they are registered in to commit, and are dropped
+	 * if it rolls back.
+	 */
+	@Test
+	public void testAfterCommit() throws Exception {
+		List<String> actions = new ArrayList<>();
+		pool.afterCommit(() -> actions.add("outside"));
+		assertEquals(Arrays.asList("outside"), actions);
+
+		pool.transaction(connection -> {
+			pool.afterCommit(() -> actions.add("committed"));
+			pool.transaction(nested -> {
+				pool.afterCommit(() -> actions.add("nested"));
+				return null;
+			});
+			assertEquals(1, actions.size());
+			return null;
+		});
+		assertEquals(Arrays.asList("outside", "committed", "nested"), actions);
+
+		try {
+			pool.transaction(connection -> {
+				pool.afterCommit(() -> actions.add("rolled back"));
+				throw new SQLException("fails");
+			});
+			fail("Transaction should have failed.");
+		} catch (SQLException e) {
+		}
+		pool.transaction(connection -> null);
+		assertEquals(3, actions.size());
+	}
+
+	/**
+	 * Tests that the data version changes with commits by other connections only.
+	 */
+	@Test
+	public void testDataVersion() throws Exception {
+		long version = pool.getDataVersion();
+		pool.transaction(connection -> connection.createStatement().executeUpdate("INSERT INTO t VALUES (1);"));
+		assertEquals(version, pool.getDataVersion());
+
+		try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+				Statement stmt = other.createStatement()) {
+			stmt.executeUpdate("INSERT INTO t VALUES (2);");
+		}
+		assertNotEquals(version, pool.getDataVersion());
+	}
+
+	/**
+	 * Tests that a closed pool refuses reads with a retryable error, including reads that were
+	 * waiting for a connection when it closed, rather than reopening the file.
+	 */
+	@Test
+	public void testClose() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			CountDownLatch reading = new CountDownLatch(3);
+			CountDownLatch release = new CountDownLatch(1);
+			List<Future<Integer>> reads = new ArrayList<>();
+			for (int i = 0; i < 6; i++) {
+				reads.add(executor.submit(() -> pool.read(connection -> {
+					reading.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						throw new SQLException(e);
+					}
+					return 1;
+				})));
+			}
+			reading.await(10, TimeUnit.SECONDS);
+			Future<?> closing = executor.submit(pool::close);
+			Thread.sleep(100);
+			release.countDown();
+			closing.get(10, TimeUnit.SECONDS);
+
+			// the reads holding a connection finish, while the waiting reads are refused
+			int finished = 0;
+			for (Future<Integer> read : reads) {
+				try {
+					finished += read.get(10, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof SQLTransientConnectionException);
+				}
+			}
+			assertTrue(finished >= 3);
+		} finally {
+			executor.shutdown();
+		}
+
+		try {
+			count();
+			fail("Reads should fail once the pool is closed.");
+		} catch (SQLTransientConnectionException e) {
+		}
+	}
+
+}
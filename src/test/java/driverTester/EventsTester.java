@@ -0,0 +1,62 @@
+package driverTester;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+
+import driver.Events;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.*;
+
+/**
+ * Tests {@link driver.Events}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class EventsTester {
+
+	/**
+	 * Tests that events are recorded with their fields while a recording is running.
+	 */
+	@Test
+	public void testRecording() throws Exception {
+		assertTrue(Events.isAvailable());
+		Path dump = Files.createTempFile("lighthouse-events", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("lighthouse.Parse").withoutThreshold();
+			recording.enable("lighthouse.Statement").withoutThreshold();
+			recording.start();
+			Events.endParse(Events.beginParse(), new File("dev1/fabric/node/server.properties"), String.class, 3);
+			Events.endStatement(Events.beginStatement(), "SELECT * FROM properties WHERE key = 'port';", 1);
+			recording.stop();
+			recording.dump(dump);
+
+			Map<String, RecordedEvent> events = new HashMap<>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+				events.put(event.getEventType().getName(), event);
+			}
+			assertEquals("dev1/fabric/node/server.properties".replace('/', File.separatorChar),
+					events.get("lighthouse.Parse").getString("path"));
+			assertEquals("String", events.get("lighthouse.Parse").getString("parser"));
+			assertEquals(3, events.get("lighthouse.Parse").getInt("properties"));
+			assertEquals(1, events.get("lighthouse.Statement").getLong("rows"));
+		} finally {
+			Files.delete(dump);
+		}
+	}
+
+	/**
+	 * Tests that ending an event that was never started does nothing.
+	 */
+	@Test
+	public void testNullHandle() {
+		Events.endStore(null, "dev1/fabric/node/server.properties", 1, 1);
+		Events.endCompare(null, null, null, 0, false);
+	}
+
+}
@@ -0,0 +1,74 @@
+package driverTester;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import driver.Metrics;
+
+/**
+ * Tests {@link driver.Metrics}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class MetricsTester {
+
+	/**
+	 * Disables and clears metrics after each test.
+	 */
+	@After
+	public void teardown() {
+		Metrics.enable(false);
+		Metrics.reset();
+	}
+
+	/**
+	 * Tests that nothing is collected while metrics are disabled.
+	 */
+	@Test
+	public void testDisabled() {
+		Metrics.enable(false);
+		long start = Metrics.start();
+		assertEquals(0, start);
+		Metrics.time("timer", start);
+		Metrics.count("counter", 1);
+		assertTrue(Metrics.isEmpty());
+	}
+
+	/**
+	 * Tests timers, counters, and rates.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSnapshot() {
+		Metrics.enable(true);
+		for (int i = 0; i < 100; i++) {
+			Metrics.time("x.total", Metrics.start() - 1000000);
+		}
+		Metrics.count("x.rows", 500);
+
+		Map<String, Object> snapshot = Metrics.snapshot();
+		Map<String, Object> timer = (Map<String, Object>) ((Map<String, Object>) snapshot.get("timers")).get("x.total");
+		assertEquals(100L, timer.get("count"));
+		double p50 = (double) timer.get("p50_ms");
+		assertTrue(p50 >= 0.94 && p50 <= (double) timer.get("max_ms"));
+		assertEquals(500L, (long) ((Map<String, Long>) snapshot.get("counters")).get("x.rows"));
+		long rate = ((Map<String, Long>) snapshot.get("rates")).get("x.rows/s");
+		assertTrue(rate > 0 && rate <= 5000);
+	}
+
+	/**
+	 * Tests that statements differing only in their literals have the same shape.
+	 */
+	@Test
+	public void testShape() {
+		assertEquals("SELECT * FROM properties WHERE (environment = ?) AND (valid_to > ?)",
+				Metrics.shape("SELECT * FROM properties WHERE (environment = 'dev1') AND (valid_to > 3);"));
+		assertEquals("SELECT key FROM t WHERE key IN (?, ...)", Metrics.shape("SELECT key FROM t WHERE key IN ('a', 'b''c', 'd')"));
+		assertEquals("INSERT INTO t (a, b) VALUES (?, ...)", Metrics.shape("INSERT INTO t (a, b) VALUES (?, ?);"));
+	}
+
+}
@@ -2,11 +2,18 @@ package driverTester;
 
 import static org.junit.Assert.*;
 
+import java.io.*;
+import java.sql.*;
+import java.time.LocalDate;
 import java.util.*;
 
 import org.junit.*;
 
+import databaseModule.ChangeFeed;
+import databaseModule.DbFunctions;
+import databaseModule.DirTree;
 import driver.SQLiteManager;
+import fixture.TempRoot;
 
 /**
  * Tests {@link driver.SQLiteManager}.
@@ -127,6 +134,156 @@ public class SQLiteManagerTester {
 		expected.put("fabric", "hazelcast");
 		expected.put("extension", "properties");
 		assertEquals(SQLiteManager.generatePathFilter(path), expected);
+
+		// verifies that an `@` not followed by a version is part of the path
+		path = "RWC-Dev/hazelcast@old";
+		expected = new HashMap<>();
+		expected.put("environment", "RWC-Dev");
+		expected.put("fabric", "hazelcast@old");
+		assertEquals(SQLiteManager.generatePathFilter(path), expected);
+
+		// verifies that only versioned paths are resolved against the generations
+		path = "RWC-Dev@-1";
+		expected = new HashMap<>();
+		expected.put("environment", "RWC-Dev@-1");
+		assertEquals(SQLiteManager.generatePathFilter(path), expected);
+
+		// verifies that paths deeper than a file are rejected
+		try {
+			SQLiteManager.generatePathFilter("RWC-Dev/hazelcast/node/file.properties/extra");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests {@link driver.SQLiteManager#resolveGeneration(java.lang.String)} and versioned paths.
+	 */
+	@Test
+	public void testResolveGeneration() throws IOException {
+		try (TempRoot root = TempRoot.create("lighthouse-generations")) {
+			root.write("dev1/fabric/node/server.properties", "port=8080\n");
+			root.populate();
+			root.write("dev1/fabric/node/server.properties", "port=9090\n");
+			DbFunctions.replace(root.getPath());
+			List<Map<String, String>> ids = SQLiteManager.select("SELECT id FROM generations ORDER BY id;");
+			assertEquals(2, ids.size());
+			long first = Long.parseLong(ids.get(0).get("id"));
+			long latest = Long.parseLong(ids.get(1).get("id"));
+
+			// numbers, offsets from the latest generation, and dates
+			assertEquals(first, (long) SQLiteManager.resolveGeneration(Long.toString(first)));
+			assertEquals(latest, (long) SQLiteManager.resolveGeneration("-0"));
+			assertEquals(first, (long) SQLiteManager.resolveGeneration("-1"));
+			assertEquals(latest, (long) SQLiteManager.resolveGeneration(LocalDate.now().plusDays(1).toString()));
+			assertNull(SQLiteManager.resolveGeneration("old"));
+			for (String version : new String[] { Long.toString(latest + 1), "-2", "1999-01-01" }) {
+				try {
+					SQLiteManager.resolveGeneration(version);
+					fail();
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+			}
+
+			// versioned paths select the history table
+			Map<String, String> filter = SQLiteManager.generatePathFilter("dev1@-1", true);
+			assertEquals(Long.toString(first), filter.get("generation"));
+			assertEquals(SQLiteManager.getHistoryTable(), SQLiteManager.getTable(filter));
+			List<String> params = new ArrayList<>();
+			String sql = "SELECT value FROM " + SQLiteManager.getTable(filter)
+					+ SQLiteManager.generateSQLFilter(filter, null, params) + ";";
+			assertEquals("8080", SQLiteManager.select(filter, sql, params.toArray(new String[0])).get(0).get("value"));
+			assertFalse(SQLiteManager.generatePathFilter("dev1@-1").containsKey("generation"));
+		}
+	}
+
+	/**
+	 * Tests that the cached directory structure is rebuilt once the file table is changed by
+	 * another connection, as by another process, and is otherwise kept.
+	 */
+	@Test
+	public void testStructure() throws IOException, SQLException {
+		try (TempRoot root = TempRoot.create("lighthouse-structure")) {
+			for (String env : new String[] { "dev1", "dev2" }) {
+				root.write(env + "/fabric/node/server.properties", "port=8080\n");
+			}
+			root.populate();
+			DirTree structure = SQLiteManager.getStructure();
+			assertTrue(structure.hasKey("dev2/fabric/node/server.properties"));
+			assertSame(structure, SQLiteManager.getStructure());
+
+			String database = System.getProperty("lighthouse.database", "lighthouse.db");
+			try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + database);
+					Statement stmt = other.createStatement()) {
+				stmt.executeUpdate("DELETE FROM " + SQLiteManager.getFileTable() + " WHERE path LIKE 'dev2/%';");
+			}
+			structure = SQLiteManager.getStructure();
+			assertFalse(structure.hasKey("dev2/fabric/node/server.properties"));
+			assertTrue(structure.hasKey("dev1/fabric/node/server.properties"));
+		}
+	}
+
+	/**
+	 * Tests that the cached directory structure follows the file table only once a transaction
+	 * commits, and is left as it was when the transaction rolls back.
+	 */
+	@Test
+	public void testTransactionRollback() throws IOException {
+		String removed = "dev1/fabric/node/server.properties";
+		String added = "dev2/fabric/node/client.properties";
+		try (TempRoot root = TempRoot.create("lighthouse-rollback")) {
+			root.write(removed, "port=8080\n");
+			root.populate();
+			assertTrue(SQLiteManager.getStructure().hasKey(removed));
+
+			Map<String, String> row = new HashMap<>();
+			String[] segments = added.split("/");
+			row.put("path", added);
+			row.put("environment", segments[0]);
+			row.put("fabric", segments[1]);
+			row.put("node", segments[2]);
+			row.put("filename", segments[3]);
+			row.put("extension", "properties");
+			row.put("properties", "1");
+			row.put("fingerprint", "0");
+			Map<String, String> property = new HashMap<>(row);
+			property.remove("properties");
+			property.remove("fingerprint");
+			property.put("key", "port");
+			property.put("value", "9090");
+			property.put("ignore", "false");
+			Map<String, List<Map<String, String>>> properties = Collections.singletonMap(added,
+					Collections.singletonList(property));
+			Runnable work = () -> {
+				try (ChangeFeed feed = new ChangeFeed(SQLiteManager.newGeneration())) {
+					SQLiteManager.removeFiles(Collections.singleton(removed), feed);
+					SQLiteManager.replaceFiles(Collections.singletonList(row), properties, feed);
+				}
+
+				// the changes are not reflected until they are committed
+				assertTrue(SQLiteManager.getStructure().hasKey(removed));
+				assertFalse(SQLiteManager.getStructure().hasKey(added));
+			};
+
+			try {
+				SQLiteManager.transaction(Arrays.asList("dev1", "dev2"), () -> {
+					work.run();
+					throw new IllegalStateException("fails");
+				});
+				fail();
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			assertTrue(SQLiteManager.getStructure().hasKey(removed));
+			assertFalse(SQLiteManager.getStructure().hasKey(added));
+			assertEquals(1, SQLiteManager.select("SELECT path FROM " + SQLiteManager.getFileTable() + ";").size());
+
+			SQLiteManager.transaction(Arrays.asList("dev1", "dev2"), work);
+			assertFalse(SQLiteManager.getStructure().hasKey(removed));
+			assertTrue(SQLiteManager.getStructure().hasKey(added));
+		}
 	}
 
 	/**
@@ -0,0 +1,156 @@
+package driverTester;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.*;
+import java.util.*;
+
+import org.junit.*;
+
+import driver.ConnectionPool;
+import driver.Shards;
+
+/**
+ * Tests {@link driver.Shards}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class ShardsTester {
+
+	File directory;
+	Shards shards;
+
+	/**
+	 * Sets up the testbed with an empty shard directory.
+	 */
+	@Before
+	public void setup() throws Exception {
+		directory = Files.createTempDirectory("lighthouse-shards").toFile();
+		shards = new Shards(directory.getPath(), 2);
+	}
+
+	/**
+	 * Drops every shard and deletes the directory.
+	 */
+	@After
+	public void teardown() {
+		shards.dropAll();
+		shards.close();
+		directory.delete();
+	}
+
+	/**
+	 * Tests that shards are only created when asked to, each in a file of its own with a properties
+	 * table, and are found again by a new shard set.
+	 */
+	@Test
+	public void testGet() throws SQLException {
+		assertNull(shards.get("dev1", false));
+		assertTrue(shards.getEnvironments().isEmpty());
+
+		ConnectionPool shard = shards.get("dev1", true);
+		assertSame(shard, shards.get("dev1", false));
+		assertTrue(shards.getFile("dev1").isFile());
+		shard.write(connection -> connection.createStatement()
+				.executeUpdate("INSERT INTO properties (key, environment) VALUES ('k', 'dev1');"));
+		shards.get("dev2", true);
+		assertEquals(Arrays.asList("dev1", "dev2"), new ArrayList<>(shards.getEnvironments()));
+
+		// a new shard set discovers the existing shard files
+		shards.close();
+		shards = new Shards(directory.getPath(), 2);
+		assertEquals(2, shards.getEnvironments().size());
+		assertEquals(1, count(shards.get("dev1", false)));
+	}
+
+	/**
+	 * Tests that a staged shard is swapped in for the old shard, and that a discarded one leaves
+	 * the old shard as it was.
+	 */
+	@Test
+	public void testSwap() throws SQLException {
+		ConnectionPool shard = shards.get("dev1", true);
+		shard.write(connection -> connection.createStatement()
+				.executeUpdate("INSERT INTO properties (key, environment) VALUES ('old', 'dev1');"));
+
+		// readers keep seeing the old shard while the staged one is loaded
+		ConnectionPool staging = shards.stage("dev1");
+		assertSame(staging, shards.getStaged("dev1"));
+		assertTrue(shards.getStagingFile("dev1").isFile());
+		staging.write(connection -> connection.createStatement()
+				.executeUpdate("INSERT INTO properties (key) VALUES ('new'), ('new');"));
+		assertEquals(1, count(shards.get("dev1", false)));
+
+		shards.swap("dev1");
+		assertNull(shards.getStaged("dev1"));
+		assertFalse(shards.getStagingFile("dev1").exists());
+		assertEquals(2, count(shards.get("dev1", false)));
+
+		shards.stage("dev1").write(connection -> connection.createStatement()
+				.executeUpdate("DELETE FROM properties;"));
+		shards.discard("dev1");
+		assertFalse(shards.getStagingFile("dev1").exists());
+		assertEquals(2, count(shards.get("dev1", false)));
+	}
+
+	/**
+	 * Tests that a staging file left by a shard set that stopped before its swap is swapped in by
+	 * another shard set, write-ahead log included, and that reads holding the old shard find the
+	 * new one.
+	 */
+	@Test
+	public void testSwapLeftover() throws SQLException {
+		ConnectionPool shard = shards.get("dev1", true);
+		shards.stage("dev1").write(connection -> connection.createStatement()
+				.executeUpdate("INSERT INTO properties (key) VALUES ('new'), ('new');"));
+		shards.close();
+		assertTrue(shards.getStagingFile("dev1").isFile());
+
+		shards = new Shards(directory.getPath(), 2);
+		shards.swap("dev1");
+		assertFalse(shards.getStagingFile("dev1").exists());
+		assertEquals(2, count(shards.get("dev1", false)));
+
+		// a swapped out shard refuses reads, and is looked up again
+		ConnectionPool current = shards.get("dev1", false);
+		try {
+			count(shard);
+			fail("Reads should fail once the shard is closed.");
+		} catch (SQLTransientConnectionException e) {
+		}
+		assertSame(current, shards.reopen(shard));
+		assertNull(shards.reopen(current));
+
+		// a swap already finished by another shard set leaves the shard as it is
+		shards.swap("dev1");
+		assertEquals(2, count(shards.get("dev1", false)));
+	}
+
+	private int count(ConnectionPool shard) throws SQLException {
+		return shard.read(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM properties;");
+				rs.next();
+				return rs.getInt(1);
+			}
+		});
+	}
+
+	/**
+	 * Tests that dropping a shard deletes its file without affecting other shards.
+	 */
+	@Test
+	public void testDrop() throws SQLException {
+		shards.get("dev1", true);
+		shards.get("dev2", true);
+		assertTrue(shards.drop("dev1"));
+		assertFalse(shards.getFile("dev1").exists());
+		assertNull(shards.get("dev1", false));
+		assertEquals(Collections.singleton("dev2"), shards.getEnvironments());
+		assertFalse(shards.drop("dev1"));
+	}
+
+}
@@ -0,0 +1,136 @@
+package fixture;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Comparator;
+
+import org.junit.rules.ExternalResource;
+
+import databaseModule.DbFunctions;
+import driver.SQLiteManager;
+
+/**
+ * A temporary root directory for tests that populate the database from files they write. As a
+ * {@link org.junit.Rule}, it is created before each test; otherwise, it is created by
+ * {@link #create(String)} and closed with try-with-resources. Either way, the database is cleared
+ * and the root deleted afterwards.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class TempRoot extends ExternalResource implements Closeable {
+
+	private final String prefix;
+	private File root;
+
+	/**
+	 * Creates a root to be used as a rule.
+	 *
+	 * @param prefix
+	 *            the prefix of the name of the temporary directory
+	 */
+	public TempRoot(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Creates a root to be closed by the caller.
+	 *
+	 * @param prefix
+	 *            the prefix of the name of the temporary directory
+	 * @return the created root
+	 */
+	public static TempRoot create(String prefix) throws IOException {
+		TempRoot root = new TempRoot(prefix);
+		root.before();
+		return root;
+	}
+
+	@Override
+	protected void before() throws IOException {
+		root = Files.createTempDirectory(prefix).toFile();
+	}
+
+	@Override
+	protected void after() {
+		try {
+			close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Clears the database and deletes the root.
+	 */
+	@Override
+	public void close() throws IOException {
+		SQLiteManager.clear();
+		delete("");
+	}
+
+	/**
+	 * @return the root directory
+	 */
+	public File getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return the path of the root directory
+	 */
+	public String getPath() {
+		return root.getPath();
+	}
+
+	/**
+	 * @param path
+	 *            a path relative to the root
+	 * @return the file at the path
+	 */
+	public File file(String path) {
+		return new File(root, path);
+	}
+
+	/**
+	 * Writes a file, creating its parent directories.
+	 *
+	 * @param path
+	 *            the path of the file, relative to the root
+	 * @param content
+	 *            the content of the file
+	 * @return the written file
+	 */
+	public File write(String path, String content) throws IOException {
+		File file = file(path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes("UTF-8"));
+		return file;
+	}
+
+	/**
+	 * Deletes a file or a directory and everything in it.
+	 *
+	 * @param path
+	 *            the path to delete, relative to the root
+	 */
+	public void delete(String path) throws IOException {
+		File file = file(path);
+		if (file.exists()) {
+			Files.walk(file.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Connects to the database, clears it, and populates it with the root.
+	 *
+	 * @return the number of properties populated
+	 */
+	public long populate() {
+		SQLiteManager.connectToDatabase();
+		SQLiteManager.clear();
+		return DbFunctions.populate(getPath());
+	}
+
+}
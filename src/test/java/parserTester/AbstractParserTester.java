@@ -8,6 +8,7 @@ import java.util.*;
 import org.junit.*;
 
 import parser.AbstractParser;
+import parser.FileMetadata;
 import parser.ParseProp;
 
 /**
@@ -67,6 +68,30 @@ public class AbstractParserTester {
 		assertEquals(metadata.get("extension"), "properties");
 	}
 
+	/**
+	 * Tests {@link parser.AbstractParser#getFileMetadata()}, including the cleaning of paths.
+	 */
+	@Test
+	public void testGetFileMetadata() {
+		parser.setPath("C:\\lighthouse\\root", "C:\\lighthouse\\root\\\\dev1//storm\\n1/hosts");
+		FileMetadata metadata = parser.getFileMetadata();
+		assertEquals("dev1/storm/n1/hosts", metadata.getPath());
+		assertEquals("dev1", metadata.getEnvironment());
+		assertEquals("storm", metadata.getFabric());
+		assertEquals("n1", metadata.getNode());
+		assertEquals("hosts", metadata.getFilename());
+		assertEquals("hosts", metadata.getExtension());
+
+		// files outside of the standard structure leave the missing levels out
+		parser.setPath("/root", "/root/dev1/app.yaml");
+		metadata = parser.getFileMetadata();
+		assertEquals("dev1", metadata.getEnvironment());
+		assertNull(metadata.getFabric());
+		assertEquals("yaml", metadata.getExtension());
+		assertEquals(metadata.toMap(), parser.getMetadata());
+		assertFalse(parser.getMetadata().containsKey("node"));
+	}
+
 	/**
 	 * Tests {@link parser.AbstractParser#getData()}.
 	 */
@@ -0,0 +1,35 @@
+package parserTester;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import parser.StringPool;
+
+/**
+ * Tests {@link parser.StringPool}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class StringPoolTester {
+
+	/**
+	 * Tests that equal Strings share an instance and that long Strings are never pooled.
+	 */
+	@Test
+	public void testDedup() {
+		StringPool.clear();
+		String first = StringPool.dedup(new String("localhost"));
+		assertSame(first, StringPool.dedup(new String("localhost")));
+		assertSame(first, StringPool.dedup((Object) new String("localhost")));
+		assertEquals(Boolean.TRUE, StringPool.dedup((Object) Boolean.TRUE));
+		assertNull(StringPool.dedup((String) null));
+
+		String long1 = new String(new char[StringPool.MAX_LENGTH + 1]);
+		String long2 = new String(new char[StringPool.MAX_LENGTH + 1]);
+		StringPool.dedup(long1);
+		assertSame(long2, StringPool.dedup(long2));
+	}
+
+}
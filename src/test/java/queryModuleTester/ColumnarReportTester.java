@@ -0,0 +1,88 @@
+package queryModuleTester;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import queryModule.ColumnarReport;
+
+/**
+ * Tests {@link queryModule.ColumnarReport}.
+ * 
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class ColumnarReportTester {
+
+	private File file;
+
+	/**
+	 * Sets up the testbed by creating a temporary report file.
+	 * 
+	 * @throws IOException
+	 *             if the temporary file cannot be created
+	 */
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("lighthouse-report", "." + ColumnarReport.EXTENSION);
+	}
+
+	/**
+	 * Deletes the temporary report file.
+	 */
+	@After
+	public void teardown() {
+		file.delete();
+	}
+
+	/**
+	 * Tests {@link queryModule.ColumnarReport#addRow(java.lang.String[])} and
+	 * {@link queryModule.ColumnarReport#read(java.io.File)} across several chunks.
+	 * 
+	 * @throws IOException
+	 *             if the report cannot be written or read
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		String[] header = { "dev1", "left key", "same" };
+		byte[] types = { ColumnarReport.STRING, ColumnarReport.STRING, ColumnarReport.INT };
+		ColumnarReport report = new ColumnarReport(file, new HashMap<String, String>(), header, types);
+
+		// enough rows to span multiple chunks and a multi-byte dictionary
+		List<String[]> rows = new ArrayList<>();
+		for (int i = 0; i < 150000; i++) {
+			String[] row = { "dev1/storm/n" + (i % 4) + "/server.properties", "key" + i, Integer.toString(i % 7) };
+			rows.add(row);
+			report.addRow(row);
+		}
+		String[] empty = { null, "", "" };
+		report.addRow(empty);
+		report.close();
+
+		List<String[]> read = ColumnarReport.read(file);
+		assertArrayEquals(header, read.get(0));
+		assertEquals(rows.size() + 2, read.size());
+		for (int i = 0; i < rows.size(); i++) {
+			assertArrayEquals(rows.get(i), read.get(i + 1));
+		}
+		assertArrayEquals(new String[] { "", "", "0" }, read.get(read.size() - 1));
+	}
+
+	/**
+	 * Tests that {@link queryModule.ColumnarReport#read(java.io.File)} rejects other files.
+	 * 
+	 * @throws IOException
+	 *             if the temporary file cannot be written
+	 */
+	@Test(expected = IOException.class)
+	public void testReadInvalid() throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		writer.write("\"dev1\",\"left key\",\n");
+		writer.close();
+		ColumnarReport.read(file);
+	}
+
+}
@@ -0,0 +1,58 @@
+package queryModuleTester;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import queryModule.CompareSide;
+
+/**
+ * Tests {@link queryModule.CompareSide}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class CompareSideTester {
+
+	/**
+	 * Tests adding, replacing, and finding properties by key.
+	 */
+	@Test
+	public void testAdd() {
+		CompareSide side = new CompareSide();
+		for (int i = 0; i < 1000; i++) {
+			side.add("key" + i, "value" + i, "dev1/storm/n1/server.properties", i % 3 == 0);
+		}
+		side.add("key5", "replaced", "dev1/storm/n2/server.properties", true);
+		assertEquals(1000, side.size());
+
+		// a replaced property keeps its position
+		assertEquals("key5", side.key(5));
+		assertEquals("replaced", side.value(5));
+		assertEquals("dev1/storm/n2/server.properties", side.path(5));
+		assertTrue(side.isIgnored(5));
+		assertFalse(side.isIgnored(4));
+		assertEquals(999, side.find(side.keyId(999)));
+	}
+
+	/**
+	 * Tests that both sides of a pair share key and value ids.
+	 */
+	@Test
+	public void testPair() {
+		CompareSide left = new CompareSide();
+		CompareSide right = new CompareSide(left);
+		left.add("port", "8080", "dev1/storm/n1/server.properties", false);
+		left.add("host", "localhost", "dev1/storm/n1/server.properties", false);
+		right.add("host", "remote", "dev2/storm/n1/server.properties", false);
+		right.add("port", new String("8080"), "dev2/storm/n1/server.properties", false);
+		right.add("timeout", "30", "dev2/storm/n1/server.properties", false);
+
+		int port = right.find(left.keyId(0));
+		assertEquals(1, port);
+		assertTrue(left.sameValue(0, right, port));
+		assertFalse(left.sameValue(1, right, right.find(left.keyId(1))));
+		assertEquals(-1, left.find(right.keyId(2)));
+	}
+
+}
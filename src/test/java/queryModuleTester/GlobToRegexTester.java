@@ -0,0 +1,67 @@
+package queryModuleTester;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import queryModule.QueryFunctions;
+
+/**
+ * Tests {@link queryModule.QueryFunctions#globToRegex(String)}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class GlobToRegexTester {
+
+	/**
+	 * Tests wildcards and escaping of regular expression metacharacters.
+	 */
+	@Test
+	public void testWildcards() {
+		assertEquals("^server\\/.*\\/port$", QueryFunctions.globToRegex("server/*/port"));
+		assertEquals("^a.c$", QueryFunctions.globToRegex("a?c"));
+		assertEquals("^a\\.b\\+c\\(d\\)$", QueryFunctions.globToRegex("a.b+c(d)"));
+		assertTrue("a.b".matches(QueryFunctions.globToRegex("a.b")));
+		assertFalse("axb".matches(QueryFunctions.globToRegex("a.b")));
+		assertTrue("x\\y".matches(QueryFunctions.globToRegex("x\\y")));
+	}
+
+	/**
+	 * Tests bracketed character classes.
+	 */
+	@Test
+	public void testClasses() {
+		String regex = QueryFunctions.globToRegex("node[0-9]");
+		assertTrue("node7".matches(regex));
+		assertFalse("nodex".matches(regex));
+
+		// negation with `!` or `^`
+		regex = QueryFunctions.globToRegex("node[!0-9]");
+		assertTrue("nodex".matches(regex));
+		assertFalse("node7".matches(regex));
+		assertTrue("nodex".matches(QueryFunctions.globToRegex("node[^0-9]")));
+
+		// a leading `]` is a member of the class
+		regex = QueryFunctions.globToRegex("a[]b]");
+		assertTrue("a]".matches(regex));
+		assertTrue("ab".matches(regex));
+		assertFalse("a]".matches(QueryFunctions.globToRegex("a[!]]")));
+		assertTrue("a!".matches(QueryFunctions.globToRegex("a[!]]")));
+
+		// brackets and ampersands within a class are only members
+		regex = QueryFunctions.globToRegex("a[[&b]");
+		assertTrue("a[".matches(regex));
+		assertTrue("a&".matches(regex));
+		assertTrue("ab".matches(regex));
+		assertFalse("a]".matches(regex));
+		regex = QueryFunctions.globToRegex("[a-z&&b]");
+		assertTrue("c".matches(regex));
+		assertTrue("&".matches(regex));
+
+		// an unclosed bracket is taken literally
+		assertTrue("a[b".matches(QueryFunctions.globToRegex("a[b")));
+		assertTrue("a\\b".matches(QueryFunctions.globToRegex("a[\\]b")));
+	}
+
+}
@@ -0,0 +1,88 @@
+package queryModuleTester;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import databaseModule.DbFunctions;
+import fixture.TempRoot;
+import queryModule.QueryEngine;
+import queryModule.QueryFunctions;
+
+/**
+ * Tests {@link queryModule.QueryEngine}.
+ *
+ * @author ActianceEngInterns
+ * @version 1.4.0
+ */
+public class QueryEngineTester {
+
+	@Rule
+	public final TempRoot root = new TempRoot("lighthouse-engine");
+
+	/**
+	 * Sets up the testbed with two generations of a root, the second of which changes a value.
+	 */
+	@Before
+	public void setup() throws IOException {
+		root.write("dev1/fabric/node/server.properties", "port=8080\nhost=localhost\n");
+		root.populate();
+		root.write("dev1/fabric/node/server.properties", "port=9090\nhost=localhost\n");
+		DbFunctions.replace(root.getPath());
+	}
+
+	/**
+	 * Tests comparing a path against its state at a past generation.
+	 */
+	@Test
+	public void testCompareGeneration() {
+		QueryEngine comparator = new QueryEngine();
+		comparator.setMode(QueryEngine.SUMMARY);
+		comparator.addQuery("dev1@-1", "dev1");
+		comparator.run();
+		assertEquals(1, (int) comparator.getDiscrepancies().get("value"));
+		assertEquals(1, (int) comparator.getDiscrepancies().get("same"));
+		assertEquals(0, (int) comparator.getDiscrepancies().get("key"));
+
+		comparator = new QueryEngine();
+		comparator.setMode(QueryEngine.SUMMARY);
+		comparator.addQuery("dev1/fabric@-1", "dev1/fabric@-1");
+		comparator.run();
+		assertEquals(0, (int) comparator.getDiscrepancies().get("value"));
+		assertEquals(2, (int) comparator.getDiscrepancies().get("same"));
+	}
+
+	/**
+	 * Tests that pairs with identical content are recognized once excluded files are left out,
+	 * including across shards.
+	 */
+	@Test
+	public void testIdenticalWithExclusions() throws IOException {
+		root.write("dev2/fabric/node/client.properties", "timeout=30\n");
+		root.write("dev2/fabric/node/extra.properties", "retries=3\n");
+		DbFunctions.replace(root.getPath());
+
+		QueryEngine comparator = new QueryEngine();
+		comparator.setMode(QueryEngine.SUMMARY);
+		comparator.exclude("dev2/fabric/node/extra.properties");
+		comparator.addQuery("", "");
+		Map<String, Integer> stats = comparator.run();
+		assertEquals(1, (int) stats.get("identical"));
+		assertEquals(3, (int) comparator.getDiscrepancies().get("same"));
+		assertEquals(2, (int) stats.get("excluded"));
+	}
+
+	/**
+	 * Tests that only comparisons read past generations: other locations are taken literally.
+	 */
+	@Test
+	public void testUnversionedLocation() {
+		assertTrue(QueryFunctions.findProp("port", "dev1@-1", 0, QueryFunctions.SUBSTRING).isEmpty());
+		assertTrue(QueryFunctions.findProp("port", "dev1@99", 0, QueryFunctions.GLOB).isEmpty());
+		assertEquals(1, QueryFunctions.findProp("port", "dev1", 0, QueryFunctions.SUBSTRING).size());
+	}
+
+}